@@ -0,0 +1,229 @@
+package stream.flow.videoservice.benchmark;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import stream.flow.videoservice.model.dto.response.VideoInfoResponse;
+import stream.flow.videoservice.model.entity.Video;
+import stream.flow.videoservice.model.enums.Status;
+import stream.flow.videoservice.repository.VideoRepository;
+import stream.flow.videoservice.service.ffmpeg.FfmpegService;
+import stream.flow.videoservice.service.ffmpeg.ProgressListener;
+import stream.flow.videoservice.service.ffmpeg.Rendition;
+import stream.flow.videoservice.service.video.VideoProcessingService;
+import stream.flow.videoservice.service.video.processor.LadderPlanner;
+import stream.flow.videoservice.service.video.processor.TempFileManager;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Бенчмарк транскодирования (профиль benchmark, запуск: mvn spring-boot:run -Pbenchmark)
+ *
+ * Для каждого сочетания уровня движения, высоты и длительности:
+ * - генерирует исходник (BenchmarkSourceGenerator)
+ * - кодирует каждое качество лестницы через FfmpegService отдельно: время, fps, размер, PSNR/SSIM
+ * - прогоняет исходник через полный VideoProcessingService (лестница, упаковка, раскадровка,
+ *   превью) с локальным хранилищем: общее время и размер всего, что попало в хранилище
+ *
+ * Отчет пишется в CSV вместе с пресетом и CRF, с которыми шел замер, чтобы отчеты
+ * до и после изменения пайплайна можно было сравнить построчно
+ */
+@Slf4j
+@Component
+@Profile("benchmark")
+@RequiredArgsConstructor
+public class BenchmarkRunner implements ApplicationRunner {
+
+    private static final String PIPELINE_STAGE = "PIPELINE";
+    private static final DateTimeFormatter REPORT_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final BenchmarkSourceGenerator sourceGenerator;
+    private final QualityMeter qualityMeter;
+    private final FfmpegService ffmpegService;
+    private final LadderPlanner ladderPlanner;
+    private final VideoProcessingService videoProcessingService;
+    private final VideoRepository videoRepository;
+    private final TempFileManager tempFileManager;
+    private final ConfigurableApplicationContext context;
+
+    @Value("${benchmark.dir:./benchmark}")
+    private String benchmarkDir;
+
+    @Value("${benchmark.storage-dir:./benchmark/storage}")
+    private String storageDir;
+
+    @Value("${benchmark.motions:LOW,MEDIUM,HIGH}")
+    private String motions;
+
+    @Value("${benchmark.heights:1080,720}")
+    private String heights;
+
+    @Value("${benchmark.durations:10,60}")
+    private String durations;
+
+    @Value("${benchmark.fps:30}")
+    private int fps;
+
+    @Value("${benchmark.pipeline:true}")
+    private boolean pipeline;
+
+    @Value("${benchmark.exit-on-finish:true}")
+    private boolean exitOnFinish;
+
+    @Value("${minio.bucket.videos}")
+    private String videoBucket;
+
+    @Value("${video.temp-dir}")
+    private String tempDir;
+
+    @Value("${ffmpeg.conversion.preset:medium}")
+    private String preset;
+
+    @Value("${ffmpeg.conversion.crf:23}")
+    private int crf;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        Path workDir = Paths.get(benchmarkDir);
+        List<BenchmarkResult> results = new ArrayList<>();
+
+        for (String motion : motions.split(",")) {
+            for (String height : heights.split(",")) {
+                for (String duration : durations.split(",")) {
+                    BenchmarkSource source = sourceGenerator.generate(
+                            MotionLevel.valueOf(motion.trim().toUpperCase(Locale.ROOT)),
+                            Integer.parseInt(height.trim()),
+                            Integer.parseInt(duration.trim()),
+                            fps,
+                            workDir.resolve("sources"));
+
+                    results.addAll(benchmarkRenditions(source, workDir.resolve("renditions").resolve(source.name())));
+                    if (pipeline) {
+                        results.add(benchmarkPipeline(source));
+                    }
+                }
+            }
+        }
+
+        Path report = writeReport(workDir, results);
+        log.info("Benchmark finished: {} results, report {}", results.size(), report);
+        results.forEach(result -> log.info("{}", result.toCsv()));
+
+        if (exitOnFinish) {
+            System.exit(SpringApplication.exit(context, () -> 0));
+        }
+    }
+
+    /**
+     * Каждое качество кодируется отдельным процессом без звука: время и fps относятся
+     * к одному качеству, а не делятся между выходами лестницы
+     */
+    private List<BenchmarkResult> benchmarkRenditions(BenchmarkSource source, Path outputDir) throws IOException {
+        Files.createDirectories(outputDir);
+        VideoInfoResponse metadata = ffmpegService.extractVideoMetadata(source.path());
+
+        List<BenchmarkResult> results = new ArrayList<>();
+        for (Rendition rendition : ladderPlanner.plan(metadata, 1.0)) {
+            String output = outputDir.resolve(rendition.quality().name().toLowerCase() + ".mp4").toString();
+
+            long start = System.nanoTime();
+            ffmpegService.convertQualityVideo(source.path(), output, rendition, null, ProgressListener.NONE);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            QualityMeter.QualityScore score = qualityMeter.measure(output, source.path());
+            BenchmarkResult result = new BenchmarkResult(source.name(), rendition.quality().name(), seconds,
+                    source.frames() / seconds, Files.size(Paths.get(output)), score.psnr(), score.ssim());
+            log.info("Benchmark {}", result.toCsv());
+            results.add(result);
+        }
+        return results;
+    }
+
+    /**
+     * Полный путь обработки для отдельного видео в БД. Размер - все объекты видео
+     * в bucket качеств локального хранилища (MP4 качеств, сегменты и манифесты)
+     */
+    private BenchmarkResult benchmarkPipeline(BenchmarkSource source) throws IOException {
+        Video video = videoRepository.save(Video.builder()
+                .title("benchmark " + source.name())
+                .status(Status.UPLOADING)
+                .build());
+        UUID videoId = video.getId();
+
+        Path original = Paths.get(tempDir, videoId.toString(), "original.mp4");
+        Files.createDirectories(original.getParent());
+        Files.copy(Paths.get(source.path()), original);
+
+        long start = System.nanoTime();
+        videoProcessingService.processing(original.toString(), videoId);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        tempFileManager.deleteTempDirectory(videoId);
+
+        BenchmarkResult result = new BenchmarkResult(source.name(), PIPELINE_STAGE, seconds,
+                source.frames() / seconds, directorySize(Paths.get(storageDir, videoBucket, videoId.toString())),
+                null, null);
+        log.info("Benchmark {}", result.toCsv());
+        return result;
+    }
+
+    private long directorySize(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return 0;
+        }
+        try (Stream<Path> walk = Files.walk(dir)) {
+            return walk.filter(Files::isRegularFile).mapToLong(path -> path.toFile().length()).sum();
+        }
+    }
+
+    private Path writeReport(Path workDir, List<BenchmarkResult> results) throws IOException {
+        Path report = workDir.resolve("report-" + LocalDateTime.now().format(REPORT_TIMESTAMP) + ".csv");
+        Files.createDirectories(workDir);
+
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(report))) {
+            writer.println("preset,crf," + BenchmarkResult.CSV_HEADER);
+            for (BenchmarkResult result : results) {
+                writer.println(preset + "," + crf + "," + result.toCsv());
+            }
+        }
+        return report;
+    }
+
+    /**
+     * @param source имя исходника
+     * @param stage качество или PIPELINE для полного пути
+     * @param wallSeconds время кодирования (для PIPELINE - всей обработки)
+     * @param fps кадров исходника в секунду
+     * @param sizeBytes размер результата
+     * @param psnr средний PSNR в дБ (только для качеств)
+     * @param ssim SSIM (только для качеств)
+     */
+    private record BenchmarkResult(String source, String stage, double wallSeconds, double fps, long sizeBytes,
+                                   Double psnr, Double ssim) {
+
+        static final String CSV_HEADER = "source,stage,wall_seconds,fps,size_bytes,psnr,ssim";
+
+        String toCsv() {
+            return String.format(Locale.ROOT, "%s,%s,%.2f,%.1f,%d,%s,%s", source, stage, wallSeconds, fps, sizeBytes,
+                    psnr != null ? String.format(Locale.ROOT, "%.2f", psnr) : "",
+                    ssim != null ? String.format(Locale.ROOT, "%.4f", ssim) : "");
+        }
+    }
+}
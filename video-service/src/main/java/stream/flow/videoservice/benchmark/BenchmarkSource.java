@@ -0,0 +1,25 @@
+package stream.flow.videoservice.benchmark;
+
+/**
+ * Сгенерированный исходник бенчмарка
+ *
+ * @param name имя исходника в отчете, например high_1080p_60s
+ * @param path путь к файлу
+ * @param motion уровень движения
+ * @param height высота кадра
+ * @param duration длительность в секундах
+ * @param fps частота кадров
+ */
+public record BenchmarkSource(
+        String name,
+        String path,
+        MotionLevel motion,
+        int height,
+        int duration,
+        int fps
+) {
+
+    public long frames() {
+        return (long) duration * fps;
+    }
+}
@@ -0,0 +1,88 @@
+package stream.flow.videoservice.benchmark;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import stream.flow.videoservice.exception.file.FileUploadException;
+import stream.flow.videoservice.service.ffmpeg.ProcessRunner;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Генерирует исходники бенчмарка из источников lavfi: видео по уровню движения
+ * и синусоида 440 Гц в качестве звука
+ *
+ * Исходник кодируется почти без потерь (CRF SOURCE_CRF) и сохраняется в директории
+ * бенчмарка: повторные запуски берут готовый файл, поэтому все сравнения идут
+ * на одних и тех же байтах входа
+ */
+@Slf4j
+@Component
+@Profile("benchmark")
+@RequiredArgsConstructor
+public class BenchmarkSourceGenerator {
+
+    private static final int SOURCE_CRF = 12;
+
+    private final ProcessRunner processRunner;
+
+    @Value("${ffmpeg.ffmpeg-path:ffmpeg}")
+    private String ffmpegPath;
+
+    @Value("${ffmpeg.process.max-duration:21600}")
+    private long maxDurationSeconds;
+
+    @Value("${ffmpeg.process.idle-timeout:300}")
+    private long idleTimeoutSeconds;
+
+    public BenchmarkSource generate(MotionLevel motion, int height, int duration, int fps, Path sourceDir) {
+        // 16:9 с четной шириной
+        int width = (height * 16 / 9) & ~1;
+        String name = String.format("%s_%dp_%ds", motion.name().toLowerCase(), height, duration);
+        Path output = sourceDir.resolve(name + ".mp4");
+        BenchmarkSource source = new BenchmarkSource(name, output.toString(), motion, height, duration, fps);
+
+        if (Files.exists(output)) {
+            log.debug("Benchmark source {} already generated", name);
+            return source;
+        }
+
+        try {
+            Files.createDirectories(sourceDir);
+        } catch (IOException e) {
+            throw new FileUploadException("Failed to create benchmark source directory: " + e.getMessage(), e);
+        }
+
+        List<String> command = List.of(
+            ffmpegPath,
+            "-y",
+            "-progress", "pipe:1",
+            "-nostats",
+            "-f", "lavfi", "-i", motion.filter(width, height, fps),
+            "-f", "lavfi", "-i", "sine=frequency=440:sample_rate=48000",
+            "-t", String.valueOf(duration),
+            "-c:v", "libx264",
+            "-preset", "fast",
+            "-crf", String.valueOf(SOURCE_CRF),
+            "-pix_fmt", "yuv420p",
+            "-c:a", "aac",
+            "-b:a", "192k",
+            output.toString()
+        );
+
+        log.info("Generating benchmark source {}", name);
+        ProcessRunner.ProcessResult result = processRunner.run(command, null,
+                Duration.ofSeconds(maxDurationSeconds), Duration.ofSeconds(idleTimeoutSeconds));
+        if (!result.isSuccess()) {
+            throw new FileUploadException("Failed to generate benchmark source " + name + ": " + result.stderrTail());
+        }
+
+        return source;
+    }
+}
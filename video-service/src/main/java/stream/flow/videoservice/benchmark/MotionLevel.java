@@ -0,0 +1,31 @@
+package stream.flow.videoservice.benchmark;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Уровни движения синтетических исходников (источники lavfi FFmpeg)
+ * Все источники детерминированы: один и тот же уровень всегда дает одинаковые кадры
+ */
+@Getter
+@RequiredArgsConstructor
+public enum MotionLevel {
+    /**
+     * Статичная таблица с небольшим движущимся фрагментом - почти все кадры предсказываются
+     */
+    LOW("testsrc2=size=%dx%d:rate=%d"),
+    /**
+     * Непрерывное приближение фрактала - весь кадр плавно меняется
+     */
+    MEDIUM("mandelbrot=size=%dx%d:rate=%d"),
+    /**
+     * Таблица с временным шумом (фиксированный seed) - худший случай для межкадрового сжатия
+     */
+    HIGH("testsrc2=size=%dx%d:rate=%d,noise=alls=30:allf=t+u:all_seed=42");
+
+    private final String filterTemplate;
+
+    public String filter(int width, int height, int fps) {
+        return String.format(filterTemplate, width, height, fps);
+    }
+}
@@ -0,0 +1,100 @@
+package stream.flow.videoservice.benchmark;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import stream.flow.videoservice.exception.file.FileUploadException;
+import stream.flow.videoservice.model.dto.response.VideoInfoResponse;
+import stream.flow.videoservice.service.ffmpeg.FfmpegService;
+import stream.flow.videoservice.service.ffmpeg.ProcessRunner;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Оценивает качество закодированного видео относительно исходника фильтрами psnr и ssim
+ *
+ * Исходник масштабируется до разрешения качества тем же bicubic, что и при кодировании,
+ * поэтому метрика показывает потери сжатия, а не уменьшения кадра
+ */
+@Slf4j
+@Component
+@Profile("benchmark")
+@RequiredArgsConstructor
+public class QualityMeter {
+
+    private static final Pattern PSNR_AVERAGE = Pattern.compile("PSNR .*average:(\\S+)");
+    private static final Pattern SSIM_ALL = Pattern.compile("SSIM .*All:(\\S+)");
+
+    private final ProcessRunner processRunner;
+    private final FfmpegService ffmpegService;
+
+    @Value("${ffmpeg.ffmpeg-path:ffmpeg}")
+    private String ffmpegPath;
+
+    @Value("${ffmpeg.process.max-duration:21600}")
+    private long maxDurationSeconds;
+
+    @Value("${ffmpeg.process.idle-timeout:300}")
+    private long idleTimeoutSeconds;
+
+    /**
+     * @param distortedPath закодированное видео
+     * @param referencePath исходник
+     * @return средний PSNR (дБ) и SSIM по всем плоскостям
+     */
+    public QualityScore measure(String distortedPath, String referencePath) {
+        VideoInfoResponse distorted = ffmpegService.extractVideoMetadata(distortedPath);
+
+        // -progress держит процесс активным для сторожа: -f null ничего не пишет до конца прохода
+        String filter = String.format(
+                "[1:v]scale=%d:%d:flags=bicubic,split[ref1][ref2];[0:v]split[dist1][dist2];"
+                        + "[dist1][ref1]psnr;[dist2][ref2]ssim",
+                distorted.getWidth(), distorted.getHeight());
+        List<String> command = List.of(
+            ffmpegPath,
+            "-hide_banner",
+            "-progress", "pipe:1",
+            "-nostats",
+            "-i", distortedPath,
+            "-i", referencePath,
+            "-lavfi", filter,
+            "-f", "null", "-"
+        );
+
+        ProcessRunner.ProcessResult result = processRunner.run(command, null,
+                Duration.ofSeconds(maxDurationSeconds), Duration.ofSeconds(idleTimeoutSeconds));
+        if (!result.isSuccess()) {
+            throw new FileUploadException("Failed to measure quality of " + distortedPath + ": " + result.stderrTail());
+        }
+
+        return new QualityScore(
+                parseMetric(PSNR_AVERAGE, result.stderrTail()),
+                parseMetric(SSIM_ALL, result.stderrTail()));
+    }
+
+    /**
+     * Итоговая строка фильтра печатается в stderr последней, поэтому она всегда попадает в хвост
+     */
+    private Double parseMetric(Pattern pattern, String output) {
+        Matcher matcher = pattern.matcher(output);
+        if (!matcher.find()) {
+            log.warn("Metric {} not found in FFmpeg output", pattern.pattern());
+            return null;
+        }
+
+        String value = matcher.group(1);
+        // Одинаковые кадры дают PSNR inf
+        return "inf".equals(value) ? Double.POSITIVE_INFINITY : Double.parseDouble(value);
+    }
+
+    /**
+     * @param psnr средний PSNR в дБ или null, если не удалось измерить
+     * @param ssim SSIM (All) от 0 до 1 или null, если не удалось измерить
+     */
+    public record QualityScore(Double psnr, Double ssim) {}
+}
@@ -1,6 +1,7 @@
 package stream.flow.videoservice.config;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
@@ -27,8 +28,41 @@ public class AsyncConfig {
         log.debug("Async Task Executor configured: corePoolSize=5, maxPoolSize=10, queueCapacity=100");
         return executor;
     }
-}
 
+    /**
+     * Пул для параллельного кодирования кусков одного видео.
+     * Очередь не ограничена: количество кусков конечно и известно заранее,
+     * а одновременно работает не больше parallelism процессов FFmpeg
+     */
+    @Bean(name = "chunkExecutor")
+    public Executor chunkExecutor(@Value("${ffmpeg.chunked.parallelism:0}") int parallelism) {
+        int poolSize = parallelism > 0 ? parallelism : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        log.debug("Creating Chunk Executor with poolSize={}", poolSize);
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setThreadNamePrefix("chunk-");
+        executor.initialize();
+
+        return executor;
+    }
 
+    /**
+     * Пул для транскодирования видео. Количество одновременных задач ограничивает
+     * TranscodeScheduler по бюджету CPU, пул лишь не дает задачам ждать свободного потока
+     */
+    @Bean(name = "transcodeExecutor")
+    public Executor transcodeExecutor(@Value("${transcode.scheduler.cpu-budget:0}") int cpuBudget) {
+        int poolSize = cpuBudget > 0 ? cpuBudget : Runtime.getRuntime().availableProcessors();
+        log.debug("Creating Transcode Executor with poolSize={}", poolSize);
 
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setThreadNamePrefix("transcode-");
+        executor.initialize();
 
+        return executor;
+    }
+}
@@ -0,0 +1,74 @@
+package stream.flow.videoservice.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.util.backoff.ExponentialBackOff;
+import stream.flow.videoservice.model.dto.message.TranscodeCommand;
+import stream.flow.videoservice.model.enums.Status;
+import stream.flow.videoservice.service.progress.TranscodeProgressService;
+import stream.flow.videoservice.service.video.VideoService;
+import stream.flow.videoservice.service.video.processor.TempFileManager;
+
+/**
+ * Транскодирование через Kafka (transcode.dispatch=kafka):
+ * API публикует команду, воркеры (transcode.worker.enabled=true) читают ее.
+ * Параллелизм воркеров ограничен количеством партиций топика
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "transcode.dispatch", havingValue = "kafka")
+public class KafkaConfig {
+
+    @Bean
+    public NewTopic transcodeCommandTopic(@Value("${transcode.kafka.topic}") String topic,
+                                          @Value("${transcode.kafka.partitions:12}") int partitions,
+                                          @Value("${transcode.kafka.replicas:1}") int replicas) {
+        return TopicBuilder.name(topic).partitions(partitions).replicas(replicas).build();
+    }
+
+    @Bean
+    public NewTopic transcodeCommandDeadLetterTopic(@Value("${transcode.kafka.topic}") String topic,
+                                                    @Value("${transcode.kafka.partitions:12}") int partitions,
+                                                    @Value("${transcode.kafka.replicas:1}") int replicas) {
+        // Имя и количество партиций совпадают с ожиданиями DeadLetterPublishingRecoverer: {topic}-dlt, та же партиция
+        return TopicBuilder.name(topic + "-dlt").partitions(partitions).replicas(replicas).build();
+    }
+
+    /**
+     * Упавшая команда повторяется с экспоненциальной задержкой (повтор продолжает
+     * с сохраненных этапов качеств), после исчерпания попыток уходит в {topic}-dlt,
+     * видео переводится в FAILED. Смещение фиксируется после отправки в DLT
+     */
+    @Bean
+    public DefaultErrorHandler transcodeErrorHandler(KafkaTemplate<Object, Object> kafkaTemplate,
+                                                     VideoService videoService,
+                                                     TranscodeProgressService progressService,
+                                                     TempFileManager tempFileManager,
+                                                     @Value("${transcode.kafka.max-attempts:3}") int maxAttempts,
+                                                     @Value("${transcode.jobs.backoff-base:30}") long backoffBaseSeconds) {
+        DeadLetterPublishingRecoverer deadLetterRecoverer = new DeadLetterPublishingRecoverer(kafkaTemplate);
+
+        ExponentialBackOff backOff = new ExponentialBackOff(backoffBaseSeconds * 1000, 2.0);
+        backOff.setMaxAttempts(Math.max(0, maxAttempts - 1));
+
+        return new DefaultErrorHandler((record, exception) -> {
+            deadLetterRecoverer.accept(record, exception);
+
+            if (record.value() instanceof TranscodeCommand command) {
+                log.error("Transcode command for video {} moved to dead letter: {}",
+                        command.getVideoId(), exception.getMessage());
+                videoService.updateVideoStatus(command.getVideoId(), Status.FAILED);
+                progressService.finish(command.getVideoId(), Status.FAILED);
+                tempFileManager.deleteTempDirectory(command.getVideoId());
+            }
+        }, backOff);
+    }
+}
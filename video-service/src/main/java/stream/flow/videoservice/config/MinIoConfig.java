@@ -1,11 +1,18 @@
 package stream.flow.videoservice.config;
 
+import io.minio.MinioAsyncClient;
 import io.minio.MinioClient;
+import io.minio.http.HttpUtils;
 import lombok.extern.slf4j.Slf4j;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.concurrent.TimeUnit;
+
 @Slf4j
 @Configuration
 public class MinIoConfig {
@@ -19,13 +26,56 @@ public class MinIoConfig {
     @Value("${minio.secret-key}")
     private String secretKey;
 
+    /**
+     * Общий HTTP клиент обоих клиентов MinIO: одно соединение переиспользуется
+     * синхронными и асинхронными запросами. У каждого клиента по умолчанию свой пул,
+     * а асинхронные запросы ограничены 5 одновременными на хост - MinIO один хост,
+     * поэтому параллельная загрузка частей и сегментов упиралась в этот лимит
+     */
+    @Bean
+    public OkHttpClient minioHttpClient(@Value("${minio.http.max-idle-connections:64}") int maxIdleConnections,
+                                        @Value("${minio.http.keep-alive:300}") long keepAliveSeconds,
+                                        @Value("${minio.http.max-requests-per-host:64}") int maxRequestsPerHost,
+                                        @Value("${minio.http.connect-timeout:10}") long connectTimeoutSeconds,
+                                        @Value("${minio.http.timeout:300}") long timeoutSeconds) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(Math.max(dispatcher.getMaxRequests(), maxRequestsPerHost));
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+
+        log.debug("Initializing MinIO HTTP client: maxIdleConnections={}, maxRequestsPerHost={}",
+                maxIdleConnections, maxRequestsPerHost);
+
+        return HttpUtils.newDefaultHttpClient(
+                        TimeUnit.SECONDS.toMillis(connectTimeoutSeconds),
+                        TimeUnit.SECONDS.toMillis(timeoutSeconds),
+                        TimeUnit.SECONDS.toMillis(timeoutSeconds))
+                .newBuilder()
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveSeconds, TimeUnit.SECONDS))
+                .dispatcher(dispatcher)
+                .build();
+    }
+
     @Bean
-    public MinioClient minioClient() {
+    public MinioClient minioClient(OkHttpClient minioHttpClient) {
         log.debug("Initializing MinIO client with endpoint: {}", endpoint);
         
         return MinioClient.builder()
                 .endpoint(endpoint)
                 .credentials(accessKey, secretKey)
+                .httpClient(minioHttpClient)
+                .build();
+    }
+
+    /**
+     * Асинхронный клиент для многочастной загрузки: части загружаются параллельно,
+     * а низкоуровневые операции multipart есть только у него
+     */
+    @Bean
+    public MinioAsyncClient minioAsyncClient(OkHttpClient minioHttpClient) {
+        return MinioAsyncClient.builder()
+                .endpoint(endpoint)
+                .credentials(accessKey, secretKey)
+                .httpClient(minioHttpClient)
                 .build();
     }
 }
@@ -9,9 +9,17 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import stream.flow.videoservice.model.dto.request.UploadSessionRequest;
 import stream.flow.videoservice.model.dto.request.VideoCreateRequest;
+import stream.flow.videoservice.model.dto.response.TranscodeQueueResponse;
+import stream.flow.videoservice.model.dto.response.UploadSessionResponse;
 import stream.flow.videoservice.model.dto.response.VideoResponse;
 import stream.flow.videoservice.model.dto.response.VideoUploadResponse;
+import stream.flow.videoservice.service.progress.TranscodeProgressService;
+import stream.flow.videoservice.service.transcode.TranscodeScheduler;
+import stream.flow.videoservice.service.video.AsyncProcessVideoService;
+import stream.flow.videoservice.service.video.UploadSessionService;
 import stream.flow.videoservice.service.video.VideoService;
 import stream.flow.videoservice.service.video.VideoUploadService;
 import stream.flow.videoservice.util.SecurityUtils;
@@ -27,6 +35,10 @@ public class VideoController {
 
     private final VideoService videoService;
     private final VideoUploadService videoUploadService;
+    private final TranscodeProgressService transcodeProgressService;
+    private final TranscodeScheduler transcodeScheduler;
+    private final AsyncProcessVideoService asyncProcessVideoService;
+    private final UploadSessionService uploadSessionService;
 
     /**
      * Создание нового видео (только метаданные)
@@ -60,6 +72,51 @@ public class VideoController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Создание сессии загрузки напрямую в хранилище (подписанные ссылки на части)
+     * POST /api/v1/videos/upload-sessions
+     */
+    @PostMapping("/upload-sessions")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<UploadSessionResponse> createUploadSession(@Valid @RequestBody UploadSessionRequest request) {
+        log.info("Creating upload session, size: {} bytes", request.getFileSize());
+
+        String userId = SecurityUtils.getCurrentUserId();
+        UploadSessionResponse response = uploadSessionService.createSession(request, userId);
+
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    /**
+     * Подтверждение загрузки всех частей и запуск обработки
+     * POST /api/v1/videos/upload-sessions/{id}/complete
+     */
+    @PostMapping("/upload-sessions/{id}/complete")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<VideoUploadResponse> completeUploadSession(@PathVariable UUID id) {
+        log.info("Completing upload session for video: {}", id);
+
+        String userId = SecurityUtils.getCurrentUserId();
+        VideoUploadResponse response = uploadSessionService.completeSession(id, userId);
+
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Отмена загрузки напрямую в хранилище
+     * DELETE /api/v1/videos/upload-sessions/{id}
+     */
+    @DeleteMapping("/upload-sessions/{id}")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<Void> abortUploadSession(@PathVariable UUID id) {
+        log.info("Aborting upload session for video: {}", id);
+
+        String userId = SecurityUtils.getCurrentUserId();
+        uploadSessionService.abortSession(id, userId);
+
+        return ResponseEntity.noContent().build();
+    }
+
     /**
      * Загрузка превью (thumbnail)
      * POST /api/v1/videos/{id}/thumbnail
@@ -77,8 +134,47 @@ public class VideoController {
 
         return ResponseEntity.ok(response);
     }
-}
 
+    /**
+     * Отмена обработки видео
+     * POST /api/v1/videos/{id}/cancel
+     */
+    @PostMapping("/{id}/cancel")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<Void> cancelProcessing(@PathVariable UUID id) {
+        log.info("Cancelling processing of video: {}", id);
+
+        String userId = SecurityUtils.getCurrentUserId();
+        videoService.checkOwnership(id, userId);
+
+        // 409 - обработка уже завершена, отменять нечего
+        return asyncProcessVideoService.cancelProcessing(id)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.status(HttpStatus.CONFLICT).build();
+    }
+
+    /**
+     * Прогресс обработки видео (Server-Sent Events)
+     * GET /api/v1/videos/{id}/progress
+     */
+    @GetMapping(value = "/{id}/progress", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("isAuthenticated()")
+    public SseEmitter streamProgress(@PathVariable UUID id) {
+        log.debug("Subscribing to processing progress of video: {}", id);
 
+        String userId = SecurityUtils.getCurrentUserId();
+        videoService.checkOwnership(id, userId);
 
+        return transcodeProgressService.subscribe(id);
+    }
 
+    /**
+     * Состояние очереди транскодирования
+     * GET /api/v1/videos/queue
+     */
+    @GetMapping("/queue")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<TranscodeQueueResponse> getQueueState() {
+        return ResponseEntity.ok(transcodeScheduler.getQueueState());
+    }
+}
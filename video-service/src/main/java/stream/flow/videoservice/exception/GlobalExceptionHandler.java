@@ -2,6 +2,7 @@ package stream.flow.videoservice.exception;
 
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -12,8 +13,11 @@ import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import stream.flow.videoservice.exception.file.FileSizeExceededException;
 import stream.flow.videoservice.exception.file.FileUploadException;
 import stream.flow.videoservice.exception.file.InvalidFileTypeException;
+import stream.flow.videoservice.exception.file.UploadIncompleteException;
+import stream.flow.videoservice.exception.file.UploadSessionNotFoundException;
 import stream.flow.videoservice.exception.user.UnauthorizedAccessException;
 import stream.flow.videoservice.exception.user.UserNotFoundException;
+import stream.flow.videoservice.exception.video.TranscodeQueueFullException;
 import stream.flow.videoservice.exception.video.VideoNotFoundException;
 import stream.flow.videoservice.exception.dto.ErrorResponse;
 import stream.flow.videoservice.exception.dto.ValidationErrorResponse;
@@ -139,6 +143,56 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
     }
 
+    @ExceptionHandler(UploadSessionNotFoundException.class)
+    public ResponseEntity<ErrorResponse> handleUploadSessionNotFoundException(
+            UploadSessionNotFoundException ex, HttpServletRequest request) {
+        log.error("Upload session not found: {}", ex.getMessage());
+
+        ErrorResponse error = ErrorResponse.builder()
+                .timestamp(LocalDateTime.now())
+                .status(HttpStatus.NOT_FOUND.value())
+                .error("Not Found")
+                .message(ex.getMessage())
+                .path(request.getRequestURI())
+                .build();
+
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+    }
+
+    @ExceptionHandler(UploadIncompleteException.class)
+    public ResponseEntity<ErrorResponse> handleUploadIncompleteException(
+            UploadIncompleteException ex, HttpServletRequest request) {
+        log.warn("Upload incomplete: {}", ex.getMessage());
+
+        ErrorResponse error = ErrorResponse.builder()
+                .timestamp(LocalDateTime.now())
+                .status(HttpStatus.CONFLICT.value())
+                .error("Conflict")
+                .message(ex.getMessage())
+                .path(request.getRequestURI())
+                .build();
+
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+    }
+
+    @ExceptionHandler(TranscodeQueueFullException.class)
+    public ResponseEntity<ErrorResponse> handleTranscodeQueueFullException(
+            TranscodeQueueFullException ex, HttpServletRequest request) {
+        log.warn("Transcode queue full: {}", ex.getMessage());
+
+        ErrorResponse error = ErrorResponse.builder()
+                .timestamp(LocalDateTime.now())
+                .status(HttpStatus.SERVICE_UNAVAILABLE.value())
+                .error("Service Unavailable")
+                .message(ex.getMessage())
+                .path(request.getRequestURI())
+                .build();
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "60")
+                .body(error);
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<ValidationErrorResponse> handleValidationException(
             MethodArgumentNotValidException ex, HttpServletRequest request) {
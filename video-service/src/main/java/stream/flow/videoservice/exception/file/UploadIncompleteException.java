@@ -0,0 +1,8 @@
+package stream.flow.videoservice.exception.file;
+
+public class UploadIncompleteException extends RuntimeException {
+
+    public UploadIncompleteException(String message) {
+        super(message);
+    }
+}
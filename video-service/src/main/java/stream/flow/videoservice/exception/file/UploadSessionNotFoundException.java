@@ -0,0 +1,10 @@
+package stream.flow.videoservice.exception.file;
+
+import java.util.UUID;
+
+public class UploadSessionNotFoundException extends RuntimeException {
+
+    public UploadSessionNotFoundException(UUID videoId) {
+        super("Upload session not found or expired for video: " + videoId);
+    }
+}
@@ -0,0 +1,8 @@
+package stream.flow.videoservice.exception.video;
+
+public class TranscodeQueueFullException extends RuntimeException {
+
+    public TranscodeQueueFullException(String message) {
+        super(message);
+    }
+}
@@ -18,6 +18,7 @@ public class VideoQualityMapper {
                 .bitrateVideo(quality.getBitrateVideo())
                 .bitrateAudio(quality.getBitrateAudio())
                 .resolution(quality.getResolution())
+                .codecs(quality.getCodecs())
                 .build();
     }
 
@@ -32,8 +33,20 @@ public class VideoQualityMapper {
                 .bitrateVideo(response.getBitrateVideo())
                 .bitrateAudio(response.getBitrateAudio())
                 .resolution(response.getResolution())
+                .codecs(response.getCodecs())
                 .build();
     }
-}
 
+    public void updateEntity(VideoInfoResponse response, VideoQuality quality) {
+        if (response == null || quality == null) {
+            return;
+        }
 
+        quality.setDuration(response.getDuration());
+        quality.setFileSize(response.getFilesize());
+        quality.setBitrateVideo(response.getBitrateVideo());
+        quality.setBitrateAudio(response.getBitrateAudio());
+        quality.setResolution(response.getResolution());
+        quality.setCodecs(response.getCodecs());
+    }
+}
@@ -0,0 +1,22 @@
+package stream.flow.videoservice.model.dto;
+
+import lombok.*;
+
+import java.util.UUID;
+
+/**
+ * Состояние незавершенной загрузки оригинала по подписанным ссылкам (хранится в Redis)
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class UploadSession {
+
+    private UUID videoId;
+    private String objectName;
+    private String uploadId;
+    private Long fileSize;
+    private Integer partCount;
+}
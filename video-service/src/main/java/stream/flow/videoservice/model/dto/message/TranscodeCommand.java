@@ -0,0 +1,20 @@
+package stream.flow.videoservice.model.dto.message;
+
+import lombok.*;
+
+import java.util.UUID;
+
+/**
+ * Команда на транскодирование видео, публикуется в Kafka при загрузке
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class TranscodeCommand {
+
+    private UUID videoId;
+    private String originalBucket;
+    private String originalObject;
+}
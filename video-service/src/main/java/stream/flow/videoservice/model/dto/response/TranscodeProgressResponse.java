@@ -0,0 +1,23 @@
+package stream.flow.videoservice.model.dto.response;
+
+import lombok.*;
+import stream.flow.videoservice.model.enums.Status;
+
+import java.util.UUID;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class TranscodeProgressResponse {
+
+    private UUID videoId;
+    private Status status;
+    private Double percent;
+    private Long processedSeconds;
+    private Long durationSeconds;
+    private Long etaSeconds;
+    private Double speed;
+    private Long updatedAt;
+}
@@ -0,0 +1,18 @@
+package stream.flow.videoservice.model.dto.response;
+
+import lombok.*;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class TranscodeQueueResponse {
+
+    private Integer queued;
+    private Integer queueCapacity;
+    private Integer running;
+    private Integer usedBudget;
+    private Integer cpuBudget;
+    private Long nextSlotEtaSeconds;
+}
@@ -0,0 +1,14 @@
+package stream.flow.videoservice.model.dto.response;
+
+import lombok.*;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class UploadPartResponse {
+
+    private Integer partNumber;
+    private String url;
+}
@@ -0,0 +1,19 @@
+package stream.flow.videoservice.model.dto.response;
+
+import lombok.*;
+
+import java.util.List;
+import java.util.UUID;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class UploadSessionResponse {
+
+    private UUID videoId;
+    private Long partSize;
+    private List<UploadPartResponse> parts;
+    private Long expiresAt;
+}
@@ -14,4 +14,15 @@ public class VideoInfoResponse {
     private Integer bitrateVideo;
     private Integer bitrateAudio;
     private String resolution;
+    private Integer width;
+    private Integer height;
+    private String codecs;
+    private String videoCodec;
+    private String videoProfile;
+    private String pixelFormat;
+    /** Поворот кадра при воспроизведении в градусах (матрица отображения или тег rotate), 0 - без поворота */
+    private Integer rotation;
+    /** Пропорции пикселя (SAR), например "1:1" или "4:3"; null, если FFprobe их не сообщил */
+    private String sampleAspectRatio;
+    private String audioCodec;
 }
@@ -15,4 +15,5 @@ public class VideoUploadResponse {
     private UUID videoId;
     private Status status;
     private String message;
+    private String thumbnailPath;
 }
@@ -0,0 +1,35 @@
+package stream.flow.videoservice.model.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import stream.flow.videoservice.model.enums.Quality;
+import stream.flow.videoservice.model.enums.RenditionState;
+
+import java.util.UUID;
+
+@Entity
+@Table(name = "rendition_checkpoint")
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RenditionCheckpoint extends BaseEntity {
+
+    @Column(name = "video_id", nullable = false)
+    private UUID videoId;
+
+    @Column(name = "quality_level", nullable = false, length = 50)
+    @Enumerated(EnumType.STRING)
+    private Quality quality;
+
+    @Column(name = "state", nullable = false, length = 20)
+    @Enumerated(EnumType.STRING)
+    private RenditionState state;
+
+    @Column(name = "local_path", length = 1000)
+    private String localPath;
+
+    @Column(name = "storage_path", length = 1000)
+    private String storagePath;
+}
@@ -0,0 +1,53 @@
+package stream.flow.videoservice.model.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import stream.flow.videoservice.model.enums.TranscodeJobStatus;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Entity
+@Table(name = "transcode_job")
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TranscodeJob extends BaseEntity {
+
+    @Column(name = "video_id", nullable = false, unique = true)
+    private UUID videoId;
+
+    @Column(name = "path_original", nullable = false, length = 1000)
+    private String pathOriginal;
+
+    @Column(name = "status", nullable = false, length = 20)
+    @Enumerated(EnumType.STRING)
+    private TranscodeJobStatus status;
+
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts;
+
+    @Column(name = "cost", nullable = false)
+    private Integer cost;
+
+    @Column(name = "work", nullable = false)
+    private Long work;
+
+    /**
+     * Время следующей попытки задает только БД (now()): при постановке в очередь - значение
+     * колонки по умолчанию, при повторе - запрос requeue
+     */
+    @Column(name = "next_attempt_at", nullable = false, insertable = false, updatable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "lease_owner")
+    private String leaseOwner;
+
+    @Column(name = "lease_expires_at")
+    private LocalDateTime leaseExpiresAt;
+
+    @Column(name = "last_error", columnDefinition = "text")
+    private String lastError;
+}
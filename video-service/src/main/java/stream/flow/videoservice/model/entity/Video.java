@@ -30,6 +30,18 @@ public class Video extends BaseEntity {
     @Column(name = "thumbnail_path")
     private String thumbnailPath;
 
+    @Column(name = "hls_manifest_path", length = 1000)
+    private String hlsManifestPath;
+
+    @Column(name = "dash_manifest_path", length = 1000)
+    private String dashManifestPath;
+
+    @Column(name = "storyboard_path", length = 1000)
+    private String storyboardPath;
+
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
     @Column(name = "status", nullable = false)
     @Enumerated(EnumType.STRING)
     @Builder.Default
@@ -38,4 +38,10 @@ public class VideoQuality extends BaseEntity {
 
     @Column(name = "resolution", nullable = false, length = 20)
     private String resolution;
+
+    @Column(name = "codecs", length = 100)
+    private String codecs;
+
+    @Column(name = "target_bitrate")
+    private Integer targetBitrate;
 }
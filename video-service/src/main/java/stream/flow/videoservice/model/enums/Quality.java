@@ -1,9 +1,21 @@
 package stream.flow.videoservice.model.enums;
 
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Качества видео (ступени лестницы кодирования)
+ * Высота кадра и максимальный битрейт видео (kbps) для типичного контента
+ */
+@Getter
+@RequiredArgsConstructor
 public enum Quality {
-    P1080,
-    P720,
-    P480,
-    P360,
-    P240
+    P1080(1080, 5000),
+    P720(720, 3000),
+    P480(480, 1500),
+    P360(360, 800),
+    P240(240, 400);
+
+    private final int height;
+    private final int videoBitrate;
 }
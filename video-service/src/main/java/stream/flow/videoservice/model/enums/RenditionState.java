@@ -0,0 +1,10 @@
+package stream.flow.videoservice.model.enums;
+
+/**
+ * Этапы обработки одного качества, по порядку
+ */
+public enum RenditionState {
+    ENCODED,
+    UPLOADED,
+    PERSISTED
+}
@@ -4,5 +4,6 @@ public enum Status {
     UPLOADING,
     PROCESSING,
     READY,
-    FAILED
+    FAILED,
+    CANCELLED
 }
\ No newline at end of file
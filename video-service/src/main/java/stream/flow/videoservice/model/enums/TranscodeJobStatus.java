@@ -0,0 +1,9 @@
+package stream.flow.videoservice.model.enums;
+
+public enum TranscodeJobStatus {
+    QUEUED,
+    RUNNING,
+    DONE,
+    DEAD,
+    CANCELLED
+}
@@ -0,0 +1,18 @@
+package stream.flow.videoservice.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import stream.flow.videoservice.model.entity.RenditionCheckpoint;
+import stream.flow.videoservice.model.enums.Quality;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface RenditionCheckpointRepository extends JpaRepository<RenditionCheckpoint, UUID> {
+
+    List<RenditionCheckpoint> findByVideoId(UUID videoId);
+
+    Optional<RenditionCheckpoint> findByVideoIdAndQuality(UUID videoId, Quality quality);
+}
@@ -0,0 +1,171 @@
+package stream.flow.videoservice.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import stream.flow.videoservice.model.entity.TranscodeJob;
+import stream.flow.videoservice.model.enums.TranscodeJobStatus;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Все переходы состояния задачи считают время по часам БД (now()),
+ * чтобы расхождение часов между экземплярами не ломало аренды
+ */
+@Repository
+public interface TranscodeJobRepository extends JpaRepository<TranscodeJob, UUID> {
+
+    long countByStatus(TranscodeJobStatus status);
+
+    /**
+     * Транзакционная advisory-блокировка очереди: постановки в очередь со всех экземпляров
+     * выполняются по одной, поэтому проверка длины и вставка не обгоняют друг друга.
+     * Блокировка снимается при завершении транзакции
+     */
+    @Query(value = "SELECT 1 FROM pg_advisory_xact_lock(:key)", nativeQuery = true)
+    Integer lockQueue(@Param("key") long key);
+
+    Optional<TranscodeJob> findByVideoId(UUID videoId);
+
+    /**
+     * Следующая задача, которую можно взять: в очереди и с наступившим временем попытки,
+     * либо выполняющаяся с истекшей арендой (экземпляр упал или завис).
+     * SKIP LOCKED - экземпляры не ждут друг друга и не берут одну задачу дважды
+     *
+     * Порядок - кратчайшая задача первой: объем работы за вычетом старения
+     * (agingRate единиц работы за каждую секунду ожидания). Без старения длинное
+     * видео ждало бы, пока в очереди есть хоть одно короткое
+     */
+    @Query(value = """
+            SELECT * FROM transcode_job
+            WHERE (status = 'QUEUED' AND next_attempt_at <= now())
+               OR (status = 'RUNNING' AND lease_expires_at < now())
+            ORDER BY work - EXTRACT(EPOCH FROM now() - created_at) * :agingRate, created_at
+            LIMIT 1
+            FOR UPDATE SKIP LOCKED
+            """, nativeQuery = true)
+    Optional<TranscodeJob> findNextClaimable(@Param("agingRate") double agingRate);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = """
+            UPDATE transcode_job
+            SET status = 'RUNNING',
+                lease_owner = :owner,
+                lease_expires_at = now() + (:leaseSeconds * interval '1 second'),
+                attempts = attempts + 1,
+                updated_at = now(),
+                version = version + 1
+            WHERE id = :id
+            """, nativeQuery = true)
+    int claim(@Param("id") UUID id, @Param("owner") String owner, @Param("leaseSeconds") long leaseSeconds);
+
+    /**
+     * Продлевает аренду задач этого экземпляра
+     */
+    @Modifying
+    @Query(value = """
+            UPDATE transcode_job
+            SET lease_expires_at = now() + (:leaseSeconds * interval '1 second'),
+                updated_at = now()
+            WHERE id IN (:ids) AND lease_owner = :owner AND status = 'RUNNING'
+            """, nativeQuery = true)
+    int extendLease(@Param("ids") Collection<UUID> ids, @Param("owner") String owner,
+                    @Param("leaseSeconds") long leaseSeconds);
+
+    /**
+     * Возвращает задачу в очередь с экспоненциальной задержкой:
+     * base * 2^(attempts - 1) секунд, но не больше max
+     *
+     * Как и finish, меняет только выполняющуюся задачу указанного владельца: экземпляр,
+     * у которого аренду перехватили, не может завершить или вернуть в очередь чужую попытку
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = """
+            UPDATE transcode_job
+            SET status = 'QUEUED',
+                lease_owner = NULL,
+                lease_expires_at = NULL,
+                last_error = :error,
+                next_attempt_at = now() + (LEAST(:baseSeconds * power(2, GREATEST(attempts - 1, 0)), :maxSeconds)
+                                           * interval '1 second'),
+                updated_at = now(),
+                version = version + 1
+            WHERE id = :id AND lease_owner = :owner AND status = 'RUNNING'
+            """, nativeQuery = true)
+    int requeue(@Param("id") UUID id, @Param("owner") String owner, @Param("error") String error,
+                @Param("baseSeconds") long baseSeconds, @Param("maxSeconds") long maxSeconds);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = """
+            UPDATE transcode_job
+            SET status = :status,
+                lease_owner = NULL,
+                lease_expires_at = NULL,
+                last_error = :error,
+                updated_at = now(),
+                version = version + 1
+            WHERE id = :id AND lease_owner = :owner AND status = 'RUNNING'
+            """, nativeQuery = true)
+    int finish(@Param("id") UUID id, @Param("owner") String owner, @Param("status") String status,
+               @Param("error") String error);
+
+    /**
+     * Отменяет задачу, которая еще в очереди или выполняется.
+     * Завершение и повтор отмененную задачу не меняют, поэтому экземпляр,
+     * который ее выполнял, не вернет ее в очередь
+     *
+     * Аренда сохраняется и больше не продлевается: владелец освобождает задачу через
+     * releaseCancelled, а если он упал - по истечении аренды задачу находит findAbandonedCancelled
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = """
+            UPDATE transcode_job
+            SET status = 'CANCELLED',
+                updated_at = now(),
+                version = version + 1
+            WHERE id = :id AND status IN ('QUEUED', 'RUNNING')
+            """, nativeQuery = true)
+    int cancel(@Param("id") UUID id);
+
+    /**
+     * Какие из задач этого экземпляра отменены (возможно, запросом к другому экземпляру)
+     */
+    @Query(value = """
+            SELECT id FROM transcode_job
+            WHERE id IN (:ids) AND lease_owner = :owner AND status = 'CANCELLED'
+            """, nativeQuery = true)
+    List<UUID> findCancelled(@Param("ids") Collection<UUID> ids, @Param("owner") String owner);
+
+    /**
+     * Отмененные выполнявшиеся задачи, аренда которых истекла, а владелец так их и не
+     * освободил (упал до остановки): их временные файлы и оригинал никто больше не удалит
+     */
+    @Query(value = """
+            SELECT * FROM transcode_job
+            WHERE status = 'CANCELLED' AND lease_owner IS NOT NULL AND lease_expires_at < now()
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+            """, nativeQuery = true)
+    List<TranscodeJob> findAbandonedCancelled(@Param("limit") int limit);
+
+    /**
+     * Снимает аренду с отмененной задачи после удаления ее файлов.
+     * Меняет задачу только указанного владельца, поэтому файлы удаляет кто-то один:
+     * остановившийся владелец или экземпляр, подобравший брошенную задачу
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = """
+            UPDATE transcode_job
+            SET lease_owner = NULL,
+                lease_expires_at = NULL,
+                updated_at = now(),
+                version = version + 1
+            WHERE id = :id AND lease_owner = :owner AND status = 'CANCELLED'
+            """, nativeQuery = true)
+    int releaseCancelled(@Param("id") UUID id, @Param("owner") String owner);
+}
@@ -3,9 +3,16 @@ package stream.flow.videoservice.repository;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 import stream.flow.videoservice.model.entity.VideoQuality;
+import stream.flow.videoservice.model.enums.Quality;
 
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface VideoQualityRepository extends JpaRepository<VideoQuality, UUID>{
+
+    List<VideoQuality> findByVideoId(UUID videoId);
+
+    Optional<VideoQuality> findByVideoIdAndQuality(UUID videoId, Quality quality);
 }
@@ -9,6 +9,7 @@ import stream.flow.videoservice.model.entity.Video;
 import stream.flow.videoservice.model.enums.Status;
 import stream.flow.videoservice.model.enums.Visibility;
 
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
@@ -19,4 +20,10 @@ public interface VideoRepository extends JpaRepository<Video, UUID> {
     Page<Video> findByUser(Users user, Pageable pageable);
     
     Page<Video> findByUserAndStatus(Users user, Status status, Pageable pageable);
+
+    /**
+     * Самое раннее видео с тем же содержимым оригинала в указанном статусе, кроме самого видео
+     */
+    Optional<Video> findFirstByContentHashAndStatusAndIdNotOrderByCreatedAtAsc(String contentHash, Status status,
+                                                                              UUID excludedId);
 }
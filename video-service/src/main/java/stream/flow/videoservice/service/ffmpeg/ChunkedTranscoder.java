@@ -0,0 +1,28 @@
+package stream.flow.videoservice.service.ffmpeg;
+
+import java.util.Map;
+
+/**
+ * Параллельное кодирование одного видео по кускам:
+ * - Деление оригинала на куски по ключевым кадрам
+ * - Одновременное кодирование кусков во все качества
+ * - Склейка кусков каждого качества без перекодирования
+ * - Раскадровка из кадров, снятых при кодировании кусков
+ */
+public interface ChunkedTranscoder {
+
+    /**
+     * Конвертирует видео во все переданные качества, кодируя куски параллельно
+     *
+     * @param inputPath путь к исходному видео файлу
+     * @param outputPaths пути к выходным файлам по качествам
+     * @param audioPath закодированная аудиодорожка, которая добавляется при склейке, или null (без звука)
+     * @param storyboard раскадровка, которую нужно получить из тех же проходов по кускам, или null
+     * @param workDir рабочая директория для кусков
+     * @param listener получатель суммарного прогресса по всем кускам
+     * @return пути к конвертированным файлам по качествам
+     */
+    Map<Rendition, String> convertLadder(String inputPath, Map<Rendition, String> outputPaths, String audioPath,
+                                         StoryboardSpec storyboard, String workDir,
+                                         ProgressListener listener);
+}
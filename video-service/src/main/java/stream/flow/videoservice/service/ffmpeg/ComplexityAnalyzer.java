@@ -0,0 +1,20 @@
+package stream.flow.videoservice.service.ffmpeg;
+
+import stream.flow.videoservice.model.dto.response.VideoInfoResponse;
+
+/**
+ * Оценка сложности контента для подбора битрейта под конкретное видео (per-title)
+ */
+public interface ComplexityAnalyzer {
+
+    /**
+     * Оценивает, во сколько раз видео требует больше (или меньше) бит,
+     * чем типичный контент при том же качестве
+     *
+     * @param inputPath путь к исходному видео файлу
+     * @param source метаданные исходного видео
+     * @param workDir рабочая директория для пробного кодирования
+     * @return множитель битрейта (1.0 - типичный контент)
+     */
+    double analyze(String inputPath, VideoInfoResponse source, String workDir);
+}
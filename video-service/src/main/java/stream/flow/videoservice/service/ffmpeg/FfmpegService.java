@@ -1,7 +1,9 @@
 package stream.flow.videoservice.service.ffmpeg;
 
 import stream.flow.videoservice.model.dto.response.VideoInfoResponse;
-import stream.flow.videoservice.model.enums.Quality;
+
+import java.util.List;
+import java.util.Map;
 
 public interface FfmpegService {
 
@@ -12,8 +14,140 @@ public interface FfmpegService {
      * 
      * @param inputPath путь к исходному видео файлу
      * @param outputPath путь к выходному файлу
-     * @param quality качество для конвертации (P1080, P720, P480, P360, P240)
+     * @param rendition параметры качества для конвертации
+     * @param audioPath закодированная аудиодорожка, которая копируется в файл, или null (без звука)
+     * @param listener получатель прогресса кодирования
      * @return путь к конвертированному файлу
      */
-    String convertQualityVideo(String inputPath, String outputPath, Quality quality);
+    String convertQualityVideo(String inputPath, String outputPath, Rendition rendition, String audioPath,
+                               ProgressListener listener);
+
+    /**
+     * Конвертирует видео во все переданные качества за один проход:
+     * оригинал декодируется один раз и раздается на все выходы
+     *
+     * @param inputPath путь к исходному видео файлу
+     * @param outputPaths пути к выходным файлам по качествам
+     * @param audioPath закодированная аудиодорожка, которая копируется в каждый файл, или null (без звука)
+     * @param storyboard раскадровка, которую нужно получить тем же проходом, или null
+     * @param listener получатель прогресса кодирования
+     * @return пути к конвертированным файлам по качествам
+     */
+    Map<Rendition, String> convertLadder(String inputPath, Map<Rendition, String> outputPaths, String audioPath,
+                                         StoryboardSpec storyboard, ProgressListener listener);
+
+    /**
+     * Конвертирует кусок видео во все качества: ключевые кадры ставятся на границах
+     * сегментов всего видео, а не отсчитываются от начала куска
+     *
+     * @param inputStart позиция начала входа во всем видео, секунды
+     */
+    Map<Rendition, String> convertLadder(String inputPath, Map<Rendition, String> outputPaths, String audioPath,
+                                         StoryboardSpec storyboard, double inputStart, ProgressListener listener);
+
+    /**
+     * Кодирует аудиодорожку видео в AAC один раз для всех качеств
+     *
+     * @param inputPath путь к исходному видео файлу
+     * @param outputPath путь к аудио файлу (M4A)
+     * @return путь к аудио файлу
+     */
+    String encodeAudio(String inputPath, String outputPath);
+
+    /**
+     * Выбирает характерный кадр видео для превью
+     *
+     * @param inputPath путь к видео файлу
+     * @param position с какой секунды начинать поиск кадра
+     * @param outputPath путь к файлу кадра (PNG)
+     * @return путь к файлу кадра
+     */
+    String extractFrame(String inputPath, int position, String outputPath);
+
+    /**
+     * Уменьшает изображение до нескольких ширин и форматов за один процесс
+     *
+     * @param inputPath путь к исходному изображению
+     * @param variants варианты, которые нужно получить
+     */
+    void encodeImageVariants(String inputPath, List<ImageVariant> variants);
+
+    /**
+     * Генерирует листы раскадровки отдельным проходом.
+     * Декодируются только ключевые кадры, поэтому проход намного быстрее кодирования
+     *
+     * @param inputPath путь к видео файлу
+     * @param storyboard параметры раскадровки
+     */
+    void generateStoryboard(String inputPath, StoryboardSpec storyboard);
+
+    /**
+     * Собирает листы раскадровки из отдельных кадров tile_NNNNNN.jpg (кадры кусков).
+     * Декодируются только маленькие JPEG, видео повторно не читается
+     *
+     * @param tilesDir директория с кадрами, пронумерованными подряд с нуля
+     * @param storyboard параметры раскадровки
+     */
+    void tileStoryboard(String tilesDir, StoryboardSpec storyboard);
+
+    /**
+     * Перепаковывает видео в MP4 без перекодирования (-c copy, faststart)
+     *
+     * @param inputPath путь к исходному видео файлу
+     * @param audioPath аудиодорожка, которая заменяет звук исходника, или null (звук исходника)
+     * @param outputPath путь к выходному файлу
+     * @return путь к выходному файлу
+     */
+    String remux(String inputPath, String audioPath, String outputPath);
+
+    /**
+     * Возвращает время (pts) всех ключевых кадров видеопотока в секундах
+     *
+     * @param inputPath путь к видео файлу
+     * @return время ключевых кадров по возрастанию
+     */
+    List<Double> probeKeyframes(String inputPath);
+
+    /**
+     * Нарезает MP4 файл качества на HLS сегменты (fMP4) без перекодирования
+     *
+     * @param inputPath путь к MP4 файлу качества
+     * @param playlistPath путь к медиа-плейлисту, сегменты пишутся в ту же директорию
+     * @param videoOnly нарезать только видеопоток (звук упаковывается отдельной дорожкой)
+     * @return путь к медиа-плейлисту
+     */
+    String packageHls(String inputPath, String playlistPath, boolean videoOnly);
+
+    /**
+     * Делит видео на куски по ключевым кадрам без перекодирования (только видеопоток)
+     *
+     * @param inputPath путь к исходному видео файлу
+     * @param chunkDir директория для кусков
+     * @param chunkDuration желаемая длительность куска в секундах
+     * @return куски в порядке воспроизведения
+     */
+    List<VideoChunk> splitAtKeyframes(String inputPath, String chunkDir, int chunkDuration);
+
+    /**
+     * Склеивает закодированные куски одного качества и аудиодорожку без перекодирования
+     *
+     * @param chunkPaths пути к кускам в порядке воспроизведения
+     * @param audioPath закодированная аудиодорожка или null (без звука)
+     * @param outputPath путь к выходному файлу
+     * @return путь к выходному файлу
+     */
+    String concatChunks(List<String> chunkPaths, String audioPath, String outputPath);
+
+    /**
+     * Кодирует несколько коротких фрагментов видео в один файл с CRF
+     * Используется для быстрой оценки сложности контента
+     *
+     * @param inputPath путь к исходному видео файлу
+     * @param sampleStarts начала фрагментов в секундах
+     * @param sampleDuration длительность каждого фрагмента в секундах
+     * @param height высота кадра пробного кодирования
+     * @param outputPath путь к выходному файлу
+     * @return путь к выходному файлу
+     */
+    String encodeSamples(String inputPath, List<Integer> sampleStarts, int sampleDuration, int height, String outputPath);
 }
@@ -0,0 +1,14 @@
+package stream.flow.videoservice.service.ffmpeg;
+
+/**
+ * Вариант изображения превью
+ *
+ * @param width ширина в пикселях (меньшие исходники не увеличиваются)
+ * @param format формат файла: webp или jpg
+ * @param outputPath путь к выходному файлу
+ */
+public record ImageVariant(
+        int width,
+        String format,
+        String outputPath
+) {}
@@ -0,0 +1,48 @@
+package stream.flow.videoservice.service.ffmpeg;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Запуск внешних процессов (FFmpeg, FFprobe):
+ * - stdout и stderr вычитываются параллельно, поэтому заполненный pipe не блокирует процесс
+ * - от stderr хранится только хвост фиксированного размера
+ * - процесс убивается вместе с дочерними при превышении времени работы,
+ *   при отсутствии вывода и при прерывании вызывающего потока
+ */
+public interface ProcessRunner {
+
+    /**
+     * Запускает процесс и ждет его завершения
+     *
+     * @param command команда с аргументами
+     * @param stdoutReader читатель stdout или null, если вывод не нужен
+     * @param maxDuration максимальное время работы процесса
+     * @param idleTimeout максимальное время без вывода в stdout или stderr
+     * @return код выхода и хвост stderr
+     * @throws stream.flow.videoservice.exception.file.FileUploadException если процесс не запустился,
+     *         превысил таймаут, был прерван или stdout не удалось прочитать
+     */
+    ProcessResult run(List<String> command, OutputReader stdoutReader, Duration maxDuration, Duration idleTimeout);
+
+    /**
+     * Читает stdout процесса. Непрочитанный остаток вывода runner вычитывает сам
+     */
+    @FunctionalInterface
+    interface OutputReader {
+        void read(InputStream stdout) throws IOException;
+    }
+
+    /**
+     * @param exitCode код выхода процесса
+     * @param stderrTail последние байты stderr
+     */
+    record ProcessResult(int exitCode, String stderrTail) {
+
+        public boolean isSuccess() {
+            return exitCode == 0;
+        }
+    }
+}
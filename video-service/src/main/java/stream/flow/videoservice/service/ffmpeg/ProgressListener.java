@@ -0,0 +1,19 @@
+package stream.flow.videoservice.service.ffmpeg;
+
+/**
+ * Получает прогресс кодирования из вывода FFmpeg -progress
+ */
+@FunctionalInterface
+public interface ProgressListener {
+
+    /**
+     * Слушатель, который игнорирует прогресс
+     */
+    ProgressListener NONE = (processedMillis, speed) -> { };
+
+    /**
+     * @param processedMillis сколько миллисекунд видео уже закодировано
+     * @param speed скорость кодирования относительно реального времени (1.0 = realtime), 0 если неизвестна
+     */
+    void onProgress(long processedMillis, double speed);
+}
@@ -0,0 +1,17 @@
+package stream.flow.videoservice.service.ffmpeg;
+
+import stream.flow.videoservice.model.enums.Quality;
+
+/**
+ * Параметры кодирования одного качества, подобранные под конкретный исходник
+ *
+ * @param quality качество, к которому относится выход
+ * @param height высота кадра, ширина вычисляется по пропорциям исходника
+ * @param maxBitrate потолок битрейта видео в kbps
+ */
+public record Rendition(
+        Quality quality,
+        int height,
+        int maxBitrate
+) {
+}
@@ -0,0 +1,81 @@
+package stream.flow.videoservice.service.ffmpeg;
+
+import java.nio.file.Paths;
+import java.util.Locale;
+
+/**
+ * Параметры раскадровки для превью при перемотке
+ *
+ * Кадр берется каждые interval секунд, уменьшается до tileWidth x tileHeight
+ * и укладывается в листы columns x rows кадров (sprite_001.jpg, sprite_002.jpg, ...)
+ *
+ * Раскадровка куска (chunkStart не null) листы не собирает: каждый кадр пишется
+ * отдельным файлом tile_NNNNNN.jpg с номером кадра во всем видео, а листы
+ * потом собираются из кадров всех кусков (FfmpegService.tileStoryboard)
+ *
+ * @param outputDir директория для листов (или кадров куска)
+ * @param chunkStart начало куска во всем видео в секундах или null для видео целиком
+ */
+public record StoryboardSpec(
+        String outputDir,
+        int interval,
+        int tileWidth,
+        int tileHeight,
+        int columns,
+        int rows,
+        Double chunkStart
+) {
+
+    public static final String SPRITE_PREFIX = "sprite_";
+    public static final String TILE_PREFIX = "tile_";
+
+    public StoryboardSpec(String outputDir, int interval, int tileWidth, int tileHeight, int columns, int rows) {
+        this(outputDir, interval, tileWidth, tileHeight, columns, rows, null);
+    }
+
+    /**
+     * Параметры кадров одного куска: те же интервал и размер кадра
+     *
+     * @param chunkDir директория для кадров куска
+     * @param start начало куска во всем видео в секундах
+     */
+    public StoryboardSpec forChunk(String chunkDir, double start) {
+        return new StoryboardSpec(chunkDir, interval, tileWidth, tileHeight, columns, rows, start);
+    }
+
+    public boolean isChunk() {
+        return chunkStart != null;
+    }
+
+    /**
+     * Шаблон имен листов (или кадров куска) для image2 muxer
+     */
+    public String outputPattern() {
+        return isChunk()
+                ? Paths.get(outputDir, TILE_PREFIX + "%06d.jpg").toString()
+                : Paths.get(outputDir, SPRITE_PREFIX + "%03d.jpg").toString();
+    }
+
+    /**
+     * Граф фильтров одного листа: выборка кадров, уменьшение и укладка в сетку.
+     * У куска метки времени сдвигаются на его начало, чтобы кадры выбирались
+     * в тех же точках, что и при проходе по всему видео, а в сетку они не укладываются
+     */
+    public String filter() {
+        String frames = "fps=1/" + interval + ",scale=" + tileWidth + ":" + tileHeight;
+        return isChunk()
+                ? String.format(Locale.ROOT, "setpts=PTS+%.6f/TB,", chunkStart) + frames
+                : frames + "," + tileFilter();
+    }
+
+    /**
+     * Укладка готовых кадров в листы
+     */
+    public String tileFilter() {
+        return "tile=" + columns + "x" + rows;
+    }
+
+    public int tilesPerSprite() {
+        return columns * rows;
+    }
+}
@@ -0,0 +1,9 @@
+package stream.flow.videoservice.service.ffmpeg;
+
+/**
+ * Кусок видео, вырезанный по ключевым кадрам
+ *
+ * @param path путь к файлу куска (метки времени начинаются с нуля)
+ * @param start начало куска в исходном видео в секундах
+ */
+public record VideoChunk(String path, double start) {}
@@ -0,0 +1,268 @@
+package stream.flow.videoservice.service.ffmpeg.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import stream.flow.videoservice.exception.file.FileUploadException;
+import stream.flow.videoservice.service.ffmpeg.ChunkedTranscoder;
+import stream.flow.videoservice.service.ffmpeg.FfmpegService;
+import stream.flow.videoservice.service.ffmpeg.ProgressListener;
+import stream.flow.videoservice.service.ffmpeg.Rendition;
+import stream.flow.videoservice.service.ffmpeg.StoryboardSpec;
+import stream.flow.videoservice.service.ffmpeg.VideoChunk;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * Кодирование по кускам
+ *
+ * Один процесс libx264 не загружает все ядра на одном видео, поэтому оригинал
+ * делится на куски по ключевым кадрам, и куски кодируются одновременно в пуле
+ * chunkExecutor. Каждый кусок проходит ту же лестницу качеств (один декод на кусок),
+ * затем куски каждого качества склеиваются concat demuxer'ом без перекодирования.
+ *
+ * Куски режутся по ключевым кадрам оригинала, и метки времени каждого куска начинаются
+ * с нуля. Принудительные ключевые кадры куска сдвигаются на его начало во всем видео,
+ * поэтому после склейки они стоят на границах сегментов всего видео, как при кодировании
+ * одним процессом. Лишний ключевой кадр остается только в начале каждого куска - он
+ * одинаков во всех качествах, так что GOP качеств остаются выровненными для HLS/DASH.
+ *
+ * Раскадровка снимается той же веткой split в каждом куске: кадры куска получают
+ * номера во всем видео (метки времени сдвинуты на начало куска), а листы
+ * собираются из кадров после кодирования, без отдельного декода всего видео
+ */
+@Slf4j
+@Service
+public class ChunkedTranscoderImpl implements ChunkedTranscoder {
+
+    private final FfmpegService ffmpegService;
+    private final Executor chunkExecutor;
+
+    @Value("${ffmpeg.chunked.chunk-duration:60}")
+    private int chunkDuration;
+
+    public ChunkedTranscoderImpl(FfmpegService ffmpegService,
+                                 @Qualifier("chunkExecutor") Executor chunkExecutor) {
+        this.ffmpegService = ffmpegService;
+        this.chunkExecutor = chunkExecutor;
+    }
+
+    @Override
+    public Map<Rendition, String> convertLadder(String inputPath, Map<Rendition, String> outputPaths, String audioPath,
+                                                StoryboardSpec storyboard, String workDir,
+                                                ProgressListener listener) {
+        log.info("Chunked conversion of {} to ladder {}", inputPath, outputPaths.keySet());
+
+        Path workDirPath = Paths.get(workDir);
+        List<VideoChunk> chunks = ffmpegService.splitAtKeyframes(
+                inputPath, workDirPath.resolve("source").toString(), chunkDuration);
+
+        // Пути выходов каждого куска: chunk_00000/p720.mp4, ..., chunk_00000/storyboard/tile_NNNNNN.jpg
+        List<Map<Rendition, String>> chunkOutputs = new ArrayList<>(chunks.size());
+        List<StoryboardSpec> chunkStoryboards = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            Path chunkOutputDir = workDirPath.resolve(String.format("chunk_%05d", i));
+            Map<Rendition, String> outputs = new LinkedHashMap<>();
+            for (Rendition rendition : outputPaths.keySet()) {
+                outputs.put(rendition, chunkOutputDir.resolve(rendition.quality().name().toLowerCase() + ".mp4").toString());
+            }
+            chunkOutputs.add(outputs);
+            chunkStoryboards.add(storyboard != null
+                    ? storyboard.forChunk(chunkOutputDir.resolve("storyboard").toString(), chunks.get(i).start())
+                    : null);
+        }
+
+        // Кодируем все куски параллельно, каждый кусок - одна лестница качеств.
+        // Время в прогрессе куска отсчитывается от его начала, поэтому общий прогресс -
+        // сумма закодированного времени всех кусков, а скорость - это время, деленное
+        // на прошедшее с начала кодирования (скорости кусков складывать нельзя: куски
+        // в очереди пула еще не начались, а закончившиеся уже не сообщают скорость)
+        AtomicLongArray chunkProgress = new AtomicLongArray(chunks.size());
+        long startedAt = System.nanoTime();
+        List<ChunkTask> tasks = new ArrayList<>(chunks.size());
+        AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+        List<CompletableFuture<Map<Rendition, String>>> futures = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            VideoChunk chunk = chunks.get(i);
+            Map<Rendition, String> outputs = chunkOutputs.get(i);
+            StoryboardSpec chunkStoryboard = chunkStoryboards.get(i);
+            int index = i;
+            ProgressListener chunkListener = (processedMillis, speed) -> {
+                chunkProgress.set(index, processedMillis);
+                long totalMillis = sum(chunkProgress);
+                long elapsedMillis = (System.nanoTime() - startedAt) / 1_000_000;
+                listener.onProgress(totalMillis, elapsedMillis > 0 ? (double) totalMillis / elapsedMillis : 0);
+            };
+            ChunkTask task = new ChunkTask();
+            tasks.add(task);
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                if (!task.start()) {
+                    throw new FileUploadException("Chunk " + index + " cancelled before start");
+                }
+                try {
+                    return ffmpegService.convertLadder(chunk.path(), outputs, null, chunkStoryboard,
+                            chunk.start(), chunkListener);
+                } finally {
+                    task.finish();
+                }
+            }, chunkExecutor).whenComplete((result, error) -> {
+                // Первый упавший кусок останавливает остальные: дальше их результат не нужен
+                if (error != null && firstFailure.compareAndSet(null, error)) {
+                    tasks.forEach(ChunkTask::cancel);
+                }
+            }));
+        }
+
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+        } catch (ExecutionException e) {
+            Throwable failure = firstFailure.get() != null ? firstFailure.get() : e;
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                    ? failure.getCause() : failure;
+            log.error("Chunk encoding failed for {}: {}", inputPath, cause.getMessage(), cause);
+            throw new FileUploadException("Failed to encode chunks: " + cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            // Задачу отменили: cancel(true) не прерывает CompletableFuture, поэтому
+            // прерываем задачи кусков сами - их FFmpeg завершится вместе с ними
+            tasks.forEach(ChunkTask::cancel);
+            Thread.currentThread().interrupt();
+            throw new FileUploadException("Chunk encoding interrupted", e);
+        }
+
+        log.info("All {} chunks encoded for {}", chunks.size(), inputPath);
+
+        // Куски кодируются без звука, готовая аудиодорожка добавляется при склейке
+        for (Map.Entry<Rendition, String> entry : outputPaths.entrySet()) {
+            List<String> qualityChunks = chunkOutputs.stream()
+                    .map(outputs -> outputs.get(entry.getKey()))
+                    .toList();
+            ffmpegService.concatChunks(qualityChunks, audioPath, entry.getValue());
+            deleteQuietly(qualityChunks);
+        }
+
+        deleteQuietly(chunks.stream().map(VideoChunk::path).toList());
+
+        if (storyboard != null) {
+            tileStoryboard(storyboard, chunkStoryboards, workDirPath.resolve("storyboard_tiles"));
+        }
+
+        log.info("Chunked conversion completed: {} -> {}", inputPath, outputPaths);
+        return outputPaths;
+    }
+
+    /**
+     * Собирает листы раскадровки из кадров всех кусков. Кадр на границе кусков
+     * может попасть в оба куска (берется из первого) или ни в один (повторяется
+     * предыдущий кадр), чтобы номера шли подряд, как ждет последовательность изображений.
+     * Раскадровка не нужна для просмотра: при ошибке листов не будет, и раскадровку
+     * снимет отдельный проход при публикации
+     */
+    private void tileStoryboard(StoryboardSpec storyboard, List<StoryboardSpec> chunkStoryboards, Path tilesDir) {
+        try {
+            TreeMap<Integer, Path> tiles = new TreeMap<>();
+            for (StoryboardSpec chunkStoryboard : chunkStoryboards) {
+                Path chunkDir = Paths.get(chunkStoryboard.outputDir());
+                if (!Files.isDirectory(chunkDir)) {
+                    continue;
+                }
+                try (Stream<Path> files = Files.list(chunkDir)) {
+                    files.filter(file -> file.getFileName().toString().startsWith(StoryboardSpec.TILE_PREFIX))
+                            .sorted()
+                            .forEach(file -> {
+                                String name = file.getFileName().toString();
+                                int frame = Integer.parseInt(name.substring(
+                                        StoryboardSpec.TILE_PREFIX.length(), name.length() - ".jpg".length()));
+                                tiles.putIfAbsent(frame, file);
+                            });
+                }
+            }
+            if (tiles.isEmpty()) {
+                log.warn("No storyboard tiles were produced by chunks in {}", tilesDir.getParent());
+                return;
+            }
+
+            Files.createDirectories(tilesDir);
+            Path previous = tiles.firstEntry().getValue();
+            for (int frame = 0; frame <= tiles.lastKey(); frame++) {
+                Path tile = tiles.getOrDefault(frame, previous);
+                Files.copy(tile, tilesDir.resolve(String.format("%s%06d.jpg", StoryboardSpec.TILE_PREFIX, frame)),
+                        StandardCopyOption.REPLACE_EXISTING);
+                previous = tile;
+            }
+
+            ffmpegService.tileStoryboard(tilesDir.toString(), storyboard);
+        } catch (Exception e) {
+            log.error("Failed to tile storyboard from chunks into {}: {}", storyboard.outputDir(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Кодирование одного куска. Пул chunkExecutor общий для всех видео, поэтому прерывается
+     * не поток пула, а задача: поток прерывается, только пока выполняет именно этот кусок,
+     * и прерывание сбрасывается до того, как поток возьмет кусок другого видео
+     */
+    private static final class ChunkTask {
+
+        private Thread thread;
+        private boolean cancelled;
+
+        synchronized boolean start() {
+            if (cancelled) {
+                return false;
+            }
+            thread = Thread.currentThread();
+            return true;
+        }
+
+        synchronized void finish() {
+            thread = null;
+            Thread.interrupted();
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+    }
+
+    private long sum(AtomicLongArray values) {
+        long total = 0;
+        for (int i = 0; i < values.length(); i++) {
+            total += values.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Удаляет промежуточные куски сразу после склейки, чтобы не держать
+     * на диске две копии каждого качества до конца обработки
+     */
+    private void deleteQuietly(List<String> paths) {
+        for (String path : paths) {
+            try {
+                Files.deleteIfExists(Paths.get(path));
+            } catch (IOException e) {
+                log.warn("Failed to delete chunk {}: {}", path, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package stream.flow.videoservice.service.ffmpeg.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import stream.flow.videoservice.model.dto.response.VideoInfoResponse;
+import stream.flow.videoservice.service.ffmpeg.ComplexityAnalyzer;
+import stream.flow.videoservice.service.ffmpeg.FfmpegService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Оценка сложности по пробному CRF кодированию
+ *
+ * Из видео берется несколько равномерно распределенных фрагментов, они кодируются
+ * в низком разрешении с рабочим CRF. Битрейт результата сравнивается с эталонным
+ * битрейтом типичного контента: статичная "говорящая голова" дает множитель < 1,
+ * спорт и динамичные сцены - > 1. Множитель ограничен min-factor..max-factor,
+ * чтобы ошибка оценки не уводила битрейт слишком далеко от дефолтной лестницы.
+ *
+ * Если анализ не удался, возвращается 1.0 - кодирование идет с дефолтными битрейтами.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ComplexityAnalyzerImpl implements ComplexityAnalyzer {
+
+    private static final double DEFAULT_FACTOR = 1.0;
+
+    private final FfmpegService ffmpegService;
+
+    @Value("${ffmpeg.complexity.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ffmpeg.complexity.samples:3}")
+    private int samples;
+
+    @Value("${ffmpeg.complexity.sample-duration:4}")
+    private int sampleDuration;
+
+    @Value("${ffmpeg.complexity.probe-height:360}")
+    private int probeHeight;
+
+    @Value("${ffmpeg.complexity.reference-bitrate:600}")
+    private int referenceBitrate;
+
+    @Value("${ffmpeg.complexity.min-factor:0.5}")
+    private double minFactor;
+
+    @Value("${ffmpeg.complexity.max-factor:1.5}")
+    private double maxFactor;
+
+    @Override
+    public double analyze(String inputPath, VideoInfoResponse source, String workDir) {
+        if (!enabled) {
+            return DEFAULT_FACTOR;
+        }
+
+        int duration = source.getDuration() != null ? source.getDuration() : 0;
+        if (duration <= 0) {
+            log.warn("Unknown duration, skipping complexity analysis: {}", inputPath);
+            return DEFAULT_FACTOR;
+        }
+
+        List<Integer> sampleStarts = sampleStarts(duration);
+        int encodedSeconds = Math.min(sampleDuration, duration) * sampleStarts.size();
+        Path probePath = Paths.get(workDir, "complexity-probe.mp4");
+
+        try {
+            ffmpegService.encodeSamples(inputPath, sampleStarts, sampleDuration, probeHeight, probePath.toString());
+
+            long probeBitrate = Files.size(probePath) * 8 / 1000 / Math.max(1, encodedSeconds);
+            double factor = Math.clamp((double) probeBitrate / referenceBitrate, minFactor, maxFactor);
+
+            log.info("Complexity analysis for {}: probe bitrate {} kbps, factor {}", inputPath, probeBitrate, factor);
+            return factor;
+
+        } catch (Exception e) {
+            log.warn("Complexity analysis failed for {}, using default bitrates: {}", inputPath, e.getMessage());
+            return DEFAULT_FACTOR;
+        } finally {
+            try {
+                Files.deleteIfExists(probePath);
+            } catch (IOException e) {
+                log.debug("Failed to delete complexity probe {}: {}", probePath, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Начала фрагментов равномерно по видео, без самого начала и конца
+     * (заставки и титры не отражают сложность основного контента).
+     * Короткое видео целиком укладывается в один фрагмент
+     */
+    private List<Integer> sampleStarts(int duration) {
+        List<Integer> starts = new ArrayList<>();
+        if (duration <= sampleDuration * samples) {
+            starts.add(0);
+            return starts;
+        }
+
+        for (int i = 1; i <= samples; i++) {
+            starts.add((int) ((long) duration * i / (samples + 1)));
+        }
+        return starts;
+    }
+}
@@ -1,6 +1,7 @@
 package stream.flow.videoservice.service.ffmpeg.impl;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -10,15 +11,29 @@ import stream.flow.videoservice.exception.file.FileOriginalNotFoundException;
 import stream.flow.videoservice.exception.file.FileUploadException;
 import stream.flow.videoservice.exception.file.VideoStreamNotFoundException;
 import stream.flow.videoservice.model.dto.response.VideoInfoResponse;
-import stream.flow.videoservice.model.enums.Quality;
 import stream.flow.videoservice.service.ffmpeg.FfmpegService;
+import stream.flow.videoservice.service.ffmpeg.ImageVariant;
+import stream.flow.videoservice.service.ffmpeg.ProcessRunner;
+import stream.flow.videoservice.service.ffmpeg.ProgressListener;
+import stream.flow.videoservice.service.ffmpeg.Rendition;
+import stream.flow.videoservice.service.ffmpeg.StoryboardSpec;
+import stream.flow.videoservice.service.ffmpeg.VideoChunk;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * Сервис для работы с FFmpeg/FFprobe
@@ -29,6 +44,21 @@ import java.nio.file.Paths;
 @RequiredArgsConstructor
 public class FfmpegServiceImpl implements FfmpegService {
 
+    /**
+     * Расхождение начала куска с границей сегмента, меньшее кадра, считается совпадением, секунды
+     */
+    private static final double KEYFRAME_ALIGN_TOLERANCE = 0.02;
+
+    /**
+     * Поля, которые запрашиваются у FFprobe: остальное (disposition, прочие теги и side data)
+     * не генерируется и не передается через pipe. Поворот приходит из матрицы отображения
+     * (side data), а у старых файлов - из тега rotate
+     */
+    private static final String PROBE_ENTRIES =
+            "format=duration,size,bit_rate"
+                    + ":stream=codec_type,codec_name,profile,level,width,height,pix_fmt,bit_rate,sample_aspect_ratio"
+                    + ":stream_tags=rotate:stream_side_data=rotation";
+
     @Value("${ffmpeg.probe-path}")
     private String ffprobePath;
 
@@ -44,93 +74,99 @@ public class FfmpegServiceImpl implements FfmpegService {
     @Value("${ffmpeg.conversion.audio-bitrate:128}")
     private int audioBitrate;
 
+    @Value("${ffmpeg.audio.loudnorm:false}")
+    private boolean loudnorm;
+
+    @Value("${ffmpeg.conversion.mp4-layout:faststart}")
+    private String mp4Layout;
+
+    @Value("${video.packaging.segment-duration:4}")
+    private int segmentDuration;
+
+    @Value("${ffmpeg.process.max-duration:21600}")
+    private long maxDurationSeconds;
+
+    @Value("${ffmpeg.process.idle-timeout:300}")
+    private long idleTimeoutSeconds;
+
+    @Value("${ffmpeg.process.probe-timeout:120}")
+    private long probeTimeoutSeconds;
+
     private final ObjectMapper objectMapper;
+    private final ProbeCache probeCache;
+    private final ProcessRunner processRunner;
 
     /**
      * Извлекает метаданные из видео файла используя FFprobe
      * 
      * Как это работает:
-     * 1. Запускаем команду ffprobe с параметрами для получения JSON
-     * 2. FFprobe анализирует видео и возвращает информацию в JSON формате
-     * 3. Парсим JSON и извлекаем нужные поля (длительность, разрешение, битрейт и т.д.)
+     * 1. Если файл с тем же размером и временем изменения уже анализировался - берем результат из кеша
+     * 2. Запускаем ffprobe, запрашивая только нужные поля (-show_entries)
+     * 3. Читаем JSON потоковым парсером прямо из stdout процесса, без буферизации всего вывода
      * 4. Возвращаем VideoInfoResponse с метаданными
+     *
+     * Вместо пути можно передать HTTP(S) ссылку (например, подписанную ссылку на объект в хранилище):
+     * FFprobe читает по ней только заголовок контейнера. Такой результат не кешируется
      * 
-     * @param pathOriginal путь к видео файлу
+     * @param pathOriginal путь к видео файлу или HTTP(S) ссылка на него
      * @return метаданные видео
      */
     @Override
     public VideoInfoResponse extractVideoMetadata(String pathOriginal) {
-        log.info("Extracting metadata from video: {}", pathOriginal);
+        if (pathOriginal.startsWith("http://") || pathOriginal.startsWith("https://")) {
+            return probe(pathOriginal);
+        }
+
+        Path path = Paths.get(pathOriginal);
 
         // Проверяем существование файла
-        if (!Files.exists(Paths.get(pathOriginal))) {
+        if (!Files.exists(path)) {
             throw new FileOriginalNotFoundException("Video file not found: " + pathOriginal);
         }
 
+        return probeCache.get(path, () -> probe(pathOriginal));
+    }
+
+    private VideoInfoResponse probe(String pathOriginal) {
+        // Подпись ссылки в лог не пишется
+        log.info("Extracting metadata from video: {}", pathOriginal.split("\\?", 2)[0]);
+
+        // Команда для запуска ffprobe
+        // -v error - в stderr только ошибки
+        // -show_entries - только поля, которые разбирает parseVideoMetadata
+        // -of json - формат вывода JSON
+        List<String> command = List.of(
+            ffprobePath,
+            "-v", "error",
+            "-show_entries", PROBE_ENTRIES,
+            "-of", "json",
+            pathOriginal
+        );
+
         try {
-            // Команда для запуска ffprobe
-            // -v quiet - убирает лишний вывод
-            // -print_format json - формат вывода JSON
-            // -show_format - показать информацию о файле (размер, битрейт и т.д.)
-            // -show_streams - показать информацию о потоках (видео, аудио)
-            ProcessBuilder processBuilder = new ProcessBuilder(
-                ffprobePath,
-                "-v", "quiet",
-                "-print_format", "json",
-                "-show_format",
-                "-show_streams",
-                pathOriginal
-            );
-
-            // Запускаем процесс
-            Process process = processBuilder.start();
-
-            // Читаем вывод команды (JSON)
-            StringBuilder jsonOutput = new StringBuilder();
-            try (BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(process.getInputStream()))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    jsonOutput.append(line);
+            // Разбираем JSON по мере чтения stdout
+            ProbeOutput[] output = new ProbeOutput[1];
+            ProcessRunner.ProcessResult result = processRunner.run(command, stdout -> {
+                try (JsonParser parser = objectMapper.getFactory().createParser(stdout)) {
+                    output[0] = readProbeOutput(parser);
                 }
-            }
+            }, Duration.ofSeconds(probeTimeoutSeconds), Duration.ofSeconds(probeTimeoutSeconds));
 
-            // Читаем ошибки (может быть полезно для отладки)
-            StringBuilder errorOutput = new StringBuilder();
-            try (BufferedReader errorReader = new BufferedReader(
-                    new InputStreamReader(process.getErrorStream()))) {
-                String line;
-                while ((line = errorReader.readLine()) != null) {
-                    errorOutput.append(line);
-                }
+            if (!result.isSuccess()) {
+                log.error("FFprobe failed with exit code {}: {}", result.exitCode(), result.stderrTail());
+                throw new FileUploadException("Failed to extract video metadata: " + result.stderrTail());
             }
 
-            // Ждем завершения процесса
-            int exitCode = process.waitFor();
-            
-            if (exitCode != 0) {
-                log.error("FFprobe failed with exit code {}: {}", exitCode, errorOutput);
-                throw new FileUploadException("Failed to extract video metadata: " + errorOutput);
-            }
-
-            // Парсим JSON
-            JsonNode jsonNode = objectMapper.readTree(jsonOutput.toString());
-            
             // Извлекаем метаданные
-            VideoInfoResponse metadata = parseVideoMetadata(jsonNode, pathOriginal);
+            VideoInfoResponse metadata = parseVideoMetadata(output[0], pathOriginal);
             
             log.info("Metadata extracted successfully: duration={}s, resolution={}, bitrate={}kbps",
                     metadata.getDuration(), metadata.getResolution(), metadata.getBitrateVideo());
             
             return metadata;
 
-        } catch (IOException e) {
-            log.error("IO error while extracting metadata: {}", e.getMessage(), e);
-            throw new FileUploadException("Failed to read video file: " + e.getMessage(), e);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            log.error("Process interrupted while extracting metadata: {}", e.getMessage(), e);
-            throw new FileUploadException("Metadata extraction interrupted", e);
+        } catch (FileUploadException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error extracting metadata: {}", e.getMessage(), e);
             throw new FileUploadException("Failed to extract video metadata: " + e.getMessage(), e);
@@ -138,78 +174,135 @@ public class FfmpegServiceImpl implements FfmpegService {
     }
 
     /**
-     * Парсит JSON от FFprobe и извлекает нужные поля
-     * 
+     * Читает вывод FFprobe потоковым парсером
+     *
      * Структура JSON от FFprobe:
      * {
-     *   "format": {
-     *     "duration": "123.45",
-     *     "size": "12345678",
-     *     "bit_rate": "5000000"
-     *   },
      *   "streams": [
-     *     {
-     *       "codec_type": "video",
-     *       "width": 1920,
-     *       "height": 1080,
-     *       "bit_rate": "4000000"
-     *     },
-     *     {
-     *       "codec_type": "audio",
-     *       "bit_rate": "128000"
-     *     }
-     *   ]
+     *     { "codec_type": "video", "codec_name": "h264", "width": 1920, "height": 1080, "bit_rate": "4000000",
+     *       "tags": { "rotate": "90" }, "side_data_list": [ { "rotation": -90 } ] },
+     *     { "codec_type": "audio", "codec_name": "aac", "bit_rate": "128000" }
+     *   ],
+     *   "format": { "duration": "123.45", "size": "12345678", "bit_rate": "5000000" }
      * }
+     *
+     * Из streams запоминаются только первый видео и первый аудио поток.
+     * Поля вложенных tags и side_data_list запоминаются с префиксом ("tags.rotate",
+     * "side_data_list.rotation"), остальные вложенные объекты пропускаются
      */
-    private VideoInfoResponse parseVideoMetadata(JsonNode jsonNode, String filePath) {
-        JsonNode format = jsonNode.get("format");
-        JsonNode streams = jsonNode.get("streams");
+    private ProbeOutput readProbeOutput(JsonParser parser) throws IOException {
+        Map<String, String> format = Map.of();
+        Map<String, String> videoStream = null;
+        Map<String, String> audioStream = null;
 
-        // Извлекаем информацию о формате файла
-        String durationStr = format.path("duration").asText("0");
-        String sizeStr = format.path("size").asText("0");
-        String bitrateStr = format.path("bit_rate").asText("0");
-
-        // Ищем видео поток
-        JsonNode videoStream = null;
-        JsonNode audioStream = null;
-        
-        for (JsonNode stream : streams) {
-            String codecType = stream.path("codec_type").asText("");
-            if ("video".equals(codecType) && videoStream == null) {
-                videoStream = stream;
-            } else if ("audio".equals(codecType) && audioStream == null) {
-                audioStream = stream;
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new FileUploadException("Unexpected FFprobe output");
+        }
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String section = parser.currentName();
+            JsonToken token = parser.nextToken();
+
+            if ("format".equals(section) && token == JsonToken.START_OBJECT) {
+                format = readFlatObject(parser);
+            } else if ("streams".equals(section) && token == JsonToken.START_ARRAY) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    Map<String, String> stream = readStream(parser);
+                    String codecType = stream.getOrDefault("codec_type", "");
+                    if ("video".equals(codecType) && videoStream == null) {
+                        videoStream = stream;
+                    } else if ("audio".equals(codecType) && audioStream == null) {
+                        audioStream = stream;
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        return new ProbeOutput(format, videoStream, audioStream);
+    }
+
+    /**
+     * Читает поток: скалярные поля, теги и side data
+     */
+    private Map<String, String> readStream(JsonParser parser) throws IOException {
+        Map<String, String> fields = new HashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (value.isScalarValue()) {
+                fields.put(name, parser.getValueAsString());
+            } else if ("tags".equals(name) && value == JsonToken.START_OBJECT) {
+                readFlatObject(parser).forEach((key, tag) -> fields.put("tags." + key, tag));
+            } else if ("side_data_list".equals(name) && value == JsonToken.START_ARRAY) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    readFlatObject(parser).forEach((key, data) -> fields.putIfAbsent("side_data_list." + key, data));
+                }
+            } else {
+                parser.skipChildren();
             }
         }
+        return fields;
+    }
+
+    /**
+     * Читает скалярные поля объекта, на начале которого стоит парсер, как строки
+     */
+    private Map<String, String> readFlatObject(JsonParser parser) throws IOException {
+        Map<String, String> fields = new HashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (value.isScalarValue()) {
+                fields.put(name, parser.getValueAsString());
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Извлекает нужные поля из вывода FFprobe
+     */
+    private VideoInfoResponse parseVideoMetadata(ProbeOutput output, String filePath) {
+        Map<String, String> format = output.format();
+        Map<String, String> videoStream = output.videoStream();
+        Map<String, String> audioStream = output.audioStream();
 
         if (videoStream == null) {
             throw new VideoStreamNotFoundException("No video stream found in file");
         }
 
+        // Извлекаем информацию о формате файла
+        String durationStr = format.getOrDefault("duration", "0");
+        String sizeStr = format.getOrDefault("size", "0");
+        String bitrateStr = format.getOrDefault("bit_rate", "0");
+
         // Извлекаем разрешение
-        int width = videoStream.path("width").asInt(0);
-        int height = videoStream.path("height").asInt(0);
+        int width = parseInt(videoStream.get("width"));
+        int height = parseInt(videoStream.get("height"));
         String resolution = width > 0 && height > 0 
             ? String.format("%dx%d", width, height) 
             : "unknown";
 
         // Извлекаем битрейт видео (может быть в stream или в format)
-        String videoBitrateStr = videoStream.path("bit_rate").asText(bitrateStr);
-        if (videoBitrateStr.isEmpty() || "0".equals(videoBitrateStr)) {
+        String videoBitrateStr = videoStream.getOrDefault("bit_rate", bitrateStr);
+        if (videoBitrateStr.isEmpty() || "0".equals(videoBitrateStr) || "N/A".equals(videoBitrateStr)) {
             videoBitrateStr = bitrateStr;
         }
 
         // Извлекаем битрейт аудио
         String audioBitrateStr = audioStream != null 
-            ? audioStream.path("bit_rate").asText("128000") 
+            ? audioStream.getOrDefault("bit_rate", "128000")
             : "128000";
 
         // Конвертируем строки в числа
-        int duration = (int) Math.round(Double.parseDouble(durationStr));
-        long fileSize = Long.parseLong(sizeStr);
-        int bitrateVideo = Integer.parseInt(videoBitrateStr) / 1000; // конвертируем в kbps
-        int bitrateAudio = Integer.parseInt(audioBitrateStr) / 1000; // конвертируем в kbps
+        int duration = (int) Math.round(parseDouble(durationStr));
+        long fileSize = (long) parseDouble(sizeStr);
+        int bitrateVideo = parseInt(videoBitrateStr) / 1000; // конвертируем в kbps
+        int bitrateAudio = parseInt(audioBitrateStr) / 1000; // конвертируем в kbps
 
         // Если размер файла не указан, получаем его из файловой системы
         if (fileSize == 0) {
@@ -226,36 +319,113 @@ public class FfmpegServiceImpl implements FfmpegService {
                 .bitrateVideo(bitrateVideo)
                 .bitrateAudio(bitrateAudio)
                 .resolution(resolution)
+                .width(width)
+                .height(height)
+                .codecs(buildCodecs(videoStream, audioStream))
+                .videoCodec(videoStream.get("codec_name"))
+                .videoProfile(videoStream.get("profile"))
+                .pixelFormat(videoStream.get("pix_fmt"))
+                .rotation(parseRotation(videoStream))
+                .sampleAspectRatio(videoStream.get("sample_aspect_ratio"))
+                .audioCodec(audioStream != null ? audioStream.get("codec_name") : null)
                 .build();
     }
 
+    /**
+     * Поворот из матрицы отображения, а без нее - из тега rotate, приведенный к 0..359
+     */
+    private int parseRotation(Map<String, String> videoStream) {
+        String rotation = videoStream.getOrDefault("side_data_list.rotation", videoStream.get("tags.rotate"));
+        if (rotation == null) {
+            return 0;
+        }
+        return Math.floorMod((int) Math.round(parseDouble(rotation)), 360);
+    }
+
+    /**
+     * Строит строку кодеков в формате RFC 6381 (например "avc1.64001f,mp4a.40.2")
+     * Нужна для атрибута CODECS в HLS и codecs в DASH MPD
+     *
+     * @return строка кодеков или null, если видеокодек не H.264
+     */
+    private String buildCodecs(Map<String, String> videoStream, Map<String, String> audioStream) {
+        if (!"h264".equals(videoStream.get("codec_name"))) {
+            return null;
+        }
+
+        // avc1.PPCCLL: profile_idc, constraint flags, level_idc в hex
+        String profile = videoStream.getOrDefault("profile", "");
+        int profileIdc = switch (profile) {
+            case "Baseline", "Constrained Baseline" -> 0x42;
+            case "Main" -> 0x4D;
+            case "High 10" -> 0x6E;
+            case "High 4:2:2" -> 0x7A;
+            default -> 0x64; // High
+        };
+        int constraintFlags = "Constrained Baseline".equals(profile) ? 0x40 : 0x00;
+        int levelIdc = parseInt(videoStream.get("level"));
+
+        String codecs = String.format("avc1.%02x%02x%02x", profileIdc, constraintFlags, levelIdc);
+
+        if (audioStream != null && "aac".equals(audioStream.get("codec_name"))) {
+            // HE-AAC - object type 5, остальное считаем AAC-LC (object type 2)
+            String audioObjectType = audioStream.getOrDefault("profile", "").startsWith("HE") ? "5" : "2";
+            codecs += ",mp4a.40." + audioObjectType;
+        }
+
+        return codecs;
+    }
+
+    /**
+     * FFprobe пишет N/A для неизвестных значений
+     */
+    private int parseInt(String value) {
+        return (int) parseDouble(value);
+    }
+
+    private double parseDouble(String value) {
+        if (value == null || value.isEmpty() || "N/A".equals(value)) {
+            return 0;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Поля вывода FFprobe: формат файла и первые видео и аудио потоки (null, если потока нет)
+     */
+    private record ProbeOutput(
+            Map<String, String> format,
+            Map<String, String> videoStream,
+            Map<String, String> audioStream
+    ) {}
+
     /**
      * Конвертирует видео в указанное качество используя FFmpeg
      * 
-     * Параметры конвертации:
-     * - P1080: 1920x1080, битрейт 5000k
-     * - P720: 1280x720, битрейт 3000k
-     * - P480: 854x480, битрейт 1500k
-     * - P360: 640x360, битрейт 800k
-     * - P240: 426x240, битрейт 400k
+     * Высота кадра и потолок битрейта берутся из rendition (см. LadderPlanner),
+     * ширина вычисляется по пропорциям исходника (scale=-2:HEIGHT)
      * 
      * @param inputPath путь к исходному видео файлу
      * @param outputPath путь к выходному файлу
-     * @param quality качество для конвертации
+     * @param rendition параметры качества для конвертации
+     * @param audioPath закодированная аудиодорожка, которая копируется в файл, или null (без звука)
+     * @param listener получатель прогресса кодирования
      * @return путь к конвертированному файлу
      */
     @Override
-    public String convertQualityVideo(String inputPath, String outputPath, Quality quality) {
-        log.info("Converting video: {} to quality: {}, output: {}", inputPath, quality, outputPath);
+    public String convertQualityVideo(String inputPath, String outputPath, Rendition rendition, String audioPath,
+                                      ProgressListener listener) {
+        log.info("Converting video: {} to rendition: {}, output: {}", inputPath, rendition, outputPath);
 
         // Проверяем существование исходного файла
         if (!Files.exists(Paths.get(inputPath))) {
             throw new FileOriginalNotFoundException("Input video file not found: " + inputPath);
         }
 
-        // Получаем параметры конвертации для качества
-        ConversionParams params = getConversionParams(quality);
-
         // Создаем директорию для выходного файла, если нужно
         Path outputFilePath = Paths.get(outputPath);
         try {
@@ -265,63 +435,39 @@ public class FfmpegServiceImpl implements FfmpegService {
             throw new FileUploadException("Failed to create output directory: " + e.getMessage(), e);
         }
 
-        try {
-            // Команда для конвертации видео:
-            // -i input.mp4 - входной файл
-            // -vf scale=WIDTH:HEIGHT - изменение разрешения
-            // -b:v BITRATEk - битрейт видео
-            // -c:v libx264 - видеокодек H.264
-            // -preset PRESET - пресет для скорости/качества конвертации
-            // -crf CRF - Constant Rate Factor (18-28, меньше = лучше качество)
-            // -c:a aac - аудиокодек AAC
-            // -b:a BITRATEk - битрейт аудио
-            // -y - перезаписать выходной файл если существует
-            // output.mp4 - выходной файл
-            ProcessBuilder processBuilder = new ProcessBuilder(
-                ffmpegPath,
-                "-i", inputPath,
-                "-f", "mp4",
-                "-vf", "scale=" + params.width + ":" + params.height,
-                "-b:v", params.videoBitrate + "k",
-                "-c:v", "libx264",
-                "-preset", preset,
-                "-crf", String.valueOf(crf),
-                "-c:a", "aac",
-                "-b:a", audioBitrate + "k",
-                "-y", // перезаписать выходной файл если существует
-                outputPath
-            );
-
-            log.debug("FFmpeg command: {}", String.join(" ", processBuilder.command()));
-
-            // Запускаем процесс
-            Process process = processBuilder.start();
-
-            // Читаем вывод (FFmpeg пишет прогресс в stderr)
-            StringBuilder errorOutput = new StringBuilder();
-            try (BufferedReader errorReader = new BufferedReader(
-                    new InputStreamReader(process.getErrorStream()))) {
-                String line;
-                while ((line = errorReader.readLine()) != null) {
-                    errorOutput.append(line).append("\n");
-                    // Логируем прогресс (FFmpeg выводит время в формате time=00:01:23.45)
-                    if (line.contains("time=")) {
-                        String timeInfo = extractTimeFromProgress(line);
-                        if (timeInfo != null) {
-                            log.debug("Conversion progress: {}", timeInfo);
-                        }
-                    }
-                }
-            }
-
-            // Ждем завершения процесса
-            int exitCode = process.waitFor();
+        // Команда для конвертации видео:
+        // -i input.mp4 - входной файл
+        // -i audio.m4a - заранее закодированная аудиодорожка (если есть)
+        // -vf scale=-2:HEIGHT - изменение разрешения с сохранением пропорций (ширина четная)
+        // -c:v libx264 - видеокодек H.264
+        // -preset PRESET - пресет для скорости/качества конвертации
+        // -crf CRF - Constant Rate Factor (18-28, меньше = лучше качество)
+        // -maxrate/-bufsize - потолок битрейта для CRF
+        // -c:a copy - аудио копируется без перекодирования
+        // -movflags - moov atom в начале файла или фрагментированный MP4
+        // -y - перезаписать выходной файл если существует
+        // output.mp4 - выходной файл
+        List<String> command = new ArrayList<>(List.of(
+            ffmpegPath,
+            "-i", inputPath
+        ));
+        if (audioPath != null) {
+            command.addAll(List.of("-i", audioPath));
+        }
+        command.addAll(List.of(
+            "-f", "mp4",
+            "-map", "0:v:0",
+            "-vf", scaleFilter(rendition)
+        ));
+        command.addAll(encodingArgs(rendition));
+        command.addAll(audioCopyArgs(audioPath));
+        command.addAll(mp4LayoutArgs());
+        command.add("-y"); // перезаписать выходной файл если существует
+        command.add(outputPath);
 
-            if (exitCode != 0) {
-                log.error("FFmpeg conversion failed with exit code {}: {}", exitCode, errorOutput);
-                throw new FileUploadException("Failed to convert video: " + errorOutput);
-            }
+        runFfmpeg(command, listener);
 
+        try {
             // Проверяем, что выходной файл создан
             if (!Files.exists(outputFilePath)) {
                 throw new FileUploadException("Output file was not created: " + outputPath);
@@ -329,61 +475,780 @@ public class FfmpegServiceImpl implements FfmpegService {
 
             long outputFileSize = Files.size(outputFilePath);
             log.info("Video converted successfully: {} -> {} (size: {} bytes, quality: {})",
-                    inputPath, outputPath, outputFileSize, quality);
+                    inputPath, outputPath, outputFileSize, rendition.quality());
 
             return outputPath;
 
         } catch (IOException e) {
             log.error("IO error while converting video: {}", e.getMessage(), e);
             throw new FileUploadException("Failed to convert video: " + e.getMessage(), e);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            log.error("Process interrupted while converting video: {}", e.getMessage(), e);
-            throw new FileUploadException("Video conversion interrupted", e);
-        } catch (Exception e) {
-            log.error("Error converting video: {}", e.getMessage(), e);
-            throw new FileUploadException("Failed to convert video: " + e.getMessage(), e);
         }
     }
 
     /**
-     * Извлекает информацию о времени из строки прогресса FFmpeg
-     * Формат: time=00:01:23.45
+     * Конвертирует видео сразу во все переданные качества одним процессом FFmpeg
+     *
+     * Оригинал декодируется один раз, затем кадры раздаются фильтром split
+     * на отдельные ветки scale, и каждая ветка кодируется в свой выходной файл:
+     * [0:v]split=3[s0][s1][s2];[s0]scale=-2:1080[v0];[s1]scale=-2:720[v1];...
+     *
+     * Раскадровка получается еще одной веткой того же split, без повторного декодирования:
+     * [sN]fps=1/5,scale=160:90,tile=10x10[sb]
+     *
+     * @param inputPath путь к исходному видео файлу
+     * @param outputPaths пути к выходным файлам по качествам
+     * @param audioPath закодированная аудиодорожка, которая копируется в каждый файл, или null (без звука)
+     * @param storyboard раскадровка, которую нужно получить тем же проходом, или null
+     * @param listener получатель прогресса кодирования
+     * @return пути к конвертированным файлам по качествам
      */
-    private String extractTimeFromProgress(String line) {
+    @Override
+    public Map<Rendition, String> convertLadder(String inputPath, Map<Rendition, String> outputPaths, String audioPath,
+                                                StoryboardSpec storyboard, ProgressListener listener) {
+        return convertLadder(inputPath, outputPaths, audioPath, storyboard, 0, listener);
+    }
+
+    @Override
+    public Map<Rendition, String> convertLadder(String inputPath, Map<Rendition, String> outputPaths, String audioPath,
+                                                StoryboardSpec storyboard, double inputStart, ProgressListener listener) {
+        log.info("Converting video: {} to ladder: {}", inputPath, outputPaths.keySet());
+
+        // Проверяем существование исходного файла
+        if (!Files.exists(Paths.get(inputPath))) {
+            throw new FileOriginalNotFoundException("Input video file not found: " + inputPath);
+        }
+
+        if (outputPaths.isEmpty()) {
+            throw new IllegalArgumentException("Ladder must contain at least one quality");
+        }
+
+        // Создаем директории для выходных файлов, если нужно
         try {
-            int timeIndex = line.indexOf("time=");
-            if (timeIndex != -1) {
-                int endIndex = line.indexOf(" ", timeIndex);
-                if (endIndex == -1) {
-                    endIndex = line.length();
+            for (String outputPath : outputPaths.values()) {
+                Files.createDirectories(Paths.get(outputPath).getParent());
+            }
+            if (storyboard != null) {
+                Files.createDirectories(Paths.get(storyboard.outputDir()));
+            }
+        } catch (IOException e) {
+            log.error("Failed to create output directory: {}", e.getMessage(), e);
+            throw new FileUploadException("Failed to create output directory: " + e.getMessage(), e);
+        }
+
+        List<Rendition> renditions = new ArrayList<>(outputPaths.keySet());
+
+        // Граф фильтров: один split на все качества (и раскадровку), затем scale на каждую ветку
+        int branches = renditions.size() + (storyboard != null ? 1 : 0);
+        StringBuilder filterGraph = new StringBuilder("[0:v]split=").append(branches);
+        for (int i = 0; i < branches; i++) {
+            filterGraph.append("[s").append(i).append("]");
+        }
+        for (int i = 0; i < renditions.size(); i++) {
+            filterGraph.append(";[s").append(i).append("]").append(scaleFilter(renditions.get(i)))
+                    .append("[v").append(i).append("]");
+        }
+        if (storyboard != null) {
+            filterGraph.append(";[s").append(renditions.size()).append("]").append(storyboard.filter()).append("[sb]");
+        }
+
+        List<String> command = new ArrayList<>(List.of(
+            ffmpegPath,
+            "-y", // перезаписать выходные файлы если существуют
+            "-i", inputPath
+        ));
+        if (audioPath != null) {
+            command.addAll(List.of("-i", audioPath));
+        }
+        command.addAll(List.of("-filter_complex", filterGraph.toString()));
+
+        // Для каждого качества: своя ветка видео, общая готовая аудиодорожка (если есть) и свой выходной файл
+        for (int i = 0; i < renditions.size(); i++) {
+            Rendition rendition = renditions.get(i);
+            command.addAll(List.of("-map", "[v" + i + "]"));
+            command.addAll(encodingArgs(rendition, inputStart));
+            command.addAll(audioCopyArgs(audioPath));
+            command.addAll(mp4LayoutArgs());
+            command.addAll(List.of("-f", "mp4", outputPaths.get(rendition)));
+        }
+        if (storyboard != null) {
+            command.addAll(List.of("-map", "[sb]"));
+            command.addAll(storyboardOutputArgs(storyboard));
+        }
+
+        runFfmpeg(command, listener);
+
+        for (Map.Entry<Rendition, String> entry : outputPaths.entrySet()) {
+            if (!Files.exists(Paths.get(entry.getValue()))) {
+                throw new FileUploadException("Output file was not created: " + entry.getValue());
+            }
+        }
+
+        log.info("Video ladder converted successfully: {} -> {}", inputPath, outputPaths);
+
+        return outputPaths;
+    }
+
+    /**
+     * Перепаковывает видео в MP4 без перекодирования
+     *
+     * Используется, когда исходник уже подходит под качество (H.264/AAC, нужная высота
+     * и битрейт): копирование потоков занимает секунды вместо минут кодирования.
+     * Выходной файл получает то же расположение атомов, что и закодированные качества
+     */
+    @Override
+    public String remux(String inputPath, String audioPath, String outputPath) {
+        log.info("Remuxing video without re-encoding: {} -> {}", inputPath, outputPath);
+
+        if (!Files.exists(Paths.get(inputPath))) {
+            throw new FileOriginalNotFoundException("Input video file not found: " + inputPath);
+        }
+
+        try {
+            Files.createDirectories(Paths.get(outputPath).getParent());
+        } catch (IOException e) {
+            log.error("Failed to create output directory: {}", e.getMessage(), e);
+            throw new FileUploadException("Failed to create output directory: " + e.getMessage(), e);
+        }
+
+        List<String> command = new ArrayList<>(List.of(
+            ffmpegPath,
+            "-y",
+            "-i", inputPath
+        ));
+        if (audioPath != null) {
+            command.addAll(List.of("-i", audioPath, "-map", "0:v:0", "-map", "1:a:0"));
+        } else {
+            command.addAll(List.of("-map", "0:v:0", "-map", "0:a:0?"));
+        }
+        command.addAll(List.of("-c", "copy"));
+        command.addAll(mp4LayoutArgs());
+        command.addAll(List.of("-f", "mp4", outputPath));
+
+        runFfmpeg(command, ProgressListener.NONE);
+
+        if (!Files.exists(Paths.get(outputPath))) {
+            throw new FileUploadException("Output file was not created: " + outputPath);
+        }
+
+        return outputPath;
+    }
+
+    /**
+     * Время ключевых кадров видеопотока
+     *
+     * -skip_frame nokey - декодируются только ключевые кадры, поэтому проход
+     * намного быстрее полного декодирования
+     */
+    @Override
+    public List<Double> probeKeyframes(String inputPath) {
+        List<String> command = List.of(
+            ffprobePath,
+            "-v", "error",
+            "-select_streams", "v:0",
+            "-skip_frame", "nokey",
+            "-show_entries", "frame=pts_time",
+            "-of", "csv=p=0",
+            inputPath
+        );
+
+        try {
+            List<Double> keyframes = new ArrayList<>();
+            ProcessRunner.ProcessResult result = processRunner.run(command, stdout -> {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(stdout, StandardCharsets.UTF_8));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String value = line.trim();
+                    if (!value.isEmpty() && !"N/A".equals(value)) {
+                        keyframes.add(Double.parseDouble(value));
+                    }
                 }
-                return line.substring(timeIndex, endIndex);
+            }, Duration.ofSeconds(maxDurationSeconds), Duration.ofSeconds(probeTimeoutSeconds));
+
+            if (!result.isSuccess()) {
+                throw new FileUploadException("Failed to probe keyframes, exit code " + result.exitCode()
+                        + ": " + result.stderrTail());
             }
-        } catch (Exception e) {
-            // Игнорируем ошибки парсинга
+
+            return keyframes;
+
+        } catch (FileUploadException e) {
+            log.error("Failed to probe keyframes of {}: {}", inputPath, e.getMessage(), e);
+            throw e;
         }
-        return null;
     }
 
     /**
-     * Параметры конвертации для качества
+     * Нарезает готовый MP4 качества на HLS сегменты fMP4 без перекодирования
+     *
+     * Сегменты режутся по ключевым кадрам, которые при кодировании расставлены
+     * с шагом segment-duration во всех качествах, поэтому границы сегментов
+     * совпадают между качествами и плеер может переключаться на любой из них.
      *
-     * @param videoBitrate в kbps
+     * @param inputPath путь к MP4 файлу качества
+     * @param playlistPath путь к медиа-плейлисту (сегменты пишутся рядом с ним)
+     * @param videoOnly нарезать только видеопоток (звук упаковывается отдельной дорожкой)
+     * @return путь к медиа-плейлисту
      */
-        private record ConversionParams(int width, int height, int videoBitrate) {
+    @Override
+    public String packageHls(String inputPath, String playlistPath, boolean videoOnly) {
+        log.info("Packaging HLS: {} -> {}", inputPath, playlistPath);
+
+        if (!Files.exists(Paths.get(inputPath))) {
+            throw new FileOriginalNotFoundException("Input video file not found: " + inputPath);
+        }
+
+        Path playlistFilePath = Paths.get(playlistPath);
+        Path segmentDir = playlistFilePath.getParent();
+        try {
+            Files.createDirectories(segmentDir);
+        } catch (IOException e) {
+            log.error("Failed to create output directory: {}", e.getMessage(), e);
+            throw new FileUploadException("Failed to create output directory: " + e.getMessage(), e);
+        }
+
+        // -c copy - только перепаковка, без перекодирования
+        // -hls_segment_type fmp4 - CMAF совместимые сегменты (init.mp4 + *.m4s)
+        // -hls_playlist_type vod - плейлист пишется целиком с EXT-X-ENDLIST
+        // -hls_flags temp_file - сегмент получает свое имя только после записи,
+        //   поэтому готовые сегменты можно загружать, пока пишутся следующие
+        List<String> command = List.of(
+            ffmpegPath,
+            "-y",
+            "-i", inputPath,
+            "-map", videoOnly ? "0:v" : "0",
+            "-c", "copy",
+            "-f", "hls",
+            "-hls_time", String.valueOf(segmentDuration),
+            "-hls_playlist_type", "vod",
+            "-hls_segment_type", "fmp4",
+            "-hls_flags", "temp_file",
+            "-hls_fmp4_init_filename", "init.mp4",
+            "-hls_segment_filename", segmentDir.resolve("seg_%05d.m4s").toString(),
+            playlistPath
+        );
+
+        runFfmpeg(command, ProgressListener.NONE);
+
+        if (!Files.exists(playlistFilePath)) {
+            throw new FileUploadException("HLS playlist was not created: " + playlistPath);
+        }
+
+        log.info("HLS packaged successfully: {}", playlistPath);
+
+        return playlistPath;
     }
 
     /**
-     * Возвращает параметры конвертации для указанного качества
+     * Пробное кодирование фрагментов для оценки сложности контента
+     *
+     * Каждый фрагмент подается отдельным входом с быстрым seek (-ss перед -i),
+     * фрагменты склеиваются фильтром concat, уменьшаются до height и кодируются
+     * с тем же CRF, что и основное кодирование, но быстрым пресетом.
+     * Размер результата показывает, сколько бит нужно контенту при заданном качестве.
      */
-    private ConversionParams getConversionParams(Quality quality) {
-        return switch (quality) {
-            case P1080 -> new ConversionParams(1920, 1080, 5000);
-            case P720 -> new ConversionParams(1280, 720, 3000);
-            case P480 -> new ConversionParams(854, 480, 1500);
-            case P360 -> new ConversionParams(640, 360, 800);
-            case P240 -> new ConversionParams(426, 240, 400);
-        };
+    @Override
+    public String encodeSamples(String inputPath, List<Integer> sampleStarts, int sampleDuration, int height, String outputPath) {
+        log.info("Encoding {} complexity samples of {}s from {}", sampleStarts.size(), sampleDuration, inputPath);
+
+        if (!Files.exists(Paths.get(inputPath))) {
+            throw new FileOriginalNotFoundException("Input video file not found: " + inputPath);
+        }
+
+        try {
+            Files.createDirectories(Paths.get(outputPath).getParent());
+        } catch (IOException e) {
+            log.error("Failed to create output directory: {}", e.getMessage(), e);
+            throw new FileUploadException("Failed to create output directory: " + e.getMessage(), e);
+        }
+
+        List<String> command = new ArrayList<>(List.of(ffmpegPath, "-y"));
+        StringBuilder filterGraph = new StringBuilder();
+        for (int i = 0; i < sampleStarts.size(); i++) {
+            command.addAll(List.of(
+                "-ss", String.valueOf(sampleStarts.get(i)),
+                "-t", String.valueOf(sampleDuration),
+                "-i", inputPath
+            ));
+            filterGraph.append("[").append(i).append(":v:0]");
+        }
+        filterGraph.append("concat=n=").append(sampleStarts.size()).append(":v=1:a=0,scale=-2:").append(height).append("[v]");
+
+        command.addAll(List.of(
+            "-filter_complex", filterGraph.toString(),
+            "-map", "[v]",
+            "-an",
+            "-c:v", "libx264",
+            "-preset", "veryfast",
+            "-crf", String.valueOf(crf),
+            "-f", "mp4",
+            outputPath
+        ));
+
+        runFfmpeg(command, ProgressListener.NONE);
+
+        if (!Files.exists(Paths.get(outputPath))) {
+            throw new FileUploadException("Output file was not created: " + outputPath);
+        }
+
+        return outputPath;
+    }
+
+    /**
+     * Делит видео на куски по ключевым кадрам без перекодирования
+     *
+     * Сегментный муксер режет только по ключевым кадрам, поэтому каждый кусок
+     * начинается с IDR кадра и может кодироваться независимо от остальных.
+     * Аудио в куски не попадает: оно добавляется целиком при склейке,
+     * чтобы на стыках кусков не было щелчков и рассинхрона.
+     */
+    @Override
+    public List<VideoChunk> splitAtKeyframes(String inputPath, String chunkDir, int chunkDuration) {
+        log.info("Splitting video {} into ~{}s chunks: {}", inputPath, chunkDuration, chunkDir);
+
+        if (!Files.exists(Paths.get(inputPath))) {
+            throw new FileOriginalNotFoundException("Input video file not found: " + inputPath);
+        }
+
+        Path chunkDirPath = Paths.get(chunkDir);
+        try {
+            Files.createDirectories(chunkDirPath);
+        } catch (IOException e) {
+            log.error("Failed to create chunk directory: {}", e.getMessage(), e);
+            throw new FileUploadException("Failed to create chunk directory: " + e.getMessage(), e);
+        }
+
+        // -f segment - режем по времени, граница сдвигается до ближайшего ключевого кадра
+        // -reset_timestamps 1 - каждый кусок начинается с нулевой метки времени
+        // -segment_list - CSV "имя,начало,конец": начала кусков нужны раскадровке
+        // mkv - контейнер, принимающий любой исходный кодек без перекодирования
+        Path segmentList = chunkDirPath.resolve("chunks.csv");
+        List<String> command = List.of(
+            ffmpegPath,
+            "-y",
+            "-i", inputPath,
+            "-map", "0:v:0",
+            "-an",
+            "-c", "copy",
+            "-f", "segment",
+            "-segment_time", String.valueOf(chunkDuration),
+            "-reset_timestamps", "1",
+            "-segment_list", segmentList.toString(),
+            "-segment_list_type", "csv",
+            chunkDirPath.resolve("chunk_%05d.mkv").toString()
+        );
+
+        runFfmpeg(command, ProgressListener.NONE);
+
+        try (Stream<String> lines = Files.lines(segmentList, StandardCharsets.UTF_8)) {
+            List<VideoChunk> chunks = lines
+                    .filter(line -> !line.isBlank())
+                    .map(line -> line.split(","))
+                    .map(fields -> new VideoChunk(chunkDirPath.resolve(fields[0]).toString(), Double.parseDouble(fields[1])))
+                    .toList();
+
+            if (chunks.isEmpty()) {
+                throw new FileUploadException("No chunks were created for: " + inputPath);
+            }
+
+            log.info("Video split into {} chunks: {}", chunks.size(), inputPath);
+            return chunks;
+
+        } catch (IOException e) {
+            log.error("Failed to read chunk list in {}: {}", chunkDir, e.getMessage(), e);
+            throw new FileUploadException("Failed to read chunk list: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Склеивает куски одного качества через concat demuxer и добавляет готовую аудиодорожку,
+     * оба потока копируются без перекодирования
+     */
+    @Override
+    public String concatChunks(List<String> chunkPaths, String audioPath, String outputPath) {
+        log.info("Concatenating {} chunks into {}", chunkPaths.size(), outputPath);
+
+        Path listPath = Paths.get(outputPath + ".concat.txt");
+        try {
+            Files.createDirectories(listPath.getParent());
+
+            // Формат списка concat demuxer: file '<путь>', одинарные кавычки экранируются
+            StringBuilder list = new StringBuilder();
+            for (String chunkPath : chunkPaths) {
+                String absolute = Paths.get(chunkPath).toAbsolutePath().toString();
+                list.append("file '").append(absolute.replace("'", "'\\''")).append("'\n");
+            }
+            Files.writeString(listPath, list.toString(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            log.error("Failed to write concat list: {}", e.getMessage(), e);
+            throw new FileUploadException("Failed to write concat list: " + e.getMessage(), e);
+        }
+
+        List<String> command = new ArrayList<>(List.of(
+            ffmpegPath,
+            "-y",
+            "-f", "concat",
+            "-safe", "0",
+            "-i", listPath.toString()
+        ));
+        if (audioPath != null) {
+            command.addAll(List.of("-i", audioPath));
+        }
+        command.addAll(List.of("-map", "0:v:0", "-c:v", "copy"));
+        command.addAll(audioCopyArgs(audioPath));
+        command.addAll(mp4LayoutArgs());
+        command.addAll(List.of("-f", "mp4", outputPath));
+
+        runFfmpeg(command, ProgressListener.NONE);
+
+        if (!Files.exists(Paths.get(outputPath))) {
+            throw new FileUploadException("Output file was not created: " + outputPath);
+        }
+
+        log.info("Chunks concatenated successfully: {}", outputPath);
+        return outputPath;
+    }
+
+    /**
+     * Параметры кодирования одного выходного файла (видео H.264 + аудио AAC)
+     *
+     * Ключевые кадры принудительно ставятся каждые segment-duration секунд,
+     * а scene-cut отключен, чтобы GOP всех качеств совпадали для HLS/DASH.
+     * Качество задается CRF, а maxrate/bufsize ограничивают битрейт сверху
+     * (в связке с -crf параметр -b:v libx264 игнорирует)
+     */
+    private List<String> encodingArgs(Rendition rendition) {
+        return encodingArgs(rendition, 0);
+    }
+
+    /**
+     * @param inputStart позиция начала входа во всем видео: у куска метки времени начинаются
+     * с нуля, поэтому первый принудительный ключевой кадр сдвигается до ближайшей границы
+     * сегмента всего видео. Первый кадр куска остается ключевым (кусок с него начинается)
+     */
+    private List<String> encodingArgs(Rendition rendition, double inputStart) {
+        double firstKeyframe = (segmentDuration - inputStart % segmentDuration) % segmentDuration;
+        // Граница в пределах кадра от начала куска - это и есть его первый кадр
+        if (firstKeyframe < KEYFRAME_ALIGN_TOLERANCE || segmentDuration - firstKeyframe < KEYFRAME_ALIGN_TOLERANCE) {
+            firstKeyframe = 0;
+        }
+        String forceKeyFrames = firstKeyframe == 0
+                ? "expr:gte(t,n_forced*" + segmentDuration + ")"
+                : String.format(Locale.ROOT, "expr:gte(t,%.6f+n_forced*%d)", firstKeyframe, segmentDuration);
+
+        return List.of(
+            "-c:v", "libx264",
+            "-preset", preset,
+            "-crf", String.valueOf(crf),
+            "-maxrate", rendition.maxBitrate() + "k",
+            "-bufsize", (rendition.maxBitrate() * 2) + "k",
+            "-pix_fmt", "yuv420p",
+            "-force_key_frames", forceKeyFrames,
+            "-sc_threshold", "0"
+        );
+    }
+
+    /**
+     * Аудио выходного файла: готовая дорожка (второй вход команды) копируется как есть,
+     * без нее файл пишется без звука
+     */
+    private List<String> audioCopyArgs(String audioPath) {
+        if (audioPath == null) {
+            return List.of("-an");
+        }
+        return List.of("-map", "1:a:0", "-c:a", "copy");
+    }
+
+    /**
+     * Кодирует звук один раз для всех качеств
+     *
+     * -vn - видеопоток не декодируется, поэтому проход занимает секунды.
+     * loudnorm (если включен) приводит громкость к -16 LUFS, чтобы видео
+     * разных авторов звучали одинаково громко
+     */
+    @Override
+    public String encodeAudio(String inputPath, String outputPath) {
+        log.info("Encoding audio track: {} -> {}", inputPath, outputPath);
+
+        if (!Files.exists(Paths.get(inputPath))) {
+            throw new FileOriginalNotFoundException("Input video file not found: " + inputPath);
+        }
+
+        try {
+            Files.createDirectories(Paths.get(outputPath).getParent());
+        } catch (IOException e) {
+            log.error("Failed to create output directory: {}", e.getMessage(), e);
+            throw new FileUploadException("Failed to create output directory: " + e.getMessage(), e);
+        }
+
+        List<String> command = new ArrayList<>(List.of(
+            ffmpegPath,
+            "-y",
+            "-i", inputPath,
+            "-vn",
+            "-map", "0:a:0"
+        ));
+        if (loudnorm) {
+            command.addAll(List.of("-af", "loudnorm=I=-16:TP=-1.5:LRA=11"));
+        }
+        command.addAll(List.of(
+            "-c:a", "aac",
+            "-b:a", audioBitrate + "k",
+            "-ac", "2"
+        ));
+        command.addAll(mp4LayoutArgs());
+        command.addAll(List.of("-f", "mp4", outputPath));
+
+        runFfmpeg(command, ProgressListener.NONE);
+
+        if (!Files.exists(Paths.get(outputPath))) {
+            throw new FileUploadException("Audio file was not created: " + outputPath);
+        }
+
+        return outputPath;
+    }
+
+    /**
+     * Фильтр thumbnail выбирает из каждых 100 кадров самый характерный
+     * (ближайший к средней гистограмме), что отсекает черные кадры и переходы
+     */
+    @Override
+    public String extractFrame(String inputPath, int position, String outputPath) {
+        log.info("Extracting thumbnail frame from {} at {}s", inputPath, position);
+
+        try {
+            Files.createDirectories(Paths.get(outputPath).getParent());
+        } catch (IOException e) {
+            log.error("Failed to create output directory: {}", e.getMessage(), e);
+            throw new FileUploadException("Failed to create output directory: " + e.getMessage(), e);
+        }
+
+        List<String> command = List.of(
+            ffmpegPath,
+            "-y",
+            "-ss", String.valueOf(position),
+            "-i", inputPath,
+            "-vf", "thumbnail=100",
+            "-frames:v", "1",
+            "-f", "image2",
+            outputPath
+        );
+
+        runFfmpeg(command, ProgressListener.NONE);
+
+        if (!Files.exists(Paths.get(outputPath))) {
+            throw new FileUploadException("Thumbnail frame was not created: " + outputPath);
+        }
+
+        return outputPath;
+    }
+
+    /**
+     * Изображение декодируется один раз и раздается через split на все варианты:
+     * [0:v]split=2[s0][s1];[s0]scale='min(iw,640)':-2[v0];[s1]scale='min(iw,320)':-2[v1]
+     */
+    @Override
+    public void encodeImageVariants(String inputPath, List<ImageVariant> variants) {
+        log.info("Encoding {} image variants of {}", variants.size(), inputPath);
+
+        if (variants.isEmpty()) {
+            throw new IllegalArgumentException("At least one image variant is required");
+        }
+
+        try {
+            for (ImageVariant variant : variants) {
+                Files.createDirectories(Paths.get(variant.outputPath()).getParent());
+            }
+        } catch (IOException e) {
+            log.error("Failed to create output directory: {}", e.getMessage(), e);
+            throw new FileUploadException("Failed to create output directory: " + e.getMessage(), e);
+        }
+
+        StringBuilder filterGraph = new StringBuilder("[0:v]split=").append(variants.size());
+        for (int i = 0; i < variants.size(); i++) {
+            filterGraph.append("[s").append(i).append("]");
+        }
+        for (int i = 0; i < variants.size(); i++) {
+            filterGraph.append(";[s").append(i).append("]scale='min(iw,").append(variants.get(i).width())
+                    .append(")':-2[v").append(i).append("]");
+        }
+
+        List<String> command = new ArrayList<>(List.of(
+            ffmpegPath,
+            "-y",
+            "-i", inputPath,
+            "-filter_complex", filterGraph.toString()
+        ));
+
+        for (int i = 0; i < variants.size(); i++) {
+            ImageVariant variant = variants.get(i);
+            command.addAll(List.of("-map", "[v" + i + "]", "-frames:v", "1"));
+            command.addAll("webp".equals(variant.format())
+                    ? List.of("-c:v", "libwebp", "-quality", "80")
+                    : List.of("-c:v", "mjpeg", "-q:v", "3"));
+            command.addAll(List.of("-f", "image2", variant.outputPath()));
+        }
+
+        runFfmpeg(command, ProgressListener.NONE);
+
+        for (ImageVariant variant : variants) {
+            if (!Files.exists(Paths.get(variant.outputPath()))) {
+                throw new FileUploadException("Image variant was not created: " + variant.outputPath());
+            }
+        }
+    }
+
+    @Override
+    public void generateStoryboard(String inputPath, StoryboardSpec storyboard) {
+        log.info("Generating storyboard for {} into {}", inputPath, storyboard.outputDir());
+
+        try {
+            Files.createDirectories(Paths.get(storyboard.outputDir()));
+        } catch (IOException e) {
+            log.error("Failed to create storyboard directory: {}", e.getMessage(), e);
+            throw new FileUploadException("Failed to create storyboard directory: " + e.getMessage(), e);
+        }
+
+        // -skip_frame nokey - декодер пропускает все кадры, кроме ключевых;
+        // fps дублирует ближайший ключевой кадр, если между ними больше interval секунд
+        List<String> command = new ArrayList<>(List.of(
+            ffmpegPath,
+            "-y",
+            "-skip_frame", "nokey",
+            "-i", inputPath,
+            "-vf", storyboard.filter()
+        ));
+        command.addAll(storyboardOutputArgs(storyboard));
+
+        runFfmpeg(command, ProgressListener.NONE);
+    }
+
+    @Override
+    public void tileStoryboard(String tilesDir, StoryboardSpec storyboard) {
+        log.info("Tiling storyboard from {} into {}", tilesDir, storyboard.outputDir());
+
+        try {
+            Files.createDirectories(Paths.get(storyboard.outputDir()));
+        } catch (IOException e) {
+            log.error("Failed to create storyboard directory: {}", e.getMessage(), e);
+            throw new FileUploadException("Failed to create storyboard directory: " + e.getMessage(), e);
+        }
+
+        // Кадры читаются как последовательность изображений, tile укладывает их в листы
+        List<String> command = new ArrayList<>(List.of(
+            ffmpegPath,
+            "-y",
+            "-framerate", "1",
+            "-start_number", "0",
+            "-i", Paths.get(tilesDir, StoryboardSpec.TILE_PREFIX + "%06d.jpg").toString(),
+            "-vf", storyboard.tileFilter()
+        ));
+        command.addAll(storyboardOutputArgs(storyboard));
+
+        runFfmpeg(command, ProgressListener.NONE);
+    }
+
+    /**
+     * Выход листов раскадровки: JPEG через image2 muxer.
+     * passthrough - каждый лист пишется один раз, без дублирования кадров под частоту выхода.
+     * Кадры куска называются по своей метке времени (-frame_pts): после fps=1/interval
+     * она равна номеру кадра во всем видео
+     */
+    private List<String> storyboardOutputArgs(StoryboardSpec storyboard) {
+        List<String> args = new ArrayList<>(List.of(
+            "-an",
+            "-fps_mode", "passthrough",
+            "-c:v", "mjpeg",
+            "-q:v", "5",
+            "-f", "image2"
+        ));
+        if (storyboard.isChunk()) {
+            args.addAll(List.of("-frame_pts", "1"));
+        }
+        args.add(storyboard.outputPattern());
+        return args;
+    }
+
+    /**
+     * Расположение атомов выходного MP4 для прогрессивного воспроизведения
+     *
+     * faststart - после кодирования moov atom переносится в начало файла
+     * (лишний проход записи файла, зато плеер стартует с первых байт).
+     * fragmented - пустой moov в начале и фрагмент moof+mdat на каждый ключевой кадр,
+     * файл сразу пишется в потоковом виде без переписывания
+     */
+    private List<String> mp4LayoutArgs() {
+        if ("fragmented".equalsIgnoreCase(mp4Layout)) {
+            return List.of("-movflags", "+frag_keyframe+empty_moov+default_base_moof");
+        }
+        return List.of("-movflags", "+faststart");
+    }
+
+    /**
+     * Запускает FFmpeg с указанными аргументами и ждет завершения
+     * Ненулевой код выхода превращается в FileUploadException с хвостом stderr
+     *
+     * Прогресс читается из машинного вывода -progress pipe:1 (блоки key=value в stdout,
+     * каждый блок заканчивается строкой progress=continue|end). Блоки приходят
+     * примерно раз в полсекунды, поэтому тишина дольше idle-timeout означает зависание
+     */
+    private void runFfmpeg(List<String> command, ProgressListener listener) {
+        List<String> progressCommand = new ArrayList<>(command);
+        progressCommand.addAll(1, List.of("-progress", "pipe:1", "-nostats"));
+
+        ProcessRunner.ProcessResult result = processRunner.run(
+                progressCommand, stdout -> readProgress(stdout, listener),
+                Duration.ofSeconds(maxDurationSeconds), Duration.ofSeconds(idleTimeoutSeconds));
+
+        if (!result.isSuccess()) {
+            log.error("FFmpeg conversion failed with exit code {}: {}", result.exitCode(), result.stderrTail());
+            throw new FileUploadException("Failed to convert video: " + result.stderrTail());
+        }
+    }
+
+    /**
+     * Разбирает блоки -progress: out_time_us - закодированное время в микросекундах
+     * (N/A до первого кадра), speed - скорость в формате 1.5x
+     */
+    private void readProgress(InputStream stdout, ProgressListener listener) throws IOException {
+        long processedMillis = 0;
+        double speed = 0;
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(stdout, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            int separator = line.indexOf('=');
+            if (separator <= 0) {
+                continue;
+            }
+
+            String key = line.substring(0, separator);
+            String value = line.substring(separator + 1).trim();
+            try {
+                switch (key) {
+                    case "out_time_us" -> {
+                        if (!"N/A".equals(value)) {
+                            processedMillis = Math.max(0, Long.parseLong(value) / 1000);
+                        }
+                    }
+                    case "speed" -> {
+                        if (value.endsWith("x")) {
+                            speed = Double.parseDouble(value.substring(0, value.length() - 1));
+                        }
+                    }
+                    case "progress" -> listener.onProgress(processedMillis, speed);
+                    default -> { }
+                }
+            } catch (NumberFormatException e) {
+                // Игнорируем ошибки парсинга
+            }
+        }
+    }
+
+    /**
+     * Фильтр масштабирования до высоты качества с сохранением пропорций исходника
+     * -2 - ширина вычисляется автоматически и округляется до четной (требование libx264)
+     */
+    private String scaleFilter(Rendition rendition) {
+        return "scale=-2:" + rendition.height();
     }
 }
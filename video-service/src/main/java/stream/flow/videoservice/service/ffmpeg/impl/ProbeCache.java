@@ -0,0 +1,77 @@
+package stream.flow.videoservice.service.ffmpeg.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import stream.flow.videoservice.model.dto.response.VideoInfoResponse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Кеш результатов FFprobe
+ *
+ * Ключ - абсолютный путь, размер и время изменения файла: перезаписанный файл
+ * (например, качество после повторного кодирования) получает новый ключ,
+ * поэтому инвалидация не нужна. Старые записи вытесняются по LRU
+ */
+@Slf4j
+@Component
+public class ProbeCache {
+
+    private final Map<Key, VideoInfoResponse> entries;
+
+    public ProbeCache(@Value("${ffmpeg.probe.cache-size:256}") int maxEntries) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, VideoInfoResponse> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Возвращает закешированный результат или выполняет probe и запоминает его
+     *
+     * Probe выполняется вне блокировки: одновременные запросы одного файла
+     * могут запустить FFprobe дважды, но не блокируют друг друга на время процесса
+     */
+    public VideoInfoResponse get(Path path, Supplier<VideoInfoResponse> probe) {
+        Key key = key(path);
+        if (key == null) {
+            return probe.get();
+        }
+
+        synchronized (entries) {
+            VideoInfoResponse cached = entries.get(key);
+            if (cached != null) {
+                log.debug("Probe cache hit: {}", path);
+                return cached;
+            }
+        }
+
+        VideoInfoResponse result = probe.get();
+        synchronized (entries) {
+            entries.put(key, result);
+        }
+        return result;
+    }
+
+    private Key key(Path path) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return new Key(path.toAbsolutePath().normalize().toString(), attributes.size(),
+                    attributes.lastModifiedTime().toMillis());
+        } catch (IOException e) {
+            log.debug("Failed to read attributes of {}, probing without cache: {}", path, e.getMessage());
+            return null;
+        }
+    }
+
+    private record Key(String path, long size, long modifiedMillis) {}
+}
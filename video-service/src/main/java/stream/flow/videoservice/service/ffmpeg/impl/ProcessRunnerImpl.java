@@ -0,0 +1,213 @@
+package stream.flow.videoservice.service.ffmpeg.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import stream.flow.videoservice.exception.file.FileUploadException;
+import stream.flow.videoservice.service.ffmpeg.ProcessRunner;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Вызывающий поток работает сторожем: ждет процесс короткими интервалами
+ * и проверяет общий таймаут и время последнего вывода. stdout и stderr
+ * читаются в виртуальных потоках, любой прочитанный байт обновляет время активности
+ *
+ * Память на процесс ограничена хвостом stderr (ffmpeg.process.stderr-tail байт),
+ * сколько бы ни длилось кодирование
+ */
+@Slf4j
+@Service
+public class ProcessRunnerImpl implements ProcessRunner {
+
+    private static final long WATCHDOG_INTERVAL_MILLIS = 500;
+    private static final long KILL_GRACE_SECONDS = 5;
+
+    private final int stderrTailBytes;
+
+    public ProcessRunnerImpl(@Value("${ffmpeg.process.stderr-tail:16384}") int stderrTailBytes) {
+        this.stderrTailBytes = stderrTailBytes;
+    }
+
+    @Override
+    public ProcessResult run(List<String> command, OutputReader stdoutReader, Duration maxDuration, Duration idleTimeout) {
+        String name = command.getFirst();
+        log.debug("Running process: {}", String.join(" ", command));
+
+        Process process;
+        try {
+            process = new ProcessBuilder(command).start();
+        } catch (IOException e) {
+            log.error("Failed to start {}: {}", name, e.getMessage(), e);
+            throw new FileUploadException("Failed to start " + name + ": " + e.getMessage(), e);
+        }
+
+        AtomicLong lastActivity = new AtomicLong(System.nanoTime());
+        TailBuffer stderr = new TailBuffer(stderrTailBytes);
+        AtomicReference<Exception> readFailure = new AtomicReference<>();
+
+        Thread errorDrain = Thread.ofVirtual().name(name + "-stderr-" + process.pid()).start(() -> {
+            try (InputStream errorStream = new ActivityInputStream(process.getErrorStream(), lastActivity)) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = errorStream.read(buffer)) >= 0) {
+                    stderr.write(buffer, read);
+                }
+            } catch (IOException e) {
+                log.debug("Failed to read {} stderr: {}", name, e.getMessage());
+            }
+        });
+
+        Thread outputDrain = Thread.ofVirtual().name(name + "-stdout-" + process.pid()).start(() -> {
+            try (InputStream outputStream = new ActivityInputStream(process.getInputStream(), lastActivity)) {
+                try {
+                    if (stdoutReader != null) {
+                        stdoutReader.read(outputStream);
+                    }
+                } catch (Exception e) {
+                    readFailure.set(e);
+                }
+                // Остаток вывода вычитываем, чтобы процесс не встал на записи в pipe
+                outputStream.transferTo(OutputStream.nullOutputStream());
+            } catch (IOException e) {
+                log.debug("Failed to read {} stdout: {}", name, e.getMessage());
+            }
+        });
+
+        long deadline = System.nanoTime() + maxDuration.toNanos();
+        try {
+            while (!process.waitFor(WATCHDOG_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                long now = System.nanoTime();
+                if (now - deadline > 0) {
+                    killTree(process);
+                    log.error("{} exceeded max duration {}, killed: {}", name, maxDuration, stderr);
+                    throw new FileUploadException(name + " exceeded max duration " + maxDuration + ": " + stderr);
+                }
+                if (now - lastActivity.get() > idleTimeout.toNanos()) {
+                    killTree(process);
+                    log.error("{} produced no output for {}, killed: {}", name, idleTimeout, stderr);
+                    throw new FileUploadException(name + " produced no output for " + idleTimeout + ": " + stderr);
+                }
+            }
+
+            outputDrain.join();
+            errorDrain.join();
+
+        } catch (InterruptedException e) {
+            killTree(process);
+            Thread.currentThread().interrupt();
+            log.warn("{} interrupted, process {} killed", name, process.pid());
+            throw new FileUploadException(name + " interrupted", e);
+        }
+
+        int exitCode = process.exitValue();
+        Exception failure = readFailure.get();
+        if (failure != null && exitCode == 0) {
+            log.error("Failed to read {} output: {}", name, failure.getMessage(), failure);
+            throw new FileUploadException("Failed to read " + name + " output: " + failure.getMessage(), failure);
+        }
+
+        return new ProcessResult(exitCode, stderr.toString());
+    }
+
+    /**
+     * Завершает процесс и всех его потомков: сначала мягко (SIGTERM, FFmpeg успевает
+     * закрыть файлы), через KILL_GRACE_SECONDS - принудительно
+     */
+    private void killTree(Process process) {
+        List<ProcessHandle> descendants = process.descendants().toList();
+        descendants.forEach(ProcessHandle::destroy);
+        process.destroy();
+
+        try {
+            if (!process.waitFor(KILL_GRACE_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("Process {} did not exit after SIGTERM, killing forcibly", process.pid());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        descendants.forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+
+    /**
+     * Кольцевой буфер последних байтов вывода
+     */
+    private static final class TailBuffer {
+
+        private final byte[] buffer;
+        private int position;
+        private boolean wrapped;
+
+        TailBuffer(int capacity) {
+            this.buffer = new byte[capacity];
+        }
+
+        synchronized void write(byte[] data, int length) {
+            int offset = Math.max(0, length - buffer.length);
+            int remaining = length - offset;
+            if (offset > 0) {
+                wrapped = true;
+            }
+
+            while (remaining > 0) {
+                int chunk = Math.min(remaining, buffer.length - position);
+                System.arraycopy(data, offset, buffer, position, chunk);
+                position = (position + chunk) % buffer.length;
+                if (position == 0) {
+                    wrapped = true;
+                }
+                offset += chunk;
+                remaining -= chunk;
+            }
+        }
+
+        @Override
+        public synchronized String toString() {
+            if (!wrapped) {
+                return new String(buffer, 0, position, StandardCharsets.UTF_8);
+            }
+            byte[] ordered = new byte[buffer.length];
+            System.arraycopy(buffer, position, ordered, 0, buffer.length - position);
+            System.arraycopy(buffer, 0, ordered, buffer.length - position, position);
+            return new String(ordered, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Отмечает время каждого чтения из потока процесса
+     */
+    private static final class ActivityInputStream extends FilterInputStream {
+
+        private final AtomicLong lastActivity;
+
+        ActivityInputStream(InputStream in, AtomicLong lastActivity) {
+            super(in);
+            this.lastActivity = lastActivity;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            lastActivity.set(System.nanoTime());
+            return value;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            lastActivity.set(System.nanoTime());
+            return read;
+        }
+    }
+}
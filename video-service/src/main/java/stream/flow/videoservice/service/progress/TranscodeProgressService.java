@@ -0,0 +1,42 @@
+package stream.flow.videoservice.service.progress;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import stream.flow.videoservice.model.dto.response.TranscodeProgressResponse;
+import stream.flow.videoservice.model.enums.Status;
+import stream.flow.videoservice.service.ffmpeg.ProgressListener;
+
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Прогресс транскодирования видео:
+ * - Расчет процента и оставшегося времени по прогрессу FFmpeg
+ * - Сохранение последнего состояния с ограничением частоты записи
+ * - Рассылка обновлений подписчикам SSE
+ */
+public interface TranscodeProgressService {
+
+    /**
+     * Начинает отслеживание кодирования видео
+     *
+     * @param videoId ID видео
+     * @param totalMillis сколько миллисекунд видео нужно закодировать всего
+     * @return слушатель, который передается в FFmpeg
+     */
+    ProgressListener start(UUID videoId, long totalMillis);
+
+    /**
+     * Завершает отслеживание и рассылает финальный статус
+     */
+    void finish(UUID videoId, Status status);
+
+    /**
+     * Последнее сохраненное состояние кодирования
+     */
+    Optional<TranscodeProgressResponse> getProgress(UUID videoId);
+
+    /**
+     * Подписка на обновления прогресса (Server-Sent Events)
+     */
+    SseEmitter subscribe(UUID videoId);
+}
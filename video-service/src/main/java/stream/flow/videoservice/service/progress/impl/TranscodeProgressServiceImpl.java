@@ -0,0 +1,223 @@
+package stream.flow.videoservice.service.progress.impl;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import stream.flow.videoservice.model.dto.response.TranscodeProgressResponse;
+import stream.flow.videoservice.model.enums.Status;
+import stream.flow.videoservice.service.ffmpeg.ProgressListener;
+import stream.flow.videoservice.service.progress.TranscodeProgressService;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Прогресс хранится в Redis (video:progress:{id}) с TTL, поэтому его видят все экземпляры
+ * сервиса. Каждое сохранение публикуется в канал video:progress, и каждый экземпляр
+ * рассылает обновление своим SSE подписчикам - клиент может быть подключен не к тому
+ * экземпляру, который кодирует видео.
+ *
+ * FFmpeg отдает прогресс несколько раз в секунду (а при кодировании кусками - от каждого
+ * куска), поэтому запись ограничена одной в persist-interval.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TranscodeProgressServiceImpl implements TranscodeProgressService, MessageListener {
+
+    private static final String KEY_PREFIX = "video:progress:";
+    private static final ChannelTopic CHANNEL = new ChannelTopic("video:progress");
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    private final Map<UUID, List<SseEmitter>> emitters = new ConcurrentHashMap<>();
+
+    @Value("${video.progress.persist-interval:2000}")
+    private long persistIntervalMillis;
+
+    @Value("${video.progress.ttl:3600}")
+    private long ttlSeconds;
+
+    @Value("${video.progress.sse-timeout:1800000}")
+    private long sseTimeoutMillis;
+
+    @PostConstruct
+    void subscribeToChannel() {
+        listenerContainer.addMessageListener(this, CHANNEL);
+    }
+
+    @Override
+    public ProgressListener start(UUID videoId, long totalMillis) {
+        ProgressTracker tracker = new ProgressTracker(videoId, totalMillis);
+        persist(tracker.snapshot(0, 0));
+        return tracker;
+    }
+
+    @Override
+    public void finish(UUID videoId, Status status) {
+        TranscodeProgressResponse last = getProgress(videoId).orElseGet(() ->
+                TranscodeProgressResponse.builder().videoId(videoId).build());
+
+        last.setStatus(status);
+        last.setEtaSeconds(0L);
+        last.setUpdatedAt(System.currentTimeMillis());
+        if (status == Status.READY) {
+            last.setPercent(100.0);
+            last.setProcessedSeconds(last.getDurationSeconds());
+        }
+
+        persist(last);
+    }
+
+    @Override
+    public Optional<TranscodeProgressResponse> getProgress(UUID videoId) {
+        try {
+            Object value = redisTemplate.opsForValue().get(KEY_PREFIX + videoId);
+            return value instanceof TranscodeProgressResponse progress ? Optional.of(progress) : Optional.empty();
+        } catch (Exception e) {
+            log.warn("Failed to read progress for video {}: {}", videoId, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public SseEmitter subscribe(UUID videoId) {
+        SseEmitter emitter = new SseEmitter(sseTimeoutMillis);
+        emitters.computeIfAbsent(videoId, id -> new CopyOnWriteArrayList<>()).add(emitter);
+
+        emitter.onCompletion(() -> removeEmitter(videoId, emitter));
+        emitter.onTimeout(() -> removeEmitter(videoId, emitter));
+        emitter.onError(e -> removeEmitter(videoId, emitter));
+
+        // Сразу отдаем текущее состояние, чтобы клиент не ждал следующего обновления
+        getProgress(videoId).ifPresent(progress -> {
+            send(emitter, progress);
+            if (isTerminal(progress.getStatus())) {
+                emitter.complete();
+            }
+        });
+
+        return emitter;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        Object value = redisTemplate.getValueSerializer().deserialize(message.getBody());
+        if (value instanceof TranscodeProgressResponse progress) {
+            dispatch(progress);
+        }
+    }
+
+    /**
+     * Сохраняет состояние и публикует его всем экземплярам.
+     * Недоступный Redis не должен ронять кодирование - ошибка только логируется
+     */
+    private void persist(TranscodeProgressResponse progress) {
+        try {
+            redisTemplate.opsForValue().set(KEY_PREFIX + progress.getVideoId(), progress, Duration.ofSeconds(ttlSeconds));
+            redisTemplate.convertAndSend(CHANNEL.getTopic(), progress);
+        } catch (Exception e) {
+            log.warn("Failed to persist progress for video {}: {}", progress.getVideoId(), e.getMessage());
+        }
+    }
+
+    private void dispatch(TranscodeProgressResponse progress) {
+        List<SseEmitter> subscribers = emitters.get(progress.getVideoId());
+        if (subscribers == null) {
+            return;
+        }
+
+        boolean terminal = isTerminal(progress.getStatus());
+        for (SseEmitter emitter : subscribers) {
+            send(emitter, progress);
+            if (terminal) {
+                emitter.complete();
+            }
+        }
+    }
+
+    private void send(SseEmitter emitter, TranscodeProgressResponse progress) {
+        try {
+            emitter.send(SseEmitter.event().name("progress").data(progress));
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Failed to send progress to subscriber: {}", e.getMessage());
+            emitter.completeWithError(e);
+        }
+    }
+
+    private void removeEmitter(UUID videoId, SseEmitter emitter) {
+        emitters.computeIfPresent(videoId, (id, list) -> {
+            list.remove(emitter);
+            return list.isEmpty() ? null : list;
+        });
+    }
+
+    private boolean isTerminal(Status status) {
+        return status == Status.READY || status == Status.FAILED || status == Status.CANCELLED;
+    }
+
+    /**
+     * Считает процент и ETA одного кодирования.
+     * ETA считается по фактической скорости с начала кодирования (закодированное время / прошедшее время),
+     * а не по speed из FFmpeg: при кодировании кусками speed относится к одному куску
+     */
+    private class ProgressTracker implements ProgressListener {
+
+        private final UUID videoId;
+        private final long totalMillis;
+        private final long startedAt = System.nanoTime();
+        private long lastPersistedAt;
+
+        ProgressTracker(UUID videoId, long totalMillis) {
+            this.videoId = videoId;
+            this.totalMillis = totalMillis;
+        }
+
+        @Override
+        public synchronized void onProgress(long processedMillis, double speed) {
+            long now = System.nanoTime();
+            if (Duration.ofNanos(now - lastPersistedAt).toMillis() < persistIntervalMillis) {
+                return;
+            }
+            lastPersistedAt = now;
+            persist(snapshot(processedMillis, speed));
+        }
+
+        TranscodeProgressResponse snapshot(long processedMillis, double speed) {
+            long processed = totalMillis > 0 ? Math.min(processedMillis, totalMillis) : processedMillis;
+            long elapsedMillis = Duration.ofNanos(System.nanoTime() - startedAt).toMillis();
+
+            Double percent = totalMillis > 0 ? Math.round(processed * 1000.0 / totalMillis) / 10.0 : null;
+            Long eta = null;
+            if (totalMillis > 0 && processed > 0 && elapsedMillis > 0) {
+                eta = (totalMillis - processed) * elapsedMillis / processed / 1000;
+            }
+
+            return TranscodeProgressResponse.builder()
+                    .videoId(videoId)
+                    .status(Status.PROCESSING)
+                    .percent(percent)
+                    .processedSeconds(processed / 1000)
+                    .durationSeconds(totalMillis / 1000)
+                    .etaSeconds(eta)
+                    .speed(speed > 0 ? speed : null)
+                    .updatedAt(System.currentTimeMillis())
+                    .build();
+        }
+    }
+}
@@ -2,9 +2,17 @@ package stream.flow.videoservice.service.storage;
 
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Абстракция для работы с файловым хранилищем
  * Позволяет легко переключаться между разными провайдерами (MinIO, S3, Azure, etc.)
+ *
+ * Асинхронные и пакетные методы не блокируют вызывающий поток: одно видео дает сотни
+ * объектов (сегменты, варианты превью, листы раскадровки), и по одному запросу
+ * на объект их загрузка упирается в задержку сети, а не в пропускную способность
  */
 public interface StorageService {
 
@@ -16,6 +24,90 @@ public interface StorageService {
      */
     String uploadFile(String path, String bucketName);
 
+    /**
+     * Загружает файл в хранилище с заголовком Cache-Control,
+     * который хранилище будет отдавать при чтении объекта
+     *
+     * @param path - путь до файла
+     * @param cacheControl - значение Cache-Control или null
+     * @return URL загруженного файла
+     */
+    String uploadFile(String path, String bucketName, String cacheControl);
+
+    /**
+     * Загружает файл в хранилище, не блокируя вызывающий поток
+     *
+     * @param path - путь до файла
+     * @param cacheControl - значение Cache-Control или null
+     * @return путь загруженного объекта (bucket/object)
+     */
+    CompletableFuture<String> uploadFileAsync(String path, String bucketName, String cacheControl);
+
+    /**
+     * Загружает несколько файлов параллельно (в пределах лимита одновременных запросов)
+     *
+     * @param paths - пути до файлов
+     * @param cacheControl - значение Cache-Control или null
+     * @return пути загруженных объектов в порядке paths; при ошибке любого файла future
+     * завершается ошибкой, остальные файлы при этом догружаются
+     */
+    CompletableFuture<List<String>> uploadFilesAsync(List<String> paths, String bucketName, String cacheControl);
+
+    /**
+     * Загружает несколько файлов параллельно, вычисляя имена объектов относительно baseDir,
+     * а не временной директории видео (для файлов из собственной временной директории)
+     *
+     * @param baseDir - директория, относительно которой строятся имена объектов
+     * @param paths - пути до файлов внутри baseDir
+     * @param cacheControl - значение Cache-Control или null
+     * @return пути загруженных объектов в порядке paths
+     */
+    CompletableFuture<List<String>> uploadFilesAsync(String baseDir, List<String> paths, String bucketName,
+                                                     String cacheControl);
+
+    /**
+     * Удаляет объекты пакетными запросами (до 1000 объектов на запрос)
+     *
+     * @param objectNames имена объектов; отсутствующие объекты ошибкой не считаются
+     */
+    CompletableFuture<Void> deleteObjectsAsync(String bucketName, List<String> objectNames);
+
+    /**
+     * Возвращает метаданные нескольких объектов (запросы выполняются параллельно)
+     *
+     * @param objectNames имена объектов
+     * @return метаданные по именам объектов; отсутствующих объектов в результате нет
+     */
+    CompletableFuture<Map<String, StoredObject>> statObjectsAsync(String bucketName, List<String> objectNames);
+
+    /**
+     * Загружает все файлы директории (рекурсивно) в хранилище,
+     * сохраняя относительную структуру путей
+     *
+     * @param path - путь до директории
+     * @return путь директории в хранилище (bucket/prefix)
+     */
+    String uploadDirectory(String path, String bucketName);
+
+    /**
+     * Скачивает объект из хранилища в локальный файл (существующий файл перезаписывается)
+     *
+     * @param bucketName имя bucket
+     * @param objectName имя объекта
+     * @param targetPath локальный путь
+     * @return локальный путь скачанного файла
+     */
+    String downloadFile(String bucketName, String objectName, String targetPath);
+
+    /**
+     * Возвращает подписанную ссылку для чтения объекта.
+     * FFprobe читает по ней только нужные байты, не скачивая весь объект
+     *
+     * @param expirySeconds время жизни ссылки в секундах
+     * @return ссылка (или путь), по которой объект читается без учетных данных хранилища
+     */
+    String getPresignedDownloadUrl(String bucketName, String objectName, int expirySeconds);
+
     /**
      * Проверяет существование bucket
      * 
@@ -26,12 +118,48 @@ public interface StorageService {
 
     /**
      * Создает bucket если не существует
+     * Проверенные bucket запоминаются, повторный вызов не обращается к хранилищу
      * 
      * @param bucketName имя bucket
      */
     void createBucketIfNotExists(String bucketName);
-}
 
+    /**
+     * Начинает многочастную загрузку, части которой клиент загружает сам
+     * по подписанным ссылкам (см. getPresignedPartUrl)
+     *
+     * @param bucketName имя bucket
+     * @param objectName имя объекта
+     * @return ID многочастной загрузки
+     */
+    String createMultipartUpload(String bucketName, String objectName);
 
+    /**
+     * Возвращает подписанную ссылку для PUT одной части многочастной загрузки
+     *
+     * @param partNumber номер части (с 1)
+     * @param expirySeconds время жизни ссылки в секундах
+     * @return ссылка, по которой часть загружается без учетных данных хранилища
+     */
+    String getPresignedPartUrl(String bucketName, String objectName, String uploadId, int partNumber, int expirySeconds);
 
+    /**
+     * Возвращает уже загруженные части многочастной загрузки
+     *
+     * @return размеры частей в байтах по номерам частей
+     */
+    Map<Integer, Long> listUploadedParts(String bucketName, String objectName, String uploadId);
 
+    /**
+     * Завершает многочастную загрузку из всех загруженных частей
+     *
+     * @return путь объекта в хранилище (bucket/object)
+     */
+    String completeMultipartUpload(String bucketName, String objectName, String uploadId);
+
+    /**
+     * Отменяет многочастную загрузку и удаляет загруженные части.
+     * Ошибка только логируется: загрузка могла быть уже завершена или отменена
+     */
+    void abortMultipartUpload(String bucketName, String objectName, String uploadId);
+}
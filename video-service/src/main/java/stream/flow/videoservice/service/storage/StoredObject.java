@@ -0,0 +1,11 @@
+package stream.flow.videoservice.service.storage;
+
+/**
+ * Метаданные объекта в хранилище
+ *
+ * @param objectName имя объекта
+ * @param size размер в байтах
+ * @param etag ETag объекта
+ */
+public record StoredObject(String objectName, long size, String etag) {
+}
@@ -0,0 +1,213 @@
+package stream.flow.videoservice.service.storage.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import stream.flow.videoservice.exception.file.FileUploadException;
+import stream.flow.videoservice.service.storage.StorageService;
+import stream.flow.videoservice.service.storage.StoredObject;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/**
+ * Хранилище в локальной директории для бенчмарка (профиль benchmark):
+ * объект bucket/prefix/file лежит в {storage-dir}/bucket/prefix/file.
+ * Время загрузки в MinIO не попадает в замеры, а результат можно посмотреть на диске
+ */
+@Slf4j
+@Service
+@Profile("benchmark")
+public class LocalStorageService implements StorageService {
+
+    @Value("${video.temp-dir}")
+    private String tempDir;
+
+    @Value("${benchmark.storage-dir:./benchmark/storage}")
+    private String storageDir;
+
+    @Override
+    public String uploadFile(String path, String bucketName) {
+        return uploadFile(path, bucketName, null);
+    }
+
+    @Override
+    public String uploadFile(String path, String bucketName, String cacheControl) {
+        return storeFile(tempDir, path, bucketName);
+    }
+
+    private String storeFile(String baseDir, String path, String bucketName) {
+        try {
+            Path filePath = Paths.get(path);
+            if (!Files.exists(filePath)) {
+                throw new FileNotFoundException("Input file not found: " + path);
+            }
+
+            // Ключ объекта - путь относительно временной директории, как в MinIO
+            String relativePath = Paths.get(baseDir).relativize(filePath).toString();
+            Path target = Paths.get(storageDir, bucketName, relativePath);
+            Files.createDirectories(target.getParent());
+            Files.copy(filePath, target, StandardCopyOption.REPLACE_EXISTING);
+
+            log.debug("File stored locally: bucket={}, object={}", bucketName, relativePath);
+            return String.format("%s/%s", bucketName, relativePath);
+
+        } catch (Exception e) {
+            log.error("Failed to store file locally: {}", e.getMessage(), e);
+            throw new FileUploadException("Failed to upload file to storage", e);
+        }
+    }
+
+    /**
+     * Копирование на локальный диск быстрое, поэтому асинхронные методы выполняются сразу
+     */
+    @Override
+    public CompletableFuture<String> uploadFileAsync(String path, String bucketName, String cacheControl) {
+        try {
+            return CompletableFuture.completedFuture(uploadFile(path, bucketName, cacheControl));
+        } catch (FileUploadException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<List<String>> uploadFilesAsync(List<String> paths, String bucketName, String cacheControl) {
+        return uploadFilesAsync(tempDir, paths, bucketName, cacheControl);
+    }
+
+    @Override
+    public CompletableFuture<List<String>> uploadFilesAsync(String baseDir, List<String> paths, String bucketName,
+                                                            String cacheControl) {
+        try {
+            return CompletableFuture.completedFuture(paths.stream()
+                    .map(path -> storeFile(baseDir, path, bucketName))
+                    .toList());
+        } catch (FileUploadException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteObjectsAsync(String bucketName, List<String> objectNames) {
+        try {
+            for (String objectName : objectNames) {
+                Files.deleteIfExists(Paths.get(storageDir, bucketName, objectName));
+            }
+            return CompletableFuture.completedFuture(null);
+        } catch (IOException e) {
+            log.error("Failed to delete files from local storage: {}", e.getMessage(), e);
+            return CompletableFuture.failedFuture(new FileUploadException("Failed to delete objects from storage", e));
+        }
+    }
+
+    @Override
+    public CompletableFuture<Map<String, StoredObject>> statObjectsAsync(String bucketName, List<String> objectNames) {
+        try {
+            Map<String, StoredObject> objects = new LinkedHashMap<>();
+            for (String objectName : objectNames) {
+                Path file = Paths.get(storageDir, bucketName, objectName);
+                if (Files.isRegularFile(file)) {
+                    objects.put(objectName, new StoredObject(objectName, Files.size(file), null));
+                }
+            }
+            return CompletableFuture.completedFuture(objects);
+        } catch (IOException e) {
+            log.error("Failed to read files from local storage: {}", e.getMessage(), e);
+            return CompletableFuture.failedFuture(new FileUploadException("Failed to stat objects in storage", e));
+        }
+    }
+
+    @Override
+    public String uploadDirectory(String path, String bucketName) {
+        Path dirPath = Paths.get(path);
+        if (!Files.isDirectory(dirPath)) {
+            throw new FileUploadException("Directory not found: " + path);
+        }
+
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(dirPath)) {
+            files = walk.filter(Files::isRegularFile).toList();
+        } catch (IOException e) {
+            log.error("Failed to list directory {}: {}", path, e.getMessage(), e);
+            throw new FileUploadException("Failed to read directory for upload", e);
+        }
+
+        for (Path file : files) {
+            uploadFile(file.toString(), bucketName);
+        }
+
+        String relativePath = Paths.get(tempDir).relativize(dirPath).toString();
+        return String.format("%s/%s", bucketName, relativePath);
+    }
+
+    @Override
+    public String downloadFile(String bucketName, String objectName, String targetPath) {
+        try {
+            Path target = Paths.get(targetPath);
+            Files.createDirectories(target.toAbsolutePath().getParent());
+            Files.copy(Paths.get(storageDir, bucketName, objectName), target, StandardCopyOption.REPLACE_EXISTING);
+            return targetPath;
+
+        } catch (IOException e) {
+            log.error("Failed to read file from local storage: {}", e.getMessage(), e);
+            throw new FileUploadException("Failed to download file from storage", e);
+        }
+    }
+
+    @Override
+    public boolean bucketExists(String bucketName) {
+        return Files.isDirectory(Paths.get(storageDir, bucketName));
+    }
+
+    @Override
+    public void createBucketIfNotExists(String bucketName) {
+        try {
+            Files.createDirectories(Paths.get(storageDir, bucketName));
+        } catch (IOException e) {
+            log.error("Failed to create bucket directory: {}", e.getMessage(), e);
+            throw new FileUploadException("Failed to create bucket", e);
+        }
+    }
+
+    @Override
+    public String getPresignedDownloadUrl(String bucketName, String objectName, int expirySeconds) {
+        // Подписывать нечего: объект читается прямо с диска
+        return Paths.get(storageDir, bucketName, objectName).toString();
+    }
+
+    @Override
+    public String createMultipartUpload(String bucketName, String objectName) {
+        throw new FileUploadException("Presigned uploads are not supported by local storage");
+    }
+
+    @Override
+    public String getPresignedPartUrl(String bucketName, String objectName, String uploadId, int partNumber,
+                                      int expirySeconds) {
+        throw new FileUploadException("Presigned uploads are not supported by local storage");
+    }
+
+    @Override
+    public Map<Integer, Long> listUploadedParts(String bucketName, String objectName, String uploadId) {
+        throw new FileUploadException("Presigned uploads are not supported by local storage");
+    }
+
+    @Override
+    public String completeMultipartUpload(String bucketName, String objectName, String uploadId) {
+        throw new FileUploadException("Presigned uploads are not supported by local storage");
+    }
+
+    @Override
+    public void abortMultipartUpload(String bucketName, String objectName, String uploadId) {
+        // Бенчмарк не создает многочастных загрузок - отменять нечего
+    }
+}
@@ -1,70 +1,654 @@
 package stream.flow.videoservice.service.storage.impl;
 
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
 import io.minio.*;
-import lombok.RequiredArgsConstructor;
+import io.minio.errors.ErrorResponseException;
+import io.minio.http.Method;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
+import io.minio.messages.ListPartsResult;
+import io.minio.messages.Part;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
 import stream.flow.videoservice.exception.file.FileUploadException;
 import stream.flow.videoservice.service.storage.StorageService;
+import stream.flow.videoservice.service.storage.StoredObject;
 import stream.flow.videoservice.service.file.FileService;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+/**
+ * Файлы от multipart-threshold загружаются многочастной загрузкой: части читаются
+ * позиционным чтением FileChannel и загружаются параллельно. Количество частей в полете
+ * ограничено на весь экземпляр (upload-concurrency), поэтому память под буферы частей -
+ * не больше upload-concurrency * part-size, сколько бы файлов ни загружалось одновременно
+ *
+ * Пакетные операции запускают не больше batch-concurrency запросов одновременно:
+ * каждая загрузка держит открытый файл до ответа хранилища, а директория качества -
+ * это тысячи сегментов. Bucket проверяются один раз при старте и запоминаются
+ */
 @Slf4j
 @Service
-@RequiredArgsConstructor
+@Profile("!benchmark")
 public class MinioStorageService implements StorageService {
 
+    /**
+     * Минимальный размер части S3 (кроме последней) и максимальное количество частей
+     */
+    private static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+    private static final int MAX_PARTS = 10_000;
+    private static final int MAX_PARTS_PER_PAGE = 1000;
+
     private final MinioClient minioClient;
+    private final MinioAsyncClient minioAsyncClient;
     private final FileService fileService;
+    private final Semaphore uploadPermits;
+    private final Semaphore batchPermits;
+
+    private final Set<String> knownBuckets = ConcurrentHashMap.newKeySet();
+    private final ExecutorService storageExecutor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("storage-", 0).factory());
 
     @Value("${video.temp-dir}")
     private String tempDir;
 
+    @Value("${minio.bucket.videos}")
+    private String videosBucket;
+
+    @Value("${minio.bucket.originals}")
+    private String originalsBucket;
+
+    @Value("${minio.bucket.thumbnails}")
+    private String thumbnailsBucket;
+
+    @Value("${minio.upload.multipart-threshold:67108864}")
+    private long multipartThreshold;
+
+    @Value("${minio.upload.part-size:16777216}")
+    private long partSize;
+
+    public MinioStorageService(MinioClient minioClient,
+                               MinioAsyncClient minioAsyncClient,
+                               FileService fileService,
+                               @Value("${minio.upload.concurrency:8}") int uploadConcurrency,
+                               @Value("${minio.batch.concurrency:32}") int batchConcurrency) {
+        this.minioClient = minioClient;
+        this.minioAsyncClient = minioAsyncClient;
+        this.fileService = fileService;
+        this.uploadPermits = new Semaphore(uploadConcurrency);
+        this.batchPermits = new Semaphore(batchConcurrency);
+    }
+
+    /**
+     * Если хранилище недоступно при старте, bucket будет создан при первой загрузке в него
+     */
+    @PostConstruct
+    void ensureBuckets() {
+        for (String bucketName : List.of(videosBucket, originalsBucket, thumbnailsBucket)) {
+            try {
+                createBucketIfNotExists(bucketName);
+            } catch (FileUploadException e) {
+                log.warn("Bucket {} is not ensured at startup: {}", bucketName, e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        storageExecutor.shutdownNow();
+    }
+
     @Override
     public String uploadFile(String path, String bucketName) {
+        return uploadFile(path, bucketName, null);
+    }
+
+    @Override
+    public String uploadFile(String path, String bucketName, String cacheControl) {
+        return uploadFile(tempDir, path, bucketName, cacheControl);
+    }
+
+    private String uploadFile(String baseDir, String path, String bucketName, String cacheControl) {
         try {
-            createBucketIfNotExists(bucketName);
+            ObjectUpload upload = prepareUpload(baseDir, path, bucketName, cacheControl);
 
-            Path filePath = Paths.get(path);
-            if (!Files.exists(filePath)) {
-                throw new FileNotFoundException("Input file not found: " + path);
+            if (upload.size() >= multipartThreshold) {
+                uploadMultipart(upload.file(), upload.size(), bucketName, upload.objectName(),
+                        upload.contentType(), upload.headers());
+            } else {
+                try (InputStream inputStream = Files.newInputStream(upload.file())) {
+                    minioClient.putObject(
+                            PutObjectArgs.builder()
+                                    .bucket(bucketName)
+                                    .object(upload.objectName())
+                                    .stream(inputStream, upload.size(), -1)
+                                    .contentType(upload.contentType())
+                                    .headers(upload.headers())
+                                    .build()
+                    );
+                }
             }
 
-            // Например: "./video-temp/e832d10e/p720.mp4" -> "e832d10e/p720.mp4"
-            Path tempDirPath = Paths.get(tempDir);
-            String relativePath = tempDirPath.relativize(filePath).toString();
+            log.info("File uploaded successfully to MinIO: bucket={}, object={}", bucketName, upload.objectName());
 
-            String objectName = filePath.getFileName().toString();
+            return String.format("%s/%s", bucketName, upload.objectName());
 
-            // Определяем contentType
-            String extension = fileService.getFileExtension(objectName);
-            String contentType = "video/" + extension;
+        } catch (Exception e) {
+            log.error("Failed to upload file to MinIO: {}", e.getMessage(), e);
+            throw new FileUploadException("Failed to upload file to storage", e);
+        }
+    }
 
-            long fileSize = Files.size(filePath);
+    @Override
+    public CompletableFuture<String> uploadFileAsync(String path, String bucketName, String cacheControl) {
+        return uploadFileAsync(tempDir, path, bucketName, cacheControl);
+    }
 
-            try (InputStream inputStream = Files.newInputStream(filePath)) {
-                minioClient.putObject(
-                        PutObjectArgs.builder()
-                                .bucket(bucketName)
-                                .object(relativePath)
-                                .stream(inputStream, fileSize, -1)
-                                .contentType(contentType)
-                                .build()
-                );
+    private CompletableFuture<String> uploadFileAsync(String baseDir, String path, String bucketName,
+                                                      String cacheControl) {
+        ObjectUpload upload;
+        try {
+            upload = prepareUpload(baseDir, path, bucketName, cacheControl);
+        } catch (Exception e) {
+            log.error("Failed to upload file to MinIO: {}", e.getMessage(), e);
+            return CompletableFuture.failedFuture(new FileUploadException("Failed to upload file to storage", e));
+        }
+
+        // Многочастная загрузка сама распараллеливает части - ей нужен только поток
+        if (upload.size() >= multipartThreshold) {
+            return CompletableFuture.supplyAsync(() -> uploadFile(baseDir, path, bucketName, cacheControl), storageExecutor);
+        }
+
+        CompletableFuture<ObjectWriteResponse> response;
+        try {
+            response = minioAsyncClient.uploadObject(
+                    UploadObjectArgs.builder()
+                            .bucket(bucketName)
+                            .object(upload.objectName())
+                            .filename(path)
+                            .contentType(upload.contentType())
+                            .headers(upload.headers())
+                            .build()
+            );
+        } catch (Exception e) {
+            log.error("Failed to upload file to MinIO: {}", e.getMessage(), e);
+            return CompletableFuture.failedFuture(new FileUploadException("Failed to upload file to storage", e));
+        }
+
+        return response.handle((result, error) -> {
+            if (error != null) {
+                Throwable cause = unwrap(error);
+                log.error("Failed to upload file to MinIO: {}", cause.getMessage(), cause);
+                throw new FileUploadException("Failed to upload file to storage", cause);
             }
 
-            log.info("File uploaded successfully to MinIO: bucket={}, object={}", bucketName, relativePath);
+            log.info("File uploaded successfully to MinIO: bucket={}, object={}", bucketName, upload.objectName());
+            return String.format("%s/%s", bucketName, upload.objectName());
+        });
+    }
 
-            return String.format("%s/%s", bucketName, relativePath);
+    @Override
+    public CompletableFuture<List<String>> uploadFilesAsync(List<String> paths, String bucketName, String cacheControl) {
+        return uploadFilesAsync(tempDir, paths, bucketName, cacheControl);
+    }
 
+    @Override
+    public CompletableFuture<List<String>> uploadFilesAsync(String baseDir, List<String> paths, String bucketName,
+                                                            String cacheControl) {
+        return forEachBounded(paths, path -> uploadFileAsync(baseDir, path, bucketName, cacheControl))
+                .thenApply(uploads -> uploads.stream().map(CompletableFuture::join).toList());
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteObjectsAsync(String bucketName, List<String> objectNames) {
+        if (objectNames.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // removeObjects ленивый: запросы (по 1000 объектов) уходят при обходе результата
+        return CompletableFuture.runAsync(() -> {
+            List<DeleteObject> objects = objectNames.stream().map(DeleteObject::new).toList();
+            List<String> failed = new ArrayList<>();
+            try {
+                for (Result<DeleteError> result : minioAsyncClient.removeObjects(
+                        RemoveObjectsArgs.builder().bucket(bucketName).objects(objects).build())) {
+                    DeleteError error = result.get();
+                    failed.add(error.objectName() + ": " + error.message());
+                }
+            } catch (Exception e) {
+                log.error("Failed to delete objects from MinIO: {}", e.getMessage(), e);
+                throw new FileUploadException("Failed to delete objects from storage", e);
+            }
+
+            if (!failed.isEmpty()) {
+                log.error("Failed to delete {} of {} objects from {}: {}", failed.size(), objects.size(), bucketName, failed);
+                throw new FileUploadException("Failed to delete " + failed.size() + " objects from storage");
+            }
+
+            log.info("Objects deleted from MinIO: bucket={}, count={}", bucketName, objects.size());
+        }, storageExecutor);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, StoredObject>> statObjectsAsync(String bucketName, List<String> objectNames) {
+        return forEachBounded(objectNames, objectName -> statObject(bucketName, objectName))
+                .thenApply(stats -> {
+                    Map<String, StoredObject> objects = new LinkedHashMap<>();
+                    stats.stream()
+                            .map(CompletableFuture::join)
+                            .filter(object -> object != null)
+                            .forEach(object -> objects.put(object.objectName(), object));
+                    return objects;
+                });
+    }
+
+    /**
+     * Метаданные объекта или null, если объекта нет
+     */
+    private CompletableFuture<StoredObject> statObject(String bucketName, String objectName) {
+        CompletableFuture<StatObjectResponse> response;
+        try {
+            response = minioAsyncClient.statObject(
+                    StatObjectArgs.builder()
+                            .bucket(bucketName)
+                            .object(objectName)
+                            .build()
+            );
         } catch (Exception e) {
-            log.error("Failed to upload file to MinIO: {}", e.getMessage(), e);
-            throw new FileUploadException("Failed to upload file to storage", e);
+            return CompletableFuture.failedFuture(new FileUploadException("Failed to stat object in storage", e));
+        }
+
+        return response.handle((stat, error) -> {
+            if (error == null) {
+                return new StoredObject(objectName, stat.size(), stat.etag());
+            }
+
+            Throwable cause = unwrap(error);
+            if (cause instanceof ErrorResponseException e && "NoSuchKey".equals(e.errorResponse().code())) {
+                return null;
+            }
+            log.error("Failed to stat object {} in MinIO: {}", objectName, cause.getMessage(), cause);
+            throw new FileUploadException("Failed to stat object in storage", cause);
+        });
+    }
+
+    /**
+     * Запускает операцию для каждого элемента, держа в полете не больше batch-concurrency операций.
+     * Итоговый future завершается, когда завершились все операции
+     */
+    private <T> CompletableFuture<List<CompletableFuture<T>>> forEachBounded(
+            List<String> items, Function<String, CompletableFuture<T>> operation) {
+
+        return CompletableFuture.supplyAsync(() -> {
+            List<CompletableFuture<T>> operations = new ArrayList<>(items.size());
+            for (String item : items) {
+                try {
+                    batchPermits.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new FileUploadException("Interrupted while starting storage operations", e);
+                }
+
+                CompletableFuture<T> started;
+                try {
+                    started = operation.apply(item);
+                } catch (RuntimeException e) {
+                    batchPermits.release();
+                    throw e;
+                }
+                started.whenComplete((result, error) -> batchPermits.release());
+                operations.add(started);
+            }
+            return operations;
+        }, storageExecutor).thenCompose(operations ->
+                CompletableFuture.allOf(operations.toArray(new CompletableFuture[0])).thenApply(done -> operations));
+    }
+
+    /**
+     * Проверяет файл и вычисляет имя объекта (путь относительно baseDir), Content-Type и заголовки загрузки
+     */
+    private ObjectUpload prepareUpload(String baseDir, String path, String bucketName, String cacheControl)
+            throws IOException {
+        createBucketIfNotExists(bucketName);
+
+        Path filePath = Paths.get(path);
+        if (!Files.exists(filePath)) {
+            throw new FileNotFoundException("Input file not found: " + path);
+        }
+
+        // Например: "./video-temp/e832d10e/p720.mp4" -> "e832d10e/p720.mp4"
+        String relativePath = Paths.get(baseDir).relativize(filePath).toString();
+
+        // Определяем contentType
+        String contentType = resolveContentType(fileService.getFileExtension(filePath.getFileName().toString()));
+
+        Map<String, String> headers = cacheControl != null
+                ? Map.of("Cache-Control", cacheControl)
+                : Map.of();
+
+        return new ObjectUpload(filePath, relativePath, Files.size(filePath), contentType, headers);
+    }
+
+    private record ObjectUpload(Path file, String objectName, long size, String contentType,
+                                Map<String, String> headers) {}
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException || error instanceof ExecutionException
+                ? error.getCause()
+                : error;
+    }
+
+    /**
+     * Многочастная загрузка: части загружаются параллельно в пределах общего лимита,
+     * при ошибке любой части загрузка отменяется, чтобы в bucket не оставались брошенные части
+     */
+    private void uploadMultipart(Path filePath, long fileSize, String bucketName, String objectName,
+                                 String contentType, Map<String, String> headers) throws Exception {
+        // Не больше MAX_PARTS частей: для очень больших файлов часть увеличивается
+        long effectivePartSize = Math.max(Math.max(partSize, MIN_PART_SIZE), ceilDiv(fileSize, MAX_PARTS));
+        int partCount = (int) ceilDiv(fileSize, effectivePartSize);
+
+        Multimap<String, String> uploadHeaders = HashMultimap.create();
+        uploadHeaders.put("Content-Type", contentType);
+        headers.forEach(uploadHeaders::put);
+
+        String uploadId = minioAsyncClient.createMultipartUploadAsync(bucketName, null, objectName, uploadHeaders, null)
+                .get()
+                .result()
+                .uploadId();
+        log.debug("Multipart upload {} started: bucket={}, object={}, parts={}, partSize={}",
+                uploadId, bucketName, objectName, partCount, effectivePartSize);
+
+        List<CompletableFuture<UploadPartResponse>> uploads = new ArrayList<>(partCount);
+        AtomicBoolean failed = new AtomicBoolean();
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            for (int partNumber = 1; partNumber <= partCount && !failed.get(); partNumber++) {
+                long position = (partNumber - 1) * effectivePartSize;
+                int length = (int) Math.min(effectivePartSize, fileSize - position);
+
+                // Разрешение берется до чтения части: буферов в памяти не больше, чем разрешений
+                uploadPermits.acquire();
+                if (failed.get()) {
+                    uploadPermits.release();
+                    break;
+                }
+
+                CompletableFuture<UploadPartResponse> upload;
+                try {
+                    byte[] part = readPart(channel, position, length);
+                    upload = minioAsyncClient.uploadPartAsync(
+                            bucketName, null, objectName, part, length, uploadId, partNumber, null, null);
+                } catch (Exception e) {
+                    uploadPermits.release();
+                    throw e;
+                }
+                // Разрешение возвращается, только когда запрос части действительно завершился;
+                // после первой ошибки новые части не отправляются
+                uploads.add(upload.whenComplete((response, error) -> {
+                    if (error != null) {
+                        failed.set(true);
+                    }
+                    uploadPermits.release();
+                }));
+            }
+
+            awaitParts(uploads);
+            if (failed.get()) {
+                // Ошибка упавшей части - причина ошибки загрузки
+                for (CompletableFuture<UploadPartResponse> upload : uploads) {
+                    if (upload.isCompletedExceptionally()) {
+                        upload.get();
+                    }
+                }
+            }
+
+            Part[] parts = uploads.stream()
+                    .map(CompletableFuture::join)
+                    .map(response -> new Part(response.partNumber(), response.etag()))
+                    .toArray(Part[]::new);
+            minioAsyncClient.completeMultipartUploadAsync(bucketName, null, objectName, uploadId, parts, null, null)
+                    .get();
+
+        } catch (Exception e) {
+            // Отмена уже отправленных частей не прерывает их запросы, поэтому сначала
+            // дожидаемся их: иначе часть, загруженная после abort, останется в bucket
+            failed.set(true);
+            awaitParts(uploads);
+            abortMultipartUpload(bucketName, objectName, uploadId);
+            throw e;
+        }
+
+        log.debug("Multipart upload {} completed: {} parts", uploadId, partCount);
+    }
+
+    /**
+     * Ждет завершения всех отправленных частей, успешного или нет
+     */
+    private void awaitParts(List<CompletableFuture<UploadPartResponse>> uploads) {
+        uploads.forEach(upload -> upload.handle((response, error) -> null).join());
+    }
+
+    private byte[] readPart(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of file at " + (position + buffer.position()));
+            }
+        }
+        return buffer.array();
+    }
+
+    @Override
+    public void abortMultipartUpload(String bucketName, String objectName, String uploadId) {
+        try {
+            minioAsyncClient.abortMultipartUploadAsync(bucketName, null, objectName, uploadId, null, null).get();
+            log.warn("Multipart upload {} aborted: bucket={}, object={}", uploadId, bucketName, objectName);
+        } catch (Exception e) {
+            log.error("Failed to abort multipart upload {}: {}", uploadId, e.getMessage());
+        }
+    }
+
+    @Override
+    public String createMultipartUpload(String bucketName, String objectName) {
+        Multimap<String, String> headers = HashMultimap.create();
+        headers.put("Content-Type", resolveContentType(fileService.getFileExtension(objectName)));
+
+        try {
+            String uploadId = minioAsyncClient.createMultipartUploadAsync(bucketName, null, objectName, headers, null)
+                    .get()
+                    .result()
+                    .uploadId();
+            log.info("Multipart upload {} created: bucket={}, object={}", uploadId, bucketName, objectName);
+            return uploadId;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FileUploadException("Interrupted while creating multipart upload", e);
+        } catch (Exception e) {
+            log.error("Failed to create multipart upload: {}", e.getMessage(), e);
+            throw new FileUploadException("Failed to create multipart upload", e);
+        }
+    }
+
+    @Override
+    public String getPresignedPartUrl(String bucketName, String objectName, String uploadId, int partNumber,
+                                      int expirySeconds) {
+        try {
+            // Подпись включает uploadId и номер части: ссылкой нельзя записать ничего, кроме этой части
+            return minioClient.getPresignedObjectUrl(
+                    GetPresignedObjectUrlArgs.builder()
+                            .method(Method.PUT)
+                            .bucket(bucketName)
+                            .object(objectName)
+                            .expiry(expirySeconds, TimeUnit.SECONDS)
+                            .extraQueryParams(Map.of(
+                                    "uploadId", uploadId,
+                                    "partNumber", String.valueOf(partNumber)))
+                            .build()
+            );
+        } catch (Exception e) {
+            log.error("Failed to presign part {} of upload {}: {}", partNumber, uploadId, e.getMessage(), e);
+            throw new FileUploadException("Failed to presign upload part", e);
+        }
+    }
+
+    @Override
+    public String getPresignedDownloadUrl(String bucketName, String objectName, int expirySeconds) {
+        try {
+            return minioClient.getPresignedObjectUrl(
+                    GetPresignedObjectUrlArgs.builder()
+                            .method(Method.GET)
+                            .bucket(bucketName)
+                            .object(objectName)
+                            .expiry(expirySeconds, TimeUnit.SECONDS)
+                            .build()
+            );
+        } catch (Exception e) {
+            log.error("Failed to presign download of {}/{}: {}", bucketName, objectName, e.getMessage(), e);
+            throw new FileUploadException("Failed to presign download", e);
+        }
+    }
+
+    @Override
+    public Map<Integer, Long> listUploadedParts(String bucketName, String objectName, String uploadId) {
+        return listParts(bucketName, objectName, uploadId).stream()
+                .collect(Collectors.toMap(Part::partNumber, Part::partSize));
+    }
+
+    @Override
+    public String completeMultipartUpload(String bucketName, String objectName, String uploadId) {
+        try {
+            Part[] parts = listParts(bucketName, objectName, uploadId).stream()
+                    .map(part -> new Part(part.partNumber(), part.etag()))
+                    .toArray(Part[]::new);
+            minioAsyncClient.completeMultipartUploadAsync(bucketName, null, objectName, uploadId, parts, null, null)
+                    .get();
+
+            log.info("Multipart upload {} completed: bucket={}, object={}, parts={}",
+                    uploadId, bucketName, objectName, parts.length);
+            return String.format("%s/%s", bucketName, objectName);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FileUploadException("Interrupted while completing multipart upload", e);
+        } catch (FileUploadException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Failed to complete multipart upload {}: {}", uploadId, e.getMessage(), e);
+            throw new FileUploadException("Failed to complete multipart upload", e);
+        }
+    }
+
+    /**
+     * Список загруженных частей по возрастанию номеров (хранилище отдает его страницами)
+     */
+    private List<Part> listParts(String bucketName, String objectName, String uploadId) {
+        List<Part> parts = new ArrayList<>();
+        try {
+            Integer marker = null;
+            while (true) {
+                ListPartsResult result = minioAsyncClient.listPartsAsync(
+                                bucketName, null, objectName, MAX_PARTS_PER_PAGE, marker, uploadId, null, null)
+                        .get()
+                        .result();
+                parts.addAll(result.partList());
+                if (!result.isTruncated()) {
+                    return parts;
+                }
+                marker = result.nextPartNumberMarker();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FileUploadException("Interrupted while listing upload parts", e);
+        } catch (Exception e) {
+            log.error("Failed to list parts of upload {}: {}", uploadId, e.getMessage(), e);
+            throw new FileUploadException("Failed to list upload parts", e);
+        }
+    }
+
+    private static long ceilDiv(long value, long divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+
+    @Override
+    public String uploadDirectory(String path, String bucketName) {
+        Path dirPath = Paths.get(path);
+        if (!Files.isDirectory(dirPath)) {
+            throw new FileUploadException("Directory not found: " + path);
+        }
+
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(dirPath)) {
+            files = walk.filter(Files::isRegularFile).toList();
+        } catch (IOException e) {
+            log.error("Failed to list directory {}: {}", path, e.getMessage(), e);
+            throw new FileUploadException("Failed to read directory for upload", e);
+        }
+
+        try {
+            uploadFilesAsync(files.stream().map(Path::toString).toList(), bucketName, null).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FileUploadException("Interrupted while uploading directory", e);
+        } catch (ExecutionException e) {
+            throw new FileUploadException("Failed to upload directory to storage", e.getCause());
+        }
+
+        String relativePath = Paths.get(tempDir).relativize(dirPath).toString();
+        log.info("Directory uploaded to MinIO: bucket={}, prefix={}, files={}", bucketName, relativePath, files.size());
+
+        return String.format("%s/%s", bucketName, relativePath);
+    }
+
+    @Override
+    public String downloadFile(String bucketName, String objectName, String targetPath) {
+        Path target = Paths.get(targetPath);
+        try {
+            Files.createDirectories(target.toAbsolutePath().getParent());
+
+            try (InputStream inputStream = minioClient.getObject(
+                    GetObjectArgs.builder()
+                            .bucket(bucketName)
+                            .object(objectName)
+                            .build())) {
+                Files.copy(inputStream, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            log.info("File downloaded from MinIO: bucket={}, object={}, target={}", bucketName, objectName, target);
+            return targetPath;
+
+        } catch (Exception e) {
+            log.error("Failed to download file from MinIO: {}", e.getMessage(), e);
+            throw new FileUploadException("Failed to download file from storage", e);
         }
     }
 
@@ -84,6 +668,10 @@ public class MinioStorageService implements StorageService {
 
     @Override
     public void createBucketIfNotExists(String bucketName) {
+        if (knownBuckets.contains(bucketName)) {
+            return;
+        }
+
         try {
             if (!bucketExists(bucketName)) {
                 minioClient.makeBucket(
@@ -93,10 +681,27 @@ public class MinioStorageService implements StorageService {
                 );
                 log.info("Bucket created: {}", bucketName);
             }
+            knownBuckets.add(bucketName);
         } catch (Exception e) {
             log.error("Failed to create bucket: {}", e.getMessage(), e);
             throw new FileUploadException("Failed to create bucket", e);
         }
     }
-}
 
+    /**
+     * Определяет Content-Type объекта по расширению файла
+     * Плейлисты и сегменты должны отдаваться с правильным типом, иначе плееры их не примут,
+     * а превью и раскадровка - как изображения и WebVTT, иначе браузер их не покажет
+     */
+    private String resolveContentType(String extension) {
+        return switch (extension) {
+            case "m3u8" -> "application/vnd.apple.mpegurl";
+            case "m4s" -> "video/iso.segment";
+            case "mpd" -> "application/dash+xml";
+            case "vtt" -> "text/vtt";
+            case "jpg", "jpeg" -> "image/jpeg";
+            case "png", "webp", "gif" -> "image/" + extension;
+            default -> "video/" + extension;
+        };
+    }
+}
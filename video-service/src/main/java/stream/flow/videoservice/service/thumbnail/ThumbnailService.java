@@ -0,0 +1,33 @@
+package stream.flow.videoservice.service.thumbnail;
+
+import stream.flow.videoservice.model.dto.response.VideoInfoResponse;
+
+import java.util.UUID;
+
+/**
+ * Превью видео:
+ * - Набор уменьшенных вариантов (WebP и JPEG нескольких ширин)
+ * - Неизменяемые ключи в хранилище: новое превью получает новый префикс
+ * - Автоматический выбор кадра, если пользователь не загрузил превью
+ */
+public interface ThumbnailService {
+
+    /**
+     * Создает варианты превью из загруженного изображения и сохраняет путь в видео
+     *
+     * @param videoId ID видео
+     * @param imagePath путь к локальному файлу изображения
+     * @return префикс вариантов в хранилище (bucket/videoId/thumbnail/hash)
+     */
+    String createFromImage(UUID videoId, String imagePath);
+
+    /**
+     * Выбирает характерный кадр видео и создает из него варианты превью
+     *
+     * @param videoId ID видео
+     * @param videoPath путь к локальному видео файлу
+     * @param source метаданные видео
+     * @return префикс вариантов в хранилище
+     */
+    String createFromVideo(UUID videoId, String videoPath, VideoInfoResponse source);
+}
@@ -0,0 +1,168 @@
+package stream.flow.videoservice.service.thumbnail.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+import stream.flow.videoservice.exception.file.FileUploadException;
+import stream.flow.videoservice.model.dto.response.VideoInfoResponse;
+import stream.flow.videoservice.service.ffmpeg.FfmpegService;
+import stream.flow.videoservice.service.ffmpeg.ImageVariant;
+import stream.flow.videoservice.service.storage.StorageService;
+import stream.flow.videoservice.service.thumbnail.ThumbnailService;
+import stream.flow.videoservice.service.video.VideoService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Варианты превью хранятся по ключам с хешем содержимого исходного изображения:
+ * {videoId}/thumbnail/{hash}/w320.webp, w320.jpg, w640.webp, ...
+ *
+ * Объект по такому ключу никогда не меняется, поэтому отдается с
+ * Cache-Control: immutable и кешируется браузерами и CDN без ревалидации.
+ * Замена превью дает новый hash и новый префикс в video.thumbnail_path
+ *
+ * Кадр и варианты создаются в собственной временной директории вызова, а не в
+ * {temp-dir}/{videoId}: ту удаляют завершение и ошибка обработки видео, которые
+ * могут выполняться одновременно с загрузкой превью
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ThumbnailServiceImpl implements ThumbnailService {
+
+    private static final String THUMBNAIL_DIR = "thumbnail";
+    private static final int HASH_LENGTH = 16;
+
+    private final FfmpegService ffmpegService;
+    private final StorageService storageService;
+    private final VideoService videoService;
+
+    @Value("${video.temp-dir}")
+    private String tempDir;
+
+    @Value("${minio.bucket.thumbnails:streamflow-thumbnails}")
+    private String thumbnailBucket;
+
+    @Value("${video.thumbnail.widths:1280,640,320}")
+    private String widths;
+
+    @Value("${video.thumbnail.formats:webp,jpg}")
+    private String formats;
+
+    @Value("${video.thumbnail.cache-control:public, max-age=31536000, immutable}")
+    private String cacheControl;
+
+    /**
+     * Доля длительности видео, с которой ищется кадр для автоматического превью
+     * (начало видео часто черное или с заставкой)
+     */
+    @Value("${video.thumbnail.auto-position:0.1}")
+    private double autoPosition;
+
+    @Override
+    public String createFromImage(UUID videoId, String imagePath) {
+        log.info("Creating thumbnail variants for video {} from {}", videoId, imagePath);
+
+        String hash = contentHash(Paths.get(imagePath));
+        // Структура внутри рабочей директории повторяет ключи объектов
+        Path workDir = createWorkDirectory();
+        Path variantDir = workDir.resolve(videoId.toString()).resolve(THUMBNAIL_DIR).resolve(hash);
+
+        List<ImageVariant> variants = new ArrayList<>();
+        for (String width : widths.split(",")) {
+            for (String format : formats.split(",")) {
+                String fileName = "w" + width.trim() + "." + format.trim();
+                variants.add(new ImageVariant(Integer.parseInt(width.trim()), format.trim(),
+                        variantDir.resolve(fileName).toString()));
+            }
+        }
+
+        try {
+            ffmpegService.encodeImageVariants(imagePath, variants);
+
+            uploadVariants(workDir, variants);
+        } finally {
+            deleteQuietly(workDir);
+        }
+
+        String thumbnailPath = String.format("%s/%s/%s/%s", thumbnailBucket, videoId, THUMBNAIL_DIR, hash);
+        videoService.updateThumbnail(videoId, thumbnailPath);
+
+        log.info("Thumbnail for video {} stored at {} ({} variants)", videoId, thumbnailPath, variants.size());
+        return thumbnailPath;
+    }
+
+    @Override
+    public String createFromVideo(UUID videoId, String videoPath, VideoInfoResponse source) {
+        int duration = source.getDuration() != null ? source.getDuration() : 0;
+        int position = (int) (duration * autoPosition);
+
+        Path frameDir = createWorkDirectory();
+        try {
+            Path framePath = frameDir.resolve("frame.png");
+            ffmpegService.extractFrame(videoPath, position, framePath.toString());
+            return createFromImage(videoId, framePath.toString());
+        } finally {
+            deleteQuietly(frameDir);
+        }
+    }
+
+    /**
+     * Варианты (ширины x форматы) загружаются одним пакетом параллельно
+     */
+    private void uploadVariants(Path workDir, List<ImageVariant> variants) {
+        List<String> paths = variants.stream().map(ImageVariant::outputPath).toList();
+        try {
+            storageService.uploadFilesAsync(workDir.toString(), paths, thumbnailBucket, cacheControl).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FileUploadException("Interrupted while uploading thumbnail variants", e);
+        } catch (ExecutionException e) {
+            throw new FileUploadException("Failed to upload thumbnail variants", e.getCause());
+        }
+    }
+
+    private Path createWorkDirectory() {
+        try {
+            Path root = Files.createDirectories(Paths.get(tempDir));
+            return Files.createTempDirectory(root, THUMBNAIL_DIR + "-");
+        } catch (IOException e) {
+            throw new FileUploadException("Failed to create thumbnail work directory: " + e.getMessage(), e);
+        }
+    }
+
+    private String contentHash(Path path) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (InputStream inputStream = new DigestInputStream(Files.newInputStream(path), digest)) {
+                inputStream.transferTo(OutputStream.nullOutputStream());
+            }
+            return HexFormat.of().formatHex(digest.digest()).substring(0, HASH_LENGTH);
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new FileUploadException("Failed to hash thumbnail " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            FileSystemUtils.deleteRecursively(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete {}: {}", path, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package stream.flow.videoservice.service.transcode;
+
+/**
+ * Оценка стоимости транскодирования по метаданным оригинала
+ */
+public interface TranscodeCostEstimator {
+
+    /**
+     * @param pathOriginal путь к оригинальному видео файлу или подписанная ссылка на него в хранилище
+     * @return сколько ядер займет задача и объем работы для упорядочивания очереди
+     */
+    TranscodeCost estimate(String pathOriginal);
+
+    /**
+     * @param cost сколько ядер займет кодирование
+     * @param work секунды видео, умноженные на количество качеств лестницы в единицах 1080p
+     */
+    record TranscodeCost(int cost, long work) {}
+}
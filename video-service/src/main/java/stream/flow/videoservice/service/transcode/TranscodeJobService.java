@@ -0,0 +1,66 @@
+package stream.flow.videoservice.service.transcode;
+
+import stream.flow.videoservice.model.entity.TranscodeJob;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Очередь задач транскодирования в Postgres (таблица transcode_job):
+ * - Постановка в очередь с ограничением длины
+ * - Захват задачи с арендой (SELECT ... FOR UPDATE SKIP LOCKED), общий для всех экземпляров
+ * - Продление аренды, повтор с задержкой и dead-letter после исчерпания попыток
+ * - Отмена задачи в очереди или в работе на любом экземпляре
+ */
+public interface TranscodeJobService {
+
+    /**
+     * Ставит видео в очередь
+     *
+     * @param pathOriginal путь к оригиналу на диске экземпляра, который возьмет задачу
+     * @param cost оценка стоимости, посчитанная до того, как локальная копия оригинала удалена
+     * @throws stream.flow.videoservice.exception.video.TranscodeQueueFullException если очередь заполнена
+     */
+    TranscodeJob enqueue(UUID videoId, String pathOriginal, TranscodeCostEstimator.TranscodeCost cost);
+
+    /**
+     * Берет следующую задачу в аренду этого экземпляра
+     */
+    Optional<TranscodeJob> claim();
+
+    /**
+     * Продлевает аренду задач, которые держит этот экземпляр
+     */
+    void heartbeat(Collection<UUID> jobIds);
+
+    void complete(UUID jobId);
+
+    /**
+     * Возвращает задачу в очередь с задержкой или переводит в DEAD, если попытки исчерпаны
+     */
+    void fail(UUID jobId, String error);
+
+    /**
+     * Отменяет задачу видео, если она еще в очереди или выполняется.
+     * Видео переводится в CANCELLED, выполнение останавливает экземпляр, который держит задачу
+     *
+     * @return отмененная задача или пустой Optional, если отменять нечего
+     */
+    Optional<TranscodeJob> cancel(UUID videoId);
+
+    /**
+     * ID отмененных задач среди задач, которые держит этот экземпляр
+     */
+    Set<UUID> findCancelled(Collection<UUID> jobIds);
+
+    /**
+     * Удаляет временные файлы и оригинал отмененных задач, владелец которых упал, не успев остановиться
+     *
+     * @return сколько задач убрано
+     */
+    int sweepCancelled();
+
+    long countQueued();
+}
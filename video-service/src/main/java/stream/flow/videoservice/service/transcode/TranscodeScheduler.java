@@ -0,0 +1,52 @@
+package stream.flow.videoservice.service.transcode;
+
+import stream.flow.videoservice.model.dto.response.TranscodeQueueResponse;
+import stream.flow.videoservice.model.entity.TranscodeJob;
+
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Локальный планировщик транскодирования:
+ * - Запуск задач в пределах бюджета CPU (стоимость задачи зависит от разрешения и длительности)
+ * - Приоритет коротких задач
+ * - Остановка отмененных задач
+ * - Состояние очереди для мониторинга
+ */
+public interface TranscodeScheduler {
+
+    /**
+     * Принимает задачу, взятую в аренду из очереди
+     */
+    void submit(TranscodeJob job);
+
+    /**
+     * Выполняет задачу в вызывающем потоке (воркер Kafka) в пределах того же бюджета CPU:
+     * ждет, пока стоимость задачи поместится в свободный бюджет, и держит его до конца обработки.
+     * Задачу можно остановить через cancel по ее ID - тогда обработка завершается ошибкой
+     */
+    void execute(TranscodeJob job);
+
+    /**
+     * Есть ли свободный бюджет для новой задачи
+     */
+    boolean hasCapacity();
+
+    /**
+     * Останавливает задачу этого экземпляра: ожидающая убирается из очереди,
+     * у выполняющейся прерывается поток обработки (FFmpeg завершается вместе с ним)
+     *
+     * @return true, если задача была на этом экземпляре
+     */
+    boolean cancel(UUID jobId);
+
+    /**
+     * ID задач, которые держит этот экземпляр (ожидающих бюджета и выполняющихся)
+     */
+    Set<UUID> getHeldJobIds();
+
+    /**
+     * Текущее состояние очереди и занятость бюджета
+     */
+    TranscodeQueueResponse getQueueState();
+}
@@ -0,0 +1,131 @@
+package stream.flow.videoservice.service.transcode.impl;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import stream.flow.videoservice.model.dto.message.TranscodeCommand;
+import stream.flow.videoservice.model.entity.TranscodeJob;
+import stream.flow.videoservice.model.enums.Status;
+import stream.flow.videoservice.service.storage.StorageService;
+import stream.flow.videoservice.service.transcode.TranscodeCostEstimator;
+import stream.flow.videoservice.service.transcode.TranscodeScheduler;
+import stream.flow.videoservice.service.video.VideoService;
+import stream.flow.videoservice.service.video.processor.TempFileManager;
+
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Воркер транскодирования (transcode.worker.enabled=true, только вместе с transcode.dispatch=kafka:
+ * обработчик ошибок с повторами и DLT объявлен в KafkaConfig)
+ *
+ * Каждый поток слушателя обрабатывает одну партицию за раз; потоков concurrency,
+ * экземпляров воркеров - сколько угодно в пределах количества партиций.
+ * Обработка идет через TranscodeScheduler: команда ждет свободного бюджета CPU, как и
+ * задачи из очереди в БД, поэтому потоки слушателя не кодируют больше, чем помещается на ядрах.
+ * Смещение фиксируется вручную только после обработки, то есть после сохранения
+ * метаданных всех качеств: если воркер упадет посередине, команда будет доставлена
+ * снова, и обработка продолжится с сохраненных этапов качеств
+ *
+ * Отмена помечает видео CANCELLED на экземпляре API, поэтому воркер периодически проверяет
+ * статус своих видео и останавливает задачу отмененного через планировщик
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "transcode.worker.enabled", havingValue = "true")
+public class TranscodeCommandListener {
+
+    private final TranscodeScheduler transcodeScheduler;
+    private final TranscodeCostEstimator costEstimator;
+    private final VideoService videoService;
+    private final StorageService storageService;
+    private final TempFileManager tempFileManager;
+
+    /**
+     * Видео, которые сейчас обрабатывает этот воркер -> ID задачи в планировщике
+     */
+    private final Map<UUID, UUID> activeJobs = new ConcurrentHashMap<>();
+
+    @Value("${video.temp-dir}")
+    private String tempDir;
+
+    @Value("${transcode.dispatch:jobs}")
+    private String dispatch;
+
+    @PostConstruct
+    public void checkDispatch() {
+        if (!"kafka".equals(dispatch)) {
+            throw new IllegalStateException(
+                    "transcode.worker.enabled=true requires transcode.dispatch=kafka, got: " + dispatch);
+        }
+    }
+
+    @KafkaListener(
+            topics = "${transcode.kafka.topic}",
+            groupId = "${transcode.kafka.group-id}",
+            concurrency = "${transcode.worker.concurrency:1}"
+    )
+    public void onTranscodeCommand(TranscodeCommand command, Acknowledgment acknowledgment) {
+        UUID videoId = command.getVideoId();
+        log.info("Transcode command received for video {}", videoId);
+
+        if (videoService.getVideoStatus(videoId) == Status.CANCELLED) {
+            acknowledgment.acknowledge();
+            log.info("Video {} was cancelled, skipping transcode command", videoId);
+            return;
+        }
+
+        String pathOriginal = Paths.get(tempDir, command.getOriginalObject()).toString();
+        if (!Paths.get(pathOriginal).toFile().exists()) {
+            storageService.downloadFile(command.getOriginalBucket(), command.getOriginalObject(), pathOriginal);
+        }
+
+        TranscodeCostEstimator.TranscodeCost cost = costEstimator.estimate(pathOriginal);
+        TranscodeJob job = TranscodeJob.builder()
+                .videoId(videoId)
+                .pathOriginal(pathOriginal)
+                .cost(cost.cost())
+                .work(cost.work())
+                .build();
+        job.setId(UUID.randomUUID());
+
+        activeJobs.put(videoId, job.getId());
+        try {
+            transcodeScheduler.execute(job);
+        } catch (RuntimeException e) {
+            if (videoService.getVideoStatus(videoId) != Status.CANCELLED) {
+                // Исключение уходит в DefaultErrorHandler: повтор с задержкой, затем DLT
+                throw e;
+            }
+            log.info("Video {} was cancelled during transcoding", videoId);
+        } finally {
+            activeJobs.remove(videoId);
+        }
+
+        acknowledgment.acknowledge();
+        tempFileManager.deleteTempDirectory(videoId);
+        log.info("Transcode command processed for video {}", videoId);
+    }
+
+    @Scheduled(fixedDelayString = "${transcode.worker.cancel-check-interval:10000}")
+    public void checkCancelled() {
+        activeJobs.forEach((videoId, jobId) -> {
+            try {
+                if (videoService.getVideoStatus(videoId) == Status.CANCELLED) {
+                    transcodeScheduler.cancel(jobId);
+                }
+            } catch (Exception e) {
+                log.error("Failed to check cancellation of video {}: {}", videoId, e.getMessage());
+            }
+        });
+    }
+}
@@ -0,0 +1,95 @@
+package stream.flow.videoservice.service.transcode.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import stream.flow.videoservice.model.dto.response.VideoInfoResponse;
+import stream.flow.videoservice.service.ffmpeg.FfmpegService;
+import stream.flow.videoservice.service.transcode.TranscodeCostEstimator;
+import stream.flow.videoservice.service.video.processor.LadderPlanner;
+
+/**
+ * Стоимость пропорциональна площади кадра (1080p = cost-1080p ядер), а длинное видео,
+ * которое кодируется кусками, занимает весь пул кусков. Стоимость не больше всего
+ * бюджета, иначе задача никогда не запустится
+ *
+ * Объем работы - длительность, умноженная на суммарную площадь кадра всех качеств лестницы
+ * (в единицах 1080p): по нему очередь ставит вперед короткие задачи. Видео без длительности
+ * или размера кадра получает заведомо большой объем unknown-work: с нулевым оно обгоняло бы всю очередь
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TranscodeCostEstimatorImpl implements TranscodeCostEstimator {
+
+    private static final long PIXELS_1080P = 1920L * 1080;
+
+    private final FfmpegService ffmpegService;
+    private final LadderPlanner ladderPlanner;
+
+    @Value("${transcode.scheduler.cpu-budget:0}")
+    private int cpuBudget;
+
+    @Value("${transcode.scheduler.cost-1080p:4}")
+    private double cost1080p;
+
+    @Value("${transcode.scheduler.unknown-work:14400}")
+    private long unknownWork;
+
+    @Value("${ffmpeg.chunked.enabled:true}")
+    private boolean chunkedEnabled;
+
+    @Value("${ffmpeg.chunked.min-duration:300}")
+    private int chunkedMinDuration;
+
+    @Value("${ffmpeg.chunked.parallelism:0}")
+    private int chunkParallelism;
+
+    @Override
+    public TranscodeCost estimate(String pathOriginal) {
+        VideoInfoResponse source = probe(pathOriginal);
+        return new TranscodeCost(estimateCost(source), estimateWork(source));
+    }
+
+    private VideoInfoResponse probe(String pathOriginal) {
+        try {
+            return ffmpegService.extractVideoMetadata(pathOriginal);
+        } catch (Exception e) {
+            // Оригинал без метаданных оценивается как 1080p, ошибку покажет сама обработка
+            log.warn("Failed to probe {} for scheduling: {}", pathOriginal.split("\\?", 2)[0], e.getMessage());
+            return new VideoInfoResponse();
+        }
+    }
+
+    private int estimateCost(VideoInfoResponse source) {
+        int budget = cpuBudget > 0 ? cpuBudget : Runtime.getRuntime().availableProcessors();
+        double pixelsRatio = source.getWidth() != null && source.getHeight() != null
+                ? (double) source.getWidth() * source.getHeight() / PIXELS_1080P
+                : 1.0;
+
+        int cost = (int) Math.ceil(cost1080p * pixelsRatio);
+        if (chunkedEnabled && source.getDuration() != null && source.getDuration() >= chunkedMinDuration) {
+            int parallelism = chunkParallelism > 0
+                    ? chunkParallelism
+                    : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+            cost = Math.max(cost, parallelism);
+        }
+
+        return Math.clamp(cost, 1, budget);
+    }
+
+    private long estimateWork(VideoInfoResponse source) {
+        if (source.getDuration() == null || source.getWidth() == null || source.getHeight() == null) {
+            return unknownWork;
+        }
+
+        // Ширина качества - по пропорциям исходника, как при масштабировании scale=-2:height
+        double aspect = (double) source.getWidth() / source.getHeight();
+        double ladderPixels = ladderPlanner.plan(source, 1.0).stream()
+                .mapToDouble(rendition -> aspect * rendition.height() * rendition.height())
+                .sum();
+
+        return Math.round(source.getDuration() * ladderPixels / PIXELS_1080P);
+    }
+}
@@ -0,0 +1,77 @@
+package stream.flow.videoservice.service.transcode.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import stream.flow.videoservice.model.entity.TranscodeJob;
+import stream.flow.videoservice.service.transcode.TranscodeJobService;
+import stream.flow.videoservice.service.transcode.TranscodeScheduler;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Забирает задачи из общей очереди в БД, пока у локального планировщика есть
+ * свободный бюджет, и продлевает аренду взятых задач.
+ * Экземпляр берет ровно столько задач, сколько может выполнить, - остальные
+ * остаются в БД доступными другим экземплярам
+ *
+ * Вместе с продлением аренды проверяется, не отменены ли взятые задачи:
+ * отмена могла прийти на другой экземпляр, и только владелец может остановить FFmpeg.
+ * Файлы отмененных задач упавших экземпляров убирает периодическая очистка
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "transcode.dispatch", havingValue = "jobs", matchIfMissing = true)
+public class TranscodeJobPoller {
+
+    private final TranscodeJobService transcodeJobService;
+    private final TranscodeScheduler transcodeScheduler;
+
+    @Scheduled(fixedDelayString = "${transcode.jobs.poll-interval:5000}")
+    public synchronized void poll() {
+        try {
+            while (transcodeScheduler.hasCapacity()) {
+                Optional<TranscodeJob> job = transcodeJobService.claim();
+                if (job.isEmpty()) {
+                    return;
+                }
+                transcodeScheduler.submit(job.get());
+            }
+        } catch (Exception e) {
+            log.error("Failed to poll transcode jobs: {}", e.getMessage(), e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${transcode.jobs.heartbeat-interval:30000}")
+    public void heartbeat() {
+        Set<UUID> held = transcodeScheduler.getHeldJobIds();
+        try {
+            transcodeJobService.heartbeat(held);
+        } catch (Exception e) {
+            log.error("Failed to extend transcode job leases: {}", e.getMessage(), e);
+        }
+
+        try {
+            transcodeJobService.findCancelled(held).forEach(transcodeScheduler::cancel);
+        } catch (Exception e) {
+            log.error("Failed to check transcode job cancellations: {}", e.getMessage(), e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${transcode.jobs.sweep-interval:60000}")
+    public void sweep() {
+        try {
+            int swept = transcodeJobService.sweepCancelled();
+            if (swept > 0) {
+                log.info("Cleaned up {} abandoned cancelled transcode jobs", swept);
+            }
+        } catch (Exception e) {
+            log.error("Failed to clean up cancelled transcode jobs: {}", e.getMessage(), e);
+        }
+    }
+}
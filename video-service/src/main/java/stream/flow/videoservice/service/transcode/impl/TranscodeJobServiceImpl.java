@@ -0,0 +1,310 @@
+package stream.flow.videoservice.service.transcode.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import stream.flow.videoservice.exception.video.TranscodeQueueFullException;
+import stream.flow.videoservice.model.entity.TranscodeJob;
+import stream.flow.videoservice.model.enums.Status;
+import stream.flow.videoservice.model.enums.TranscodeJobStatus;
+import stream.flow.videoservice.repository.TranscodeJobRepository;
+import stream.flow.videoservice.service.progress.TranscodeProgressService;
+import stream.flow.videoservice.service.storage.StorageService;
+import stream.flow.videoservice.service.transcode.TranscodeCostEstimator;
+import stream.flow.videoservice.service.transcode.TranscodeJobService;
+import stream.flow.videoservice.service.video.VideoService;
+import stream.flow.videoservice.service.video.processor.TempFileManager;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Задача живет в БД, поэтому рестарт или падение экземпляра не теряет ее: аренда
+ * упавшего экземпляра истекает, и задачу забирает любой другой. Оригинал и промежуточные
+ * файлы удаляются только после успеха или перевода в DEAD - повторной попытке нужен оригинал.
+ *
+ * Отмена только помечает задачу в БД: задачу в очереди больше никто не возьмет, а экземпляр,
+ * который выполняет задачу, узнает об отмене при продлении аренды и прерывает FFmpeg.
+ * Файлы отмененной задачи (временная директория и оригинал в bucket оригиналов) удаляет
+ * ее владелец после остановки, а если владелец упал - любой экземпляр по истечении аренды.
+ */
+@Slf4j
+@Service
+public class TranscodeJobServiceImpl implements TranscodeJobService {
+
+    private static final int MAX_ERROR_LENGTH = 4000;
+
+    /**
+     * Ключ advisory-блокировки постановки в очередь
+     */
+    private static final long QUEUE_LOCK_KEY = 0x5354524d464c4f57L;
+
+    private final TranscodeJobRepository transcodeJobRepository;
+    private final VideoService videoService;
+    private final TranscodeProgressService progressService;
+    private final TempFileManager tempFileManager;
+    private final StorageService storageService;
+
+    private final String workerId;
+
+    @Value("${video.temp-dir}")
+    private String tempDir;
+
+    @Value("${minio.bucket.originals}")
+    private String originalsBucket;
+
+    @Value("${transcode.scheduler.queue-capacity:100}")
+    private long queueCapacity;
+
+    @Value("${transcode.jobs.lease-duration:120}")
+    private long leaseSeconds;
+
+    @Value("${transcode.jobs.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${transcode.jobs.backoff-base:30}")
+    private long backoffBaseSeconds;
+
+    @Value("${transcode.jobs.backoff-max:1800}")
+    private long backoffMaxSeconds;
+
+    @Value("${transcode.jobs.aging-rate:2.0}")
+    private double agingRate;
+
+    @Value("${transcode.jobs.sweep-batch-size:50}")
+    private int sweepBatchSize;
+
+    public TranscodeJobServiceImpl(TranscodeJobRepository transcodeJobRepository,
+                                   VideoService videoService,
+                                   TranscodeProgressService progressService,
+                                   TempFileManager tempFileManager,
+                                   StorageService storageService,
+                                   @Value("${transcode.jobs.worker-id:}") String workerId) {
+        this.transcodeJobRepository = transcodeJobRepository;
+        this.videoService = videoService;
+        this.progressService = progressService;
+        this.tempFileManager = tempFileManager;
+        this.storageService = storageService;
+        this.workerId = workerId.isBlank() ? defaultWorkerId() : workerId;
+    }
+
+    @Override
+    @Transactional
+    public TranscodeJob enqueue(UUID videoId, String pathOriginal, TranscodeCostEstimator.TranscodeCost cost) {
+        // Без блокировки параллельные загрузки видят одну и ту же длину очереди и превышают лимит
+        transcodeJobRepository.lockQueue(QUEUE_LOCK_KEY);
+        if (transcodeJobRepository.countByStatus(TranscodeJobStatus.QUEUED) >= queueCapacity) {
+            log.warn("Transcode queue is full ({}), rejecting video {}", queueCapacity, videoId);
+            throw new TranscodeQueueFullException("Transcode queue is full, try again later");
+        }
+
+        TranscodeJob job = transcodeJobRepository.save(TranscodeJob.builder()
+                .videoId(videoId)
+                .pathOriginal(pathOriginal)
+                .status(TranscodeJobStatus.QUEUED)
+                .attempts(0)
+                .cost(cost.cost())
+                .work(cost.work())
+                .build());
+
+        log.info("Video {} queued for transcoding as job {} (cost {}, work {})",
+                videoId, job.getId(), cost.cost(), cost.work());
+        return job;
+    }
+
+    @Override
+    @Transactional
+    public Optional<TranscodeJob> claim() {
+        while (true) {
+            Optional<TranscodeJob> candidate = transcodeJobRepository.findNextClaimable(agingRate);
+            if (candidate.isEmpty()) {
+                return Optional.empty();
+            }
+
+            TranscodeJob job = candidate.get();
+
+            // Аренда истекла на последней попытке - экземпляр падает на этом видео, не берем его снова
+            if (job.getStatus() == TranscodeJobStatus.RUNNING && job.getAttempts() >= maxAttempts) {
+                log.warn("Job {} lease expired on its last attempt (owner {})", job.getId(), job.getLeaseOwner());
+                deadLetter(job, job.getLeaseOwner(), "Lease expired after " + job.getAttempts() + " attempts");
+                continue;
+            }
+
+            transcodeJobRepository.claim(job.getId(), workerId, leaseSeconds);
+            TranscodeJob claimed = transcodeJobRepository.findById(job.getId()).orElseThrow();
+            log.info("Job {} for video {} claimed by {} (attempt {})",
+                    claimed.getId(), claimed.getVideoId(), workerId, claimed.getAttempts());
+            return Optional.of(claimed);
+        }
+    }
+
+    @Override
+    @Transactional
+    public void heartbeat(Collection<UUID> jobIds) {
+        if (jobIds.isEmpty()) {
+            return;
+        }
+
+        int extended = transcodeJobRepository.extendLease(jobIds, workerId, leaseSeconds);
+        if (extended < jobIds.size()) {
+            // Аренду перехватил другой экземпляр - работа этого экземпляра будет выполнена повторно
+            log.warn("Extended {} of {} job leases held by {}", extended, jobIds.size(), workerId);
+        }
+    }
+
+    @Override
+    @Transactional
+    public void complete(UUID jobId) {
+        transcodeJobRepository.findById(jobId).ifPresent(job -> {
+            if (transcodeJobRepository.finish(jobId, workerId, TranscodeJobStatus.DONE.name(), null) == 0) {
+                // Аренду перехватил другой экземпляр - временные файлы теперь его
+                log.warn("Job {} for video {} is no longer held by {}, completion ignored",
+                        jobId, job.getVideoId(), workerId);
+                return;
+            }
+            tempFileManager.deleteTempDirectory(job.getVideoId());
+            log.info("Job {} for video {} completed", jobId, job.getVideoId());
+        });
+    }
+
+    @Override
+    @Transactional
+    public void fail(UUID jobId, String error) {
+        transcodeJobRepository.findById(jobId).ifPresent(job -> {
+            // Отмененная задача прервана намеренно: не повторяем и не переводим видео в FAILED
+            if (job.getStatus() == TranscodeJobStatus.CANCELLED) {
+                // Обработка могла начаться уже после отмены и перезаписать статус видео
+                videoService.updateVideoStatus(job.getVideoId(), Status.CANCELLED);
+                if (transcodeJobRepository.releaseCancelled(jobId, workerId) > 0) {
+                    discardFiles(job);
+                }
+                log.info("Job {} for video {} stopped after cancellation", jobId, job.getVideoId());
+                return;
+            }
+
+            String message = truncate(error);
+            if (job.getAttempts() >= maxAttempts) {
+                deadLetter(job, workerId, message);
+                return;
+            }
+
+            if (transcodeJobRepository.requeue(jobId, workerId, message, backoffBaseSeconds, backoffMaxSeconds) == 0) {
+                log.warn("Job {} for video {} is no longer held by {}, failure ignored: {}",
+                        jobId, job.getVideoId(), workerId, message);
+                return;
+            }
+            log.warn("Job {} for video {} failed on attempt {}/{}, will retry: {}",
+                    jobId, job.getVideoId(), job.getAttempts(), maxAttempts, message);
+        });
+    }
+
+    @Override
+    @Transactional
+    public Optional<TranscodeJob> cancel(UUID videoId) {
+        Optional<TranscodeJob> job = transcodeJobRepository.findByVideoId(videoId);
+        if (job.isEmpty() || transcodeJobRepository.cancel(job.get().getId()) == 0) {
+            log.debug("No active transcode job to cancel for video {}", videoId);
+            return Optional.empty();
+        }
+
+        TranscodeJob cancelled = job.get();
+        videoService.updateVideoStatus(videoId, Status.CANCELLED);
+        progressService.finish(videoId, Status.CANCELLED);
+
+        // Задачу в очереди никто не выполняет - оригинал можно удалить сразу,
+        // выполняющуюся задачу убирает экземпляр-владелец после остановки (или sweepCancelled)
+        if (cancelled.getStatus() == TranscodeJobStatus.QUEUED) {
+            discardFiles(cancelled);
+        }
+
+        log.info("Job {} for video {} cancelled ({}, owner {})",
+                cancelled.getId(), videoId, cancelled.getStatus(), cancelled.getLeaseOwner());
+        return Optional.of(cancelled);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Set<UUID> findCancelled(Collection<UUID> jobIds) {
+        if (jobIds.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(transcodeJobRepository.findCancelled(jobIds, workerId));
+    }
+
+    @Override
+    @Transactional
+    public int sweepCancelled() {
+        List<TranscodeJob> abandoned = transcodeJobRepository.findAbandonedCancelled(sweepBatchSize);
+        for (TranscodeJob job : abandoned) {
+            transcodeJobRepository.releaseCancelled(job.getId(), job.getLeaseOwner());
+            discardFiles(job);
+            log.info("Cleaned up cancelled job {} for video {} abandoned by {}",
+                    job.getId(), job.getVideoId(), job.getLeaseOwner());
+        }
+        return abandoned.size();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long countQueued() {
+        return transcodeJobRepository.countByStatus(TranscodeJobStatus.QUEUED);
+    }
+
+    /**
+     * Попытки исчерпаны: задача остается в таблице со статусом DEAD и последней ошибкой
+     * для разбора, видео переводится в FAILED, временные файлы удаляются
+     */
+    private void deadLetter(TranscodeJob job, String owner, String error) {
+        if (transcodeJobRepository.finish(job.getId(), owner, TranscodeJobStatus.DEAD.name(), error) == 0) {
+            log.warn("Job {} for video {} is no longer held by {}, not moving it to dead letter",
+                    job.getId(), job.getVideoId(), owner);
+            return;
+        }
+        videoService.updateVideoStatus(job.getVideoId(), Status.FAILED);
+        progressService.finish(job.getVideoId(), Status.FAILED);
+        tempFileManager.deleteTempDirectory(job.getVideoId());
+        log.error("Job {} for video {} moved to dead letter after {} attempts: {}",
+                job.getId(), job.getVideoId(), job.getAttempts(), error);
+    }
+
+    /**
+     * Удаляет временную директорию видео и оригинал в bucket оригиналов.
+     * Имя объекта оригинала - путь относительно временной директории
+     */
+    private void discardFiles(TranscodeJob job) {
+        tempFileManager.deleteTempDirectory(job.getVideoId());
+
+        String objectName = Paths.get(tempDir).relativize(Paths.get(job.getPathOriginal())).toString();
+        try {
+            storageService.deleteObjectsAsync(originalsBucket, List.of(objectName)).join();
+        } catch (Exception e) {
+            log.warn("Failed to delete original {} of cancelled video {}: {}",
+                    objectName, job.getVideoId(), e.getMessage());
+        }
+    }
+
+    private String truncate(String error) {
+        if (error == null) {
+            return null;
+        }
+        return error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+    }
+
+    private static String defaultWorkerId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "unknown";
+        }
+        return host + ":" + ProcessHandle.current().pid();
+    }
+}
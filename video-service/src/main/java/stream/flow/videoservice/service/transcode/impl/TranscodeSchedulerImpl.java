@@ -0,0 +1,258 @@
+package stream.flow.videoservice.service.transcode.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import stream.flow.videoservice.exception.file.FileUploadException;
+import stream.flow.videoservice.model.dto.response.TranscodeProgressResponse;
+import stream.flow.videoservice.model.dto.response.TranscodeQueueResponse;
+import stream.flow.videoservice.model.entity.TranscodeJob;
+import stream.flow.videoservice.service.progress.TranscodeProgressService;
+import stream.flow.videoservice.service.storage.StorageService;
+import stream.flow.videoservice.service.transcode.TranscodeJobService;
+import stream.flow.videoservice.service.transcode.TranscodeScheduler;
+import stream.flow.videoservice.service.video.VideoProcessingService;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+
+/**
+ * Планировщик с бюджетом CPU
+ *
+ * Бюджет - количество ядер, которые можно отдать под FFmpeg. Задача запускается только
+ * если ее стоимость (см. TranscodeCostEstimator) помещается в свободный бюджет, поэтому
+ * всплеск загрузок не приводит к десятку одновременных кодирований, которые делят ядра
+ * и работают медленнее, чем те же задачи по очереди.
+ *
+ * Задачи приходят из очереди в БД только при свободном бюджете, поэтому локальная очередь
+ * короткая. Она упорядочена по объему работы, и если первая задача не помещается
+ * в свободный бюджет, следующие не запускаются в обход нее - иначе большие задачи
+ * никогда не дождутся освобождения бюджета.
+ *
+ * Отмена выполняющейся задачи прерывает ее поток: ProcessRunner на прерывание убивает
+ * FFmpeg, и следующие этапы обработки сразу завершаются ошибкой.
+ *
+ * Воркер Kafka выполняет задачи в своем потоке слушателя, но занимает тот же бюджет:
+ * поток ждет, пока задача поместится в свободный бюджет, и пропускает вперед задачи
+ * локальной очереди.
+ */
+@Slf4j
+@Service
+public class TranscodeSchedulerImpl implements TranscodeScheduler {
+
+    private final VideoProcessingService videoProcessingService;
+    private final TranscodeJobService transcodeJobService;
+    private final TranscodeProgressService progressService;
+    private final StorageService storageService;
+    private final Executor transcodeExecutor;
+
+    private final int cpuBudget;
+    private final int queueCapacity;
+
+    private final PriorityQueue<TranscodeJob> queue = new PriorityQueue<>(
+            Comparator.comparingLong(TranscodeJob::getWork).thenComparing(TranscodeJob::getCreatedAt));
+    private final Map<UUID, TranscodeJob> running = new LinkedHashMap<>();
+    private final Map<UUID, Thread> workers = new HashMap<>();
+    private int usedBudget;
+
+    @Value("${video.temp-dir}")
+    private String tempDir;
+
+    @Value("${minio.bucket.originals}")
+    private String originalsBucket;
+
+    public TranscodeSchedulerImpl(VideoProcessingService videoProcessingService,
+                                  TranscodeJobService transcodeJobService,
+                                  TranscodeProgressService progressService,
+                                  StorageService storageService,
+                                  @Qualifier("transcodeExecutor") Executor transcodeExecutor,
+                                  @Value("${transcode.scheduler.cpu-budget:0}") int cpuBudget,
+                                  @Value("${transcode.scheduler.queue-capacity:100}") int queueCapacity) {
+        this.videoProcessingService = videoProcessingService;
+        this.transcodeJobService = transcodeJobService;
+        this.progressService = progressService;
+        this.storageService = storageService;
+        this.transcodeExecutor = transcodeExecutor;
+        this.cpuBudget = cpuBudget > 0 ? cpuBudget : Runtime.getRuntime().availableProcessors();
+        this.queueCapacity = queueCapacity;
+    }
+
+    @Override
+    public void submit(TranscodeJob job) {
+        synchronized (this) {
+            queue.add(job);
+            log.debug("Job {} for video {} accepted (cost {}, local queue {})",
+                    job.getId(), job.getVideoId(), job.getCost(), queue.size());
+        }
+
+        dispatch();
+    }
+
+    @Override
+    public void execute(TranscodeJob job) {
+        boolean acquired = false;
+        synchronized (this) {
+            // Поток регистрируется до ожидания бюджета, чтобы отмена прервала и ожидание
+            workers.put(job.getId(), Thread.currentThread());
+        }
+
+        try {
+            acquire(job);
+            acquired = true;
+            videoProcessingService.processing(job.getPathOriginal(), job.getVideoId());
+        } catch (InterruptedException e) {
+            throw new FileUploadException("Job " + job.getId() + " cancelled while waiting for transcode budget", e);
+        } finally {
+            detach(job);
+            if (acquired) {
+                release(job);
+                dispatch();
+            }
+        }
+    }
+
+    @Override
+    public synchronized boolean hasCapacity() {
+        return queue.isEmpty() && usedBudget < cpuBudget;
+    }
+
+    @Override
+    public synchronized boolean cancel(UUID jobId) {
+        if (queue.removeIf(job -> job.getId().equals(jobId))) {
+            log.info("Job {} cancelled before start", jobId);
+            return true;
+        }
+
+        Thread worker = workers.get(jobId);
+        if (worker != null) {
+            log.info("Job {} cancelled, interrupting {}", jobId, worker.getName());
+            worker.interrupt();
+            return true;
+        }
+
+        return running.containsKey(jobId);
+    }
+
+    @Override
+    public synchronized Set<UUID> getHeldJobIds() {
+        Set<UUID> ids = new HashSet<>();
+        queue.forEach(job -> ids.add(job.getId()));
+        running.values().forEach(job -> ids.add(job.getId()));
+        return ids;
+    }
+
+    @Override
+    public TranscodeQueueResponse getQueueState() {
+        long queued = transcodeJobService.countQueued();
+
+        synchronized (this) {
+            // Ближайшее освобождение бюджета - минимальный ETA среди выполняющихся задач
+            Long nextSlotEta = running.values().stream()
+                    .map(job -> progressService.getProgress(job.getVideoId()))
+                    .flatMap(Optional::stream)
+                    .map(TranscodeProgressResponse::getEtaSeconds)
+                    .filter(Objects::nonNull)
+                    .min(Long::compare)
+                    .orElse(null);
+
+            return TranscodeQueueResponse.builder()
+                    .queued((int) queued + queue.size())
+                    .queueCapacity(queueCapacity)
+                    .running(running.size())
+                    .usedBudget(usedBudget)
+                    .cpuBudget(cpuBudget)
+                    .nextSlotEtaSeconds(nextSlotEta)
+                    .build();
+        }
+    }
+
+    /**
+     * Запускает задачи из головы очереди, пока они помещаются в свободный бюджет
+     */
+    private synchronized void dispatch() {
+        while (!queue.isEmpty() && queue.peek().getCost() <= cpuBudget - usedBudget) {
+            TranscodeJob job = queue.poll();
+            usedBudget += job.getCost();
+            running.put(job.getId(), job);
+
+            log.debug("Starting job {} for video {} (cost {}, budget {}/{})",
+                    job.getId(), job.getVideoId(), job.getCost(), usedBudget, cpuBudget);
+            transcodeExecutor.execute(() -> run(job));
+        }
+
+        // Очередь могла опустеть - потоки воркера Kafka, ожидающие бюджет, проверяют его снова
+        notifyAll();
+    }
+
+    private synchronized void acquire(TranscodeJob job) throws InterruptedException {
+        while (!queue.isEmpty() || job.getCost() > cpuBudget - usedBudget) {
+            wait();
+        }
+
+        usedBudget += job.getCost();
+        running.put(job.getId(), job);
+        log.debug("Starting inline job {} for video {} (cost {}, budget {}/{})",
+                job.getId(), job.getVideoId(), job.getCost(), usedBudget, cpuBudget);
+    }
+
+    private void run(TranscodeJob job) {
+        synchronized (this) {
+            workers.put(job.getId(), Thread.currentThread());
+        }
+
+        try {
+            ensureOriginal(job.getPathOriginal());
+            videoProcessingService.processing(job.getPathOriginal(), job.getVideoId());
+            detach(job);
+            transcodeJobService.complete(job.getId());
+        } catch (Exception e) {
+            detach(job);
+            log.error("Job {} for video {} failed: {}", job.getId(), job.getVideoId(), e.getMessage());
+            transcodeJobService.fail(job.getId(), e.getMessage());
+        } finally {
+            release(job);
+            dispatch();
+        }
+    }
+
+    /**
+     * Оригинал лежит в bucket оригиналов (его загрузил экземпляр, принявший видео, или клиент
+     * напрямую) и скачивается, если его нет на диске этого экземпляра.
+     * Имя объекта в bucket оригиналов - путь относительно временной директории
+     */
+    private void ensureOriginal(String pathOriginal) {
+        Path path = Paths.get(pathOriginal);
+        if (!Files.exists(path)) {
+            String objectName = Paths.get(tempDir).relativize(path).toString();
+            storageService.downloadFile(originalsBucket, objectName, pathOriginal);
+        }
+    }
+
+    /**
+     * Обработка закончилась: отмена больше не прерывает поток, а уже полученное прерывание
+     * сбрасывается - иначе на нем упадут запросы к БД и следующая задача этого потока пула
+     */
+    private synchronized void detach(TranscodeJob job) {
+        workers.remove(job.getId());
+        Thread.interrupted();
+    }
+
+    private synchronized void release(TranscodeJob job) {
+        running.remove(job.getId());
+        usedBudget -= job.getCost();
+        notifyAll();
+    }
+}
@@ -43,6 +43,22 @@ public class VideoValidationService {
         log.info("Video file validation passed: {}", file.getOriginalFilename());
     }
 
+    /**
+     * Валидирует видео, которое клиент загружает напрямую в хранилище:
+     * проверяются заявленные имя и размер файла
+     */
+    public void validateVideoUpload(String filename, long fileSize) {
+        if (fileSize <= 0) {
+            throw new InvalidFileTypeException("Video file is required");
+        }
+
+        validateFileSize(fileSize, maxFileSize);
+
+        validateFileType(filename, Arrays.asList(allowedVideoTypes.split(",")));
+
+        log.info("Video upload validation passed: {}", filename);
+    }
+
     /**
      * Валидирует файл превью (thumbnail)
      */
@@ -64,23 +80,29 @@ public class VideoValidationService {
      * Валидирует размер файла
      */
     public void validateFileSize(MultipartFile file, long maxSize) {
-        if (file.getSize() > maxSize) {
+        validateFileSize(file.getSize(), maxSize);
+    }
+
+    public void validateFileSize(long fileSize, long maxSize) {
+        if (fileSize > maxSize) {
             long maxSizeMB = maxSize / (1024 * 1024);
-            long fileSizeMB = file.getSize() / (1024 * 1024);
+            long fileSizeMB = fileSize / (1024 * 1024);
             throw new FileSizeExceededException(
                 String.format("File size %d MB exceeds maximum allowed size %d MB", fileSizeMB, maxSizeMB)
             );
         }
 
-        log.info("File size validation passed: {}", file.getSize());
+        log.info("File size validation passed: {}", fileSize);
     }
 
     /**
      * Валидирует тип файла по расширению
      */
     public void validateFileType(MultipartFile file, List<String> allowedTypes) {
+        validateFileType(file.getOriginalFilename(), allowedTypes);
+    }
 
-        String filename = file.getOriginalFilename();
+    public void validateFileType(String filename, List<String> allowedTypes) {
         if (filename == null || filename.isEmpty()) {
             throw new InvalidFileTypeException("Filename is empty");
         }
@@ -5,4 +5,19 @@ import java.util.UUID;
 public interface AsyncProcessVideoService {
 
     void processingAsync(String pathOriginal,  UUID videoId);
+
+    /**
+     * Запускает обработку оригинала, который уже лежит в bucket оригиналов
+     * (клиент загрузил его напрямую по подписанным ссылкам)
+     *
+     * @param objectName имя объекта оригинала ({videoId}/original.{ext})
+     */
+    void processingStored(String objectName, UUID videoId);
+
+    /**
+     * Отменяет обработку видео, если она еще не завершена
+     *
+     * @return true, если обработка была отменена
+     */
+    boolean cancelProcessing(UUID videoId);
 }
@@ -0,0 +1,35 @@
+package stream.flow.videoservice.service.video;
+
+import stream.flow.videoservice.model.dto.request.UploadSessionRequest;
+import stream.flow.videoservice.model.dto.response.UploadSessionResponse;
+import stream.flow.videoservice.model.dto.response.VideoUploadResponse;
+
+import java.util.UUID;
+
+/**
+ * Загрузка оригинала клиентом напрямую в хранилище:
+ * клиент получает подписанные ссылки на части многочастной загрузки, загружает части
+ * в bucket оригиналов и подтверждает завершение, после чего запускается обработка.
+ * Тело файла не проходит через API
+ */
+public interface UploadSessionService {
+
+    /**
+     * Создает видео и многочастную загрузку его оригинала
+     *
+     * @return ссылки на части и размер части
+     */
+    UploadSessionResponse createSession(UploadSessionRequest request, String userId);
+
+    /**
+     * Проверяет, что все части загружены, собирает из них оригинал и запускает обработку
+     *
+     * @throws stream.flow.videoservice.exception.file.UploadIncompleteException если загружены не все части
+     */
+    VideoUploadResponse completeSession(UUID videoId, String userId);
+
+    /**
+     * Отменяет загрузку: загруженные части удаляются, видео помечается CANCELLED
+     */
+    void abortSession(UUID videoId, String userId);
+}
@@ -0,0 +1,20 @@
+package stream.flow.videoservice.service.video;
+
+import java.util.UUID;
+
+/**
+ * Дедупликация оригиналов по содержимому (SHA-256):
+ * повторная загрузка того же файла получает качества уже обработанного видео
+ * вместо нового транскодирования
+ */
+public interface VideoDeduplicationService {
+
+    /**
+     * Привязывает к видео качества, манифесты и раскадровку готового видео с тем же содержимым.
+     * Новые записи video_quality ссылаются на те же объекты в хранилище
+     *
+     * @param contentHash SHA-256 оригинала (hex)
+     * @return true, если видео привязано и транскодировать его не нужно
+     */
+    boolean linkExisting(UUID videoId, String contentHash);
+}
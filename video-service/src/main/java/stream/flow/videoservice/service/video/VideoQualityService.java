@@ -1,10 +1,23 @@
 package stream.flow.videoservice.service.video;
 
 import stream.flow.videoservice.model.dto.response.VideoInfoResponse;
+import stream.flow.videoservice.model.entity.VideoQuality;
 import stream.flow.videoservice.model.enums.Quality;
 
+import java.util.List;
 import java.util.UUID;
 
 public interface VideoQualityService {
-    void saveVideoMetadata(VideoInfoResponse videoInfoResponse, String storagePath, UUID videoId, Quality quality);
+    /**
+     * Сохраняет метаданные закодированного качества
+     *
+     * @param targetBitrate потолок битрейта видео, выбранный для этого качества (kbps)
+     */
+    void saveVideoMetadata(VideoInfoResponse videoInfoResponse, String storagePath, UUID videoId,
+                           Quality quality, Integer targetBitrate);
+
+    /**
+     * Возвращает все сохраненные качества видео
+     */
+    List<VideoQuality> getVideoQualities(UUID videoId);
 }
@@ -24,6 +24,40 @@ public interface VideoService {
      * Обновляет статус видео (используется при обработке)
      */
     void updateVideoStatus(UUID videoId, Status newStatus);
+
+    Status getVideoStatus(UUID videoId);
+
+    /**
+     * Сохраняет пути к манифестам адаптивного стриминга (HLS master-плейлист и DASH MPD)
+     */
+    void updateStreamingManifests(UUID videoId, String hlsManifestPath, String dashManifestPath);
+
+    /**
+     * Сохраняет SHA-256 оригинала (hex), по которому находятся повторные загрузки того же файла
+     */
+    void updateContentHash(UUID videoId, String contentHash);
+
+    /**
+     * Сохраняет путь к WebVTT индексу раскадровки
+     */
+    void updateStoryboard(UUID videoId, String storyboardPath);
+
+    /**
+     * Сохраняет префикс вариантов превью
+     */
+    void updateThumbnail(UUID videoId, String thumbnailPath);
+
+    /**
+     * Проверяет, есть ли у видео превью (загруженное или выбранное автоматически)
+     */
+    boolean hasThumbnail(UUID videoId);
+
+    /**
+     * Проверяет, что видео принадлежит пользователю
+     *
+     * @throws stream.flow.videoservice.exception.user.UnauthorizedAccessException если владелец другой
+     */
+    void checkOwnership(UUID videoId, String userId);
 }
 
 
@@ -2,28 +2,105 @@ package stream.flow.videoservice.service.video.impl;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
+import stream.flow.videoservice.exception.video.TranscodeQueueFullException;
+import stream.flow.videoservice.service.storage.StorageService;
+import stream.flow.videoservice.service.transcode.TranscodeCostEstimator;
+import stream.flow.videoservice.service.transcode.TranscodeJobService;
+import stream.flow.videoservice.service.transcode.TranscodeScheduler;
+import stream.flow.videoservice.service.transcode.impl.TranscodeJobPoller;
 import stream.flow.videoservice.service.video.AsyncProcessVideoService;
-import stream.flow.videoservice.service.video.VideoProcessingService;
+import stream.flow.videoservice.service.video.processor.TempFileManager;
 
+import java.nio.file.Paths;
+import java.util.List;
 import java.util.UUID;
 
+/**
+ * Транскодирование ставится в очередь задач в БД, а не в общий @Async пул:
+ * задача переживает рестарт экземпляра, а TranscodeScheduler запускает ее
+ * с учетом бюджета CPU
+ *
+ * Задачу может взять любой экземпляр (в том числе после падения того, что принял загрузку),
+ * поэтому оригинал до постановки в очередь загружается в bucket оригиналов, а локальная
+ * копия удаляется: экземпляр, взявший задачу, скачает оригинал сам
+ */
 @Service
 @Slf4j
 @RequiredArgsConstructor
+@ConditionalOnProperty(name = "transcode.dispatch", havingValue = "jobs", matchIfMissing = true)
 public class AsyncProcessVideoServiceImpl implements AsyncProcessVideoService {
 
-    private final VideoProcessingService videoProcessingService;
+    private final TranscodeJobService transcodeJobService;
+    private final TranscodeJobPoller transcodeJobPoller;
+    private final TranscodeCostEstimator costEstimator;
+    private final TranscodeScheduler transcodeScheduler;
+    private final StorageService storageService;
+    private final TempFileManager tempFileManager;
+
+    @Value("${video.temp-dir}")
+    private String tempDir;
+
+    @Value("${minio.bucket.originals}")
+    private String originalsBucket;
+
+    @Value("${minio.url-expiry:3600}")
+    private int urlExpirySeconds;
 
     @Override
-    @Async(value = "taskExecutor")
     public void processingAsync(String pathOriginal, UUID videoId) {
         log.info("Processing video frame request: {}", pathOriginal);
 
-        videoProcessingService.processing(pathOriginal, videoId);
+        // "streamflow-originals/{videoId}/original.mp4" -> "{videoId}/original.mp4"
+        String storagePath = storageService.uploadFile(pathOriginal, originalsBucket);
+        String objectName = storagePath.substring(originalsBucket.length() + 1);
+
+        // Локальная копия удаляется до постановки в очередь: после нее задачу может сразу
+        // взять и этот экземпляр, и он скачает оригинал в ту же директорию
+        TranscodeCostEstimator.TranscodeCost cost = costEstimator.estimate(pathOriginal);
+        tempFileManager.deleteTempDirectory(videoId);
 
-        log.info("Processing video frame response: {}", pathOriginal);
+        try {
+            transcodeJobService.enqueue(videoId, pathOriginal, cost);
+        } catch (TranscodeQueueFullException e) {
+            deleteStoredOriginal(objectName);
+            throw e;
+        }
+
+        // Не ждем следующего опроса, если бюджет свободен прямо сейчас
+        transcodeJobPoller.poll();
+
+        log.info("Processing video frame queued: {}", pathOriginal);
+    }
 
+    @Override
+    public void processingStored(String objectName, UUID videoId) {
+        // Оригинала еще нет на диске: экземпляр, который возьмет задачу, скачает его из хранилища.
+        // Для оценки FFprobe читает заголовок объекта по подписанной ссылке, не скачивая видео
+        String pathOriginal = Paths.get(tempDir, objectName).toString();
+        String originalUrl = storageService.getPresignedDownloadUrl(originalsBucket, objectName, urlExpirySeconds);
+        transcodeJobService.enqueue(videoId, pathOriginal, costEstimator.estimate(originalUrl));
+        transcodeJobPoller.poll();
+    }
+
+    private void deleteStoredOriginal(String objectName) {
+        try {
+            storageService.deleteObjectsAsync(originalsBucket, List.of(objectName)).join();
+        } catch (Exception e) {
+            log.warn("Failed to delete original {} of rejected video: {}", objectName, e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean cancelProcessing(UUID videoId) {
+        // Задачу другого экземпляра остановит ее владелец при следующем продлении аренды
+        return transcodeJobService.cancel(videoId)
+                .map(job -> {
+                    transcodeScheduler.cancel(job.getId());
+                    return true;
+                })
+                .orElse(false);
     }
 }
@@ -0,0 +1,104 @@
+package stream.flow.videoservice.service.video.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+import stream.flow.videoservice.exception.file.FileUploadException;
+import stream.flow.videoservice.model.dto.message.TranscodeCommand;
+import stream.flow.videoservice.model.enums.Status;
+import stream.flow.videoservice.service.progress.TranscodeProgressService;
+import stream.flow.videoservice.service.storage.StorageService;
+import stream.flow.videoservice.service.video.AsyncProcessVideoService;
+import stream.flow.videoservice.service.video.VideoService;
+import stream.flow.videoservice.service.video.processor.TempFileManager;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Отправка видео на транскодирование воркерам через Kafka
+ *
+ * Воркер работает на другой машине, поэтому оригинал сначала загружается в bucket
+ * оригиналов, и только потом публикуется команда (ключ - ID видео). Отправка ждет
+ * подтверждения брокера: загрузка не считается принятой, пока команда не записана
+ *
+ * Отозвать опубликованную команду нельзя, поэтому отмена помечает видео CANCELLED,
+ * а воркер пропускает команду отмененного видео. Уже начатое кодирование воркер
+ * останавливает, заметив статус при периодической проверке
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "transcode.dispatch", havingValue = "kafka")
+public class KafkaProcessVideoService implements AsyncProcessVideoService {
+
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final StorageService storageService;
+    private final TempFileManager tempFileManager;
+    private final VideoService videoService;
+    private final TranscodeProgressService progressService;
+
+    @Value("${transcode.kafka.topic}")
+    private String topic;
+
+    @Value("${transcode.kafka.send-timeout:30}")
+    private long sendTimeoutSeconds;
+
+    @Value("${minio.bucket.originals}")
+    private String originalsBucket;
+
+    @Override
+    public void processingAsync(String pathOriginal, UUID videoId) {
+        // "streamflow-originals/{videoId}/original.mp4" -> "{videoId}/original.mp4"
+        String storagePath = storageService.uploadFile(pathOriginal, originalsBucket);
+        String objectName = storagePath.substring(originalsBucket.length() + 1);
+
+        publish(objectName, videoId);
+
+        // Локальная копия больше не нужна: воркер скачает оригинал из хранилища
+        tempFileManager.deleteTempDirectory(videoId);
+    }
+
+    @Override
+    public void processingStored(String objectName, UUID videoId) {
+        publish(objectName, videoId);
+    }
+
+    private void publish(String objectName, UUID videoId) {
+        log.info("Publishing transcode command for video {}", videoId);
+
+        TranscodeCommand command = TranscodeCommand.builder()
+                .videoId(videoId)
+                .originalBucket(originalsBucket)
+                .originalObject(objectName)
+                .build();
+
+        try {
+            kafkaTemplate.send(topic, videoId.toString(), command).get(sendTimeoutSeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FileUploadException("Interrupted while publishing transcode command", e);
+        } catch (Exception e) {
+            log.error("Failed to publish transcode command for video {}: {}", videoId, e.getMessage(), e);
+            throw new FileUploadException("Failed to publish transcode command: " + e.getMessage(), e);
+        }
+
+        log.info("Transcode command published for video {}", videoId);
+    }
+
+    @Override
+    public boolean cancelProcessing(UUID videoId) {
+        Status status = videoService.getVideoStatus(videoId);
+        if (status == Status.READY || status == Status.FAILED || status == Status.CANCELLED) {
+            return false;
+        }
+
+        videoService.updateVideoStatus(videoId, Status.CANCELLED);
+        progressService.finish(videoId, Status.CANCELLED);
+        log.info("Video {} cancelled, its transcode command will be skipped", videoId);
+        return true;
+    }
+}
@@ -0,0 +1,244 @@
+package stream.flow.videoservice.service.video.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+import stream.flow.videoservice.exception.file.UploadIncompleteException;
+import stream.flow.videoservice.exception.file.UploadSessionNotFoundException;
+import stream.flow.videoservice.exception.video.TranscodeQueueFullException;
+import stream.flow.videoservice.model.dto.UploadSession;
+import stream.flow.videoservice.model.dto.request.UploadSessionRequest;
+import stream.flow.videoservice.model.dto.request.VideoCreateFrameRequest;
+import stream.flow.videoservice.model.dto.response.UploadPartResponse;
+import stream.flow.videoservice.model.dto.response.UploadSessionResponse;
+import stream.flow.videoservice.model.dto.response.VideoFrameResponse;
+import stream.flow.videoservice.model.dto.response.VideoUploadResponse;
+import stream.flow.videoservice.model.enums.Status;
+import stream.flow.videoservice.model.enums.Visibility;
+import stream.flow.videoservice.service.file.FileService;
+import stream.flow.videoservice.service.storage.StorageService;
+import stream.flow.videoservice.service.validation.VideoValidationService;
+import stream.flow.videoservice.service.video.AsyncProcessVideoService;
+import stream.flow.videoservice.service.video.UploadSessionService;
+import stream.flow.videoservice.service.video.VideoService;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Сессия загрузки хранится в Redis (video:upload-session:{id}), поэтому подтвердить
+ * загрузку можно через любой экземпляр. Подтверждение и отмена сначала берут блокировку
+ * (video:upload-session-lock:{id}, SET NX): параллельный запрос получит 409, а сессия
+ * удаляется только после сборки объекта. Если сборка не удалась, сессия остается
+ * и подтверждение можно повторить; повторное подтверждение завершенной загрузки
+ * не запустит обработку второй раз.
+ *
+ * Подписанные ссылки действуют url-expiry секунд. Части брошенных сессий остаются
+ * в bucket до отмены загрузки, поэтому для bucket оригиналов стоит настроить
+ * удаление незавершенных многочастных загрузок (lifecycle)
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UploadSessionServiceImpl implements UploadSessionService {
+
+    private static final String KEY_PREFIX = "video:upload-session:";
+    private static final String LOCK_PREFIX = "video:upload-session-lock:";
+
+    /**
+     * Минимальный размер части S3 (кроме последней) и максимальное количество частей
+     */
+    private static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+    private static final int MAX_PARTS = 10_000;
+
+    private final VideoService videoService;
+    private final VideoValidationService validationService;
+    private final FileService fileService;
+    private final StorageService storageService;
+    private final AsyncProcessVideoService asyncProcessVideoService;
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    @Value("${minio.bucket.originals}")
+    private String originalsBucket;
+
+    @Value("${minio.url-expiry:3600}")
+    private int urlExpirySeconds;
+
+    @Value("${file.upload.session.part-size:67108864}")
+    private long partSize;
+
+    @Value("${file.upload.session.ttl:86400}")
+    private long sessionTtlSeconds;
+
+    @Value("${file.upload.session.complete-lock-ttl:600}")
+    private long completeLockTtlSeconds;
+
+    @Override
+    public UploadSessionResponse createSession(UploadSessionRequest request, String userId) {
+        log.info("Creating upload session for {} ({} bytes), user: {}",
+                request.getFileName(), request.getFileSize(), userId);
+
+        validationService.validateVideoUpload(request.getFileName(), request.getFileSize());
+
+        VideoFrameResponse video = videoService.createVideoFrame(VideoCreateFrameRequest.builder()
+                .title(request.getFileName())
+                .visibility(Visibility.PUBLIC)
+                .status(Status.UPLOADING)
+                .userId(userId)
+                .build());
+        UUID videoId = video.getVideoId();
+
+        // Тот же ключ, что у оригинала, загруженного через API: {videoId}/original.{ext}
+        String extension = fileService.getFileExtension(request.getFileName());
+        String objectName = videoId + "/original." + extension;
+
+        // Не больше MAX_PARTS частей: для очень больших файлов часть увеличивается
+        long fileSize = request.getFileSize();
+        long effectivePartSize = Math.max(Math.max(partSize, MIN_PART_SIZE), ceilDiv(fileSize, MAX_PARTS));
+        int partCount = (int) ceilDiv(fileSize, effectivePartSize);
+
+        storageService.createBucketIfNotExists(originalsBucket);
+        String uploadId = storageService.createMultipartUpload(originalsBucket, objectName);
+
+        List<UploadPartResponse> parts = new ArrayList<>(partCount);
+        try {
+            for (int partNumber = 1; partNumber <= partCount; partNumber++) {
+                parts.add(UploadPartResponse.builder()
+                        .partNumber(partNumber)
+                        .url(storageService.getPresignedPartUrl(
+                                originalsBucket, objectName, uploadId, partNumber, urlExpirySeconds))
+                        .build());
+            }
+
+            redisTemplate.opsForValue().set(KEY_PREFIX + videoId, UploadSession.builder()
+                    .videoId(videoId)
+                    .objectName(objectName)
+                    .uploadId(uploadId)
+                    .fileSize(fileSize)
+                    .partCount(partCount)
+                    .build(), Duration.ofSeconds(sessionTtlSeconds));
+
+        } catch (RuntimeException e) {
+            storageService.abortMultipartUpload(originalsBucket, objectName, uploadId);
+            videoService.updateVideoStatus(videoId, Status.FAILED);
+            throw e;
+        }
+
+        log.info("Upload session for video {} created: {} parts of {} bytes", videoId, partCount, effectivePartSize);
+
+        return UploadSessionResponse.builder()
+                .videoId(videoId)
+                .partSize(effectivePartSize)
+                .parts(parts)
+                .expiresAt(System.currentTimeMillis() + urlExpirySeconds * 1000L)
+                .build();
+    }
+
+    @Override
+    public VideoUploadResponse completeSession(UUID videoId, String userId) {
+        log.info("Completing upload session for video {}, user: {}", videoId, userId);
+
+        videoService.checkOwnership(videoId, userId);
+        lockSession(videoId);
+        try {
+            UploadSession session = getSession(videoId);
+
+            verifyParts(session, storageService.listUploadedParts(
+                    originalsBucket, session.getObjectName(), session.getUploadId()));
+
+            // Сессия удаляется только после сборки объекта: при ошибке подтверждение можно повторить
+            storageService.completeMultipartUpload(originalsBucket, session.getObjectName(), session.getUploadId());
+            redisTemplate.delete(KEY_PREFIX + videoId);
+
+            try {
+                asyncProcessVideoService.processingStored(session.getObjectName(), videoId);
+            } catch (TranscodeQueueFullException e) {
+                // Видео не попало в очередь - не оставляем его в UPLOADING
+                videoService.updateVideoStatus(videoId, Status.FAILED);
+                throw e;
+            }
+        } finally {
+            unlockSession(videoId);
+        }
+
+        return VideoUploadResponse.builder()
+                .videoId(videoId)
+                .status(Status.UPLOADING)
+                .message("Video upload completed successfully")
+                .build();
+    }
+
+    @Override
+    public void abortSession(UUID videoId, String userId) {
+        log.info("Aborting upload session for video {}, user: {}", videoId, userId);
+
+        videoService.checkOwnership(videoId, userId);
+        lockSession(videoId);
+        try {
+            UploadSession session = getSession(videoId);
+            redisTemplate.delete(KEY_PREFIX + videoId);
+
+            storageService.abortMultipartUpload(originalsBucket, session.getObjectName(), session.getUploadId());
+            videoService.updateVideoStatus(videoId, Status.CANCELLED);
+        } finally {
+            unlockSession(videoId);
+        }
+    }
+
+    /**
+     * Сессию одновременно подтверждает или отменяет только один запрос.
+     * Блокировка с TTL: если экземпляр упал, сессия освободится сама
+     */
+    private void lockSession(UUID videoId) {
+        Boolean locked = redisTemplate.opsForValue()
+                .setIfAbsent(LOCK_PREFIX + videoId, "locked", Duration.ofSeconds(completeLockTtlSeconds));
+        if (!Boolean.TRUE.equals(locked)) {
+            throw new UploadIncompleteException("Upload session for video " + videoId + " is already being completed");
+        }
+    }
+
+    private void unlockSession(UUID videoId) {
+        redisTemplate.delete(LOCK_PREFIX + videoId);
+    }
+
+    private UploadSession getSession(UUID videoId) {
+        Object value = redisTemplate.opsForValue().get(KEY_PREFIX + videoId);
+        if (value instanceof UploadSession session) {
+            return session;
+        }
+        throw new UploadSessionNotFoundException(videoId);
+    }
+
+    /**
+     * Загружены все части и их суммарный размер равен заявленному:
+     * ссылка на часть не ограничивает размер тела, поэтому лимит размера
+     * проверяется по фактически загруженным частям
+     */
+    private void verifyParts(UploadSession session, Map<Integer, Long> uploaded) {
+        List<Integer> missing = new ArrayList<>();
+        for (int partNumber = 1; partNumber <= session.getPartCount(); partNumber++) {
+            if (!uploaded.containsKey(partNumber)) {
+                missing.add(partNumber);
+            }
+        }
+        if (!missing.isEmpty()) {
+            throw new UploadIncompleteException(String.format("Uploaded %d of %d parts, missing: %s",
+                    session.getPartCount() - missing.size(), session.getPartCount(), missing));
+        }
+
+        long uploadedSize = uploaded.values().stream().mapToLong(Long::longValue).sum();
+        if (uploaded.size() != session.getPartCount() || uploadedSize != session.getFileSize()) {
+            throw new UploadIncompleteException(String.format("Uploaded %d bytes in %d parts, expected %d bytes in %d parts",
+                    uploadedSize, uploaded.size(), session.getFileSize(), session.getPartCount()));
+        }
+    }
+
+    private static long ceilDiv(long value, long divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+}
@@ -0,0 +1,136 @@
+package stream.flow.videoservice.service.video.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import stream.flow.videoservice.exception.video.VideoNotFoundException;
+import stream.flow.videoservice.model.entity.Video;
+import stream.flow.videoservice.model.entity.VideoQuality;
+import stream.flow.videoservice.model.enums.Status;
+import stream.flow.videoservice.repository.VideoQualityRepository;
+import stream.flow.videoservice.repository.VideoRepository;
+import stream.flow.videoservice.service.storage.StorageService;
+import stream.flow.videoservice.service.storage.StoredObject;
+import stream.flow.videoservice.service.video.VideoDeduplicationService;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Индекс "хеш содержимого -> готовые качества" - это колонка video.content_hash:
+ * источником служит самое раннее READY видео с тем же хешем, его качества
+ * копируются новыми записями video_quality с теми же путями в хранилище.
+ *
+ * Объекты качеств общие для нескольких видео, поэтому удалять их из хранилища
+ * вместе с одним видео нельзя. Перед привязкой проверяется, что объекты качеств
+ * и master-плейлист на месте: если чего-то нет, видео транскодируется заново
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class VideoDeduplicationServiceImpl implements VideoDeduplicationService {
+
+    private final VideoRepository videoRepository;
+    private final VideoQualityRepository videoQualityRepository;
+    private final StorageService storageService;
+
+    @Value("${video.deduplication.enabled:true}")
+    private boolean enabled;
+
+    @Value("${video.deduplication.verify-timeout:10}")
+    private long verifyTimeoutSeconds;
+
+    @Override
+    @Transactional
+    public boolean linkExisting(UUID videoId, String contentHash) {
+        if (!enabled || contentHash == null) {
+            return false;
+        }
+
+        Optional<Video> found = videoRepository.findFirstByContentHashAndStatusAndIdNotOrderByCreatedAtAsc(
+                contentHash, Status.READY, videoId);
+        if (found.isEmpty()) {
+            return false;
+        }
+
+        Video source = found.get();
+        List<VideoQuality> qualities = videoQualityRepository.findByVideoId(source.getId());
+        if (qualities.isEmpty() || !objectsExist(source, qualities)) {
+            return false;
+        }
+
+        Video video = videoRepository.findById(videoId).orElseThrow(() -> new VideoNotFoundException(videoId));
+        for (VideoQuality quality : qualities) {
+            videoQualityRepository.save(VideoQuality.builder()
+                    .video(video)
+                    .quality(quality.getQuality())
+                    .storagePath(quality.getStoragePath())
+                    .fileSize(quality.getFileSize())
+                    .duration(quality.getDuration())
+                    .bitrateVideo(quality.getBitrateVideo())
+                    .bitrateAudio(quality.getBitrateAudio())
+                    .resolution(quality.getResolution())
+                    .codecs(quality.getCodecs())
+                    .targetBitrate(quality.getTargetBitrate())
+                    .build());
+        }
+
+        video.setHlsManifestPath(source.getHlsManifestPath());
+        video.setDashManifestPath(source.getDashManifestPath());
+        video.setStoryboardPath(source.getStoryboardPath());
+        videoRepository.save(video);
+
+        log.info("Video {} linked to renditions of video {} with the same content ({} qualities)",
+                videoId, source.getId(), qualities.size());
+        return true;
+    }
+
+    /**
+     * Проверяет наличие объектов качеств и всех ссылок, которые копируются в дубликат
+     * (master-плейлист, DASH-манифест, индекс раскадровки), одним пакетом на bucket
+     */
+    private boolean objectsExist(Video source, List<VideoQuality> qualities) {
+        List<String> storagePaths = new ArrayList<>();
+        qualities.forEach(quality -> storagePaths.add(quality.getStoragePath()));
+        Stream.of(source.getHlsManifestPath(), source.getDashManifestPath(), source.getStoryboardPath())
+                .filter(Objects::nonNull)
+                .forEach(storagePaths::add);
+
+        // "bucket/prefix/object" -> bucket и имя объекта
+        Map<String, List<String>> objectsByBucket = new HashMap<>();
+        for (String storagePath : storagePaths.stream().distinct().toList()) {
+            int separator = storagePath.indexOf('/');
+            objectsByBucket.computeIfAbsent(storagePath.substring(0, separator), bucket -> new ArrayList<>())
+                    .add(storagePath.substring(separator + 1));
+        }
+
+        try {
+            for (Map.Entry<String, List<String>> entry : objectsByBucket.entrySet()) {
+                Map<String, StoredObject> stored = storageService.statObjectsAsync(entry.getKey(), entry.getValue())
+                        .get(verifyTimeoutSeconds, TimeUnit.SECONDS);
+                if (stored.size() < entry.getValue().size()) {
+                    log.warn("Renditions of video {} are missing in bucket {}, not reusing them",
+                            source.getId(), entry.getKey());
+                    return false;
+                }
+            }
+            return true;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            log.warn("Failed to verify renditions of video {}: {}", source.getId(), e.getMessage());
+            return false;
+        }
+    }
+}
@@ -2,16 +2,39 @@ package stream.flow.videoservice.service.video.impl;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import stream.flow.videoservice.exception.file.FileUploadException;
+import stream.flow.videoservice.model.dto.response.VideoInfoResponse;
+import stream.flow.videoservice.model.entity.RenditionCheckpoint;
 import stream.flow.videoservice.model.enums.Quality;
+import stream.flow.videoservice.model.enums.RenditionState;
 import stream.flow.videoservice.model.enums.Status;
+import stream.flow.videoservice.service.ffmpeg.ChunkedTranscoder;
+import stream.flow.videoservice.service.ffmpeg.ComplexityAnalyzer;
+import stream.flow.videoservice.service.ffmpeg.FfmpegService;
+import stream.flow.videoservice.service.ffmpeg.ProgressListener;
+import stream.flow.videoservice.service.ffmpeg.Rendition;
+import stream.flow.videoservice.service.ffmpeg.StoryboardSpec;
+import stream.flow.videoservice.service.progress.TranscodeProgressService;
+import stream.flow.videoservice.service.storage.StorageService;
+import stream.flow.videoservice.service.thumbnail.ThumbnailService;
 import stream.flow.videoservice.service.video.VideoProcessingService;
 import stream.flow.videoservice.service.video.VideoService;
+import stream.flow.videoservice.service.video.processor.LadderPlanner;
+import stream.flow.videoservice.service.video.processor.RemuxDetector;
+import stream.flow.videoservice.service.video.processor.RenditionCheckpointService;
+import stream.flow.videoservice.service.video.processor.StoryboardService;
+import stream.flow.videoservice.service.video.processor.StreamingPackager;
 import stream.flow.videoservice.service.video.processor.TempFileManager;
 import stream.flow.videoservice.service.video.processor.VideoQualityProcessor;
 
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -28,12 +51,50 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class VideoProcessingServiceImpl implements VideoProcessingService {
 
+    private static final String AUDIO_DIR = "audio";
+
     private final VideoQualityProcessor qualityProcessor;
     private final VideoService videoService;
     private final TempFileManager tempFileManager;
+    private final FfmpegService ffmpegService;
+    private final StreamingPackager streamingPackager;
+    private final ChunkedTranscoder chunkedTranscoder;
+    private final LadderPlanner ladderPlanner;
+    private final ComplexityAnalyzer complexityAnalyzer;
+    private final TranscodeProgressService progressService;
+    private final RenditionCheckpointService checkpointService;
+    private final RemuxDetector remuxDetector;
+    private final StoryboardService storyboardService;
+    private final ThumbnailService thumbnailService;
+    private final StorageService storageService;
+
+    @Value("${minio.bucket.videos}")
+    private String videosBucket;
+
+    /**
+     * Режим лестницы: оригинал декодируется один раз и кодируется во все качества
+     * одним процессом FFmpeg. При false каждое качество конвертируется отдельно
+     */
+    @Value("${ffmpeg.conversion.ladder:true}")
+    private boolean ladderEnabled;
+
+    /**
+     * Кодирование по кускам параллельно на всех ядрах для длинных видео (только в режиме лестницы)
+     */
+    @Value("${ffmpeg.chunked.enabled:true}")
+    private boolean chunkedEnabled;
+
+    @Value("${ffmpeg.chunked.min-duration:300}")
+    private int chunkedMinDuration;
 
+    @Value("${video.packaging.enabled:true}")
+    private boolean packagingEnabled;
+
+    /**
+     * Без общей транзакции: каждое качество и каждый этап сохраняются сразу,
+     * чтобы упавшая задача не откатила уже готовые качества
+     */
     @Override
-    @Transactional
     public void processing(String pathOriginal, UUID videoId) {
         log.info("Starting video processing for videoId: {}", videoId);
 
@@ -41,43 +102,266 @@ public class VideoProcessingServiceImpl implements VideoProcessingService {
             // Обновляем статус на PROCESSING
             videoService.updateVideoStatus(videoId, Status.PROCESSING);
 
+            // Оригинал анализируется один раз: по нему и сложности контента строится лестница качеств
+            VideoInfoResponse source = ffmpegService.extractVideoMetadata(pathOriginal);
+            double complexity = complexityAnalyzer.analyze(pathOriginal, source,
+                    tempFileManager.buildTempDirectoryPath(videoId, "complexity"));
+            List<Rendition> ladder = ladderPlanner.plan(source, complexity);
+            StoryboardSpec storyboard = storyboardService.plan(videoId, source);
+
+            // Звук кодируется один раз и копируется во все качества
+            String audioPath = encodeAudio(pathOriginal, videoId, source);
+
             // Обрабатываем каждое качество
-            processAllQualities(pathOriginal, videoId);
+            Map<Quality, String> processed = processAllQualities(pathOriginal, videoId, source, ladder, audioPath, storyboard);
+
+            // Упаковываем готовые качества для адаптивного стриминга
+            if (packagingEnabled && !processed.isEmpty()) {
+                packageStreaming(videoId, processed, audioPath);
+            }
+
+            if (storyboard != null) {
+                publishStoryboard(pathOriginal, videoId, storyboard, source.getDuration());
+            }
+
+            // Превью из кадра видео, если пользователь не загрузил свое
+            if (!videoService.hasThumbnail(videoId)) {
+                createAutoThumbnail(pathOriginal, videoId, source);
+            }
 
             // Обновляем статус на READY
             videoService.updateVideoStatus(videoId, Status.READY);
+            progressService.finish(videoId, Status.READY);
             log.info("Video processing completed successfully for videoId: {}", videoId);
 
         } catch (Exception e) {
+            // Статус FAILED и удаление временных файлов - решение очереди задач:
+            // при повторной попытке нужен оригинал
             log.error("Video processing failed for videoId: {}", videoId, e);
-            // Обновляем статус на FAILED
-            videoService.updateVideoStatus(videoId, Status.FAILED);
             throw new FileUploadException("Failed to process video: " + e.getMessage(), e);
-        } finally {
-            // Всегда удаляем временные файлы
-            tempFileManager.deleteTempDirectory(videoId);
         }
     }
 
     /**
-     * Обрабатывает видео во все доступные качества
+     * Обрабатывает видео во все качества лестницы, продолжая с сохраненных этапов:
+     * - сохраненные в БД качества пропускаются
+     * - закодированные (файл на месте) не кодируются заново, а только загружаются и сохраняются
+     * - загруженные не загружаются повторно
+     * - сохраненные прошлой попыткой на другом экземпляре скачиваются из хранилища для упаковки
+     *
+     * Ошибка одного качества не прерывает остальные, но в конце проваливает задачу,
+     * чтобы повторная попытка доделала только упавшие качества
+     *
+     * @return локальные пути обработанных качеств
      */
-    private void processAllQualities(String pathOriginal, UUID videoId) {
-        log.debug("Processing all qualities for videoId: {}", videoId);
+    private Map<Quality, String> processAllQualities(String pathOriginal, UUID videoId, VideoInfoResponse source,
+                                                     List<Rendition> ladder, String audioPath,
+                                                     StoryboardSpec storyboard) {
+        Map<Quality, RenditionCheckpoint> checkpoints = checkpointService.getCheckpoints(videoId);
+        List<Rendition> pending = ladder.stream()
+                .filter(rendition -> needsEncoding(checkpoints.get(rendition.quality())))
+                .toList();
+
+        log.debug("Processing qualities {} for videoId: {}, encoding: {}", ladder, videoId, pending);
+        if (pending.size() < ladder.size()) {
+            log.info("Resuming video {}: {} of {} qualities already encoded",
+                    videoId, ladder.size() - pending.size(), ladder.size());
+        }
+
+        // Качества, под которые исходник уже подходит, копируются без перекодирования
+        List<Rendition> toEncode = remuxCompatible(pathOriginal, videoId, source, pending, audioPath);
+
+        long durationMillis = source.getDuration() != null ? source.getDuration() * 1000L : 0;
 
-        for (Quality quality : Quality.values()) {
+        // Ошибка FFmpeg здесь означает, что не получено ни одно из оставшихся качеств
+        if (ladderEnabled && !toEncode.isEmpty()) {
+            encodeLadder(pathOriginal, videoId, source, toEncode, audioPath, storyboard,
+                    progressService.start(videoId, durationMillis));
+        }
+
+        // Без лестницы каждое качество кодируется из оригинала заново: видео проходится toEncode.size() раз
+        ProgressListener progress = ladderEnabled
+                ? ProgressListener.NONE
+                : progressService.start(videoId, durationMillis * toEncode.size());
+        int passes = 0;
+
+        Map<Quality, String> processed = new LinkedHashMap<>();
+        List<Quality> failed = new ArrayList<>();
+        for (Rendition rendition : ladder) {
+            Quality quality = rendition.quality();
+            RenditionCheckpoint checkpoint = checkpoints.get(quality);
+            String localPath = tempFileManager.buildTempFilePath(videoId, quality.name());
             try {
-                String outputPath = tempFileManager.buildTempFilePath(videoId, quality.name());
-                qualityProcessor.processQuality(pathOriginal, videoId, quality, outputPath);
+                if (checkpoint != null && checkpoint.getState() == RenditionState.PERSISTED) {
+                    log.debug("Quality {} already processed for videoId {}", quality, videoId);
+                } else if (!ladderEnabled && toEncode.contains(rendition)) {
+                    long offsetMillis = durationMillis * passes++;
+                    qualityProcessor.processQuality(pathOriginal, videoId, rendition, localPath, audioPath,
+                            (processedMillis, speed) -> progress.onProgress(offsetMillis + processedMillis, speed));
+                } else {
+                    qualityProcessor.processEncoded(localPath, videoId, rendition);
+                }
+
+                // Упаковке нужен локальный файл: без него master-плейлист вышел бы без этого качества
+                if (packagingEnabled && !Files.exists(Paths.get(localPath))) {
+                    downloadPersisted(videoId, checkpoint, localPath);
+                }
+                processed.put(quality, localPath);
                 log.debug("Quality {} processed successfully", quality);
 
             } catch (Exception e) {
                 log.error("Failed to process quality {} for videoId {}: {}", quality, videoId, e.getMessage(), e);
-                // Продолжаем обработку других качеств даже если одно упало
-                // Можно изменить логику, если нужно прерывать процесс при ошибке
+                failed.add(quality);
             }
         }
 
+        if (!failed.isEmpty()) {
+            throw new FileUploadException("Failed to process qualities " + failed + " for video " + videoId);
+        }
+
         log.info("All qualities processed for videoId: {}", videoId);
+        return processed;
+    }
+
+    /**
+     * Скачивает качество, сохраненное прошлой попыткой (локальный файл остался на другом экземпляре)
+     */
+    private void downloadPersisted(UUID videoId, RenditionCheckpoint checkpoint, String localPath) {
+        String storagePath = checkpoint != null ? checkpoint.getStoragePath() : null;
+        if (storagePath == null || !storagePath.startsWith(videosBucket + "/")) {
+            throw new FileUploadException("Rendition file is missing and has no stored copy: " + localPath);
+        }
+
+        log.info("Downloading stored quality {} of video {} for packaging", checkpoint.getQuality(), videoId);
+        storageService.downloadFile(videosBucket, storagePath.substring(videosBucket.length() + 1), localPath);
+    }
+
+    /**
+     * Качество нужно кодировать, если оно еще не закодировано
+     * или файл прошлой попытки пропал, а в БД качество не сохранено
+     */
+    private boolean needsEncoding(RenditionCheckpoint checkpoint) {
+        if (checkpoint == null) {
+            return true;
+        }
+        if (checkpoint.getState() == RenditionState.PERSISTED) {
+            return false;
+        }
+        return checkpoint.getLocalPath() == null || !Files.exists(Paths.get(checkpoint.getLocalPath()));
+    }
+
+    /**
+     * Кодирует звук исходника в AAC один раз: качества получают его копированием,
+     * а при упаковке он становится отдельной аудиодорожкой
+     *
+     * @return путь к аудио файлу или null, если в исходнике нет звука
+     */
+    private String encodeAudio(String pathOriginal, UUID videoId, VideoInfoResponse source) {
+        if (source.getAudioCodec() == null) {
+            log.debug("Video {} has no audio track", videoId);
+            return null;
+        }
+
+        String audioPath = Paths.get(tempFileManager.buildTempDirectoryPath(videoId, AUDIO_DIR), "audio.m4a").toString();
+        return ffmpegService.encodeAudio(pathOriginal, audioPath);
+    }
+
+    /**
+     * Копирует потоки исходника в качества, которым он уже соответствует
+     * (обычно верхнее качество видео с телефона). Ошибка копирования не фатальна -
+     * такое качество просто кодируется вместе с остальными
+     *
+     * @return качества, которые нужно кодировать
+     */
+    private List<Rendition> remuxCompatible(String pathOriginal, UUID videoId, VideoInfoResponse source,
+                                            List<Rendition> pending, String audioPath) {
+        List<Rendition> toEncode = new ArrayList<>();
+        for (Rendition rendition : pending) {
+            if (!remuxDetector.canRemux(pathOriginal, source, rendition)) {
+                toEncode.add(rendition);
+                continue;
+            }
+
+            String localPath = tempFileManager.buildTempFilePath(videoId, rendition.quality().name());
+            try {
+                ffmpegService.remux(pathOriginal, audioPath, localPath);
+                checkpointService.markEncoded(videoId, rendition.quality(), localPath);
+            } catch (Exception e) {
+                log.warn("Remux of {} failed for videoId {}, falling back to encoding: {}",
+                        rendition.quality(), videoId, e.getMessage());
+                toEncode.add(rendition);
+            }
+        }
+        return toEncode;
+    }
+
+    /**
+     * Конвертирует видео во все переданные качества одним проходом FFmpeg
+     * и отмечает каждое как закодированное. Раскадровка снимается тем же проходом
+     * (при кодировании кусками - из кадров кусков) и становится итоговой только после него
+     */
+    private void encodeLadder(String pathOriginal, UUID videoId, VideoInfoResponse source, List<Rendition> renditions,
+                              String audioPath, StoryboardSpec storyboard, ProgressListener progress) {
+        Map<Rendition, String> outputPaths = new LinkedHashMap<>();
+        for (Rendition rendition : renditions) {
+            outputPaths.put(rendition, tempFileManager.buildTempFilePath(videoId, rendition.quality().name()));
+        }
+
+        Map<Rendition, String> encoded = useChunkedEncoding(source)
+                ? chunkedTranscoder.convertLadder(pathOriginal, outputPaths, audioPath, storyboard,
+                        tempFileManager.buildTempDirectoryPath(videoId, "chunks"), progress)
+                : ffmpegService.convertLadder(pathOriginal, outputPaths, audioPath, storyboard, progress);
+
+        encoded.forEach((rendition, path) -> checkpointService.markEncoded(videoId, rendition.quality(), path));
+        if (storyboard != null) {
+            storyboardService.commit(videoId, storyboard);
+        }
+    }
+
+    /**
+     * Кодирование по кускам окупается только на длинных видео:
+     * на коротких накладные расходы на деление и склейку больше выигрыша
+     */
+    private boolean useChunkedEncoding(VideoInfoResponse source) {
+        if (!chunkedEnabled) {
+            return false;
+        }
+
+        Integer duration = source.getDuration();
+        return duration != null && duration >= chunkedMinDuration;
+    }
+
+    /**
+     * Публикует раскадровку. Ее отсутствие не мешает просмотру, поэтому ошибка только логируется
+     */
+    private void publishStoryboard(String pathOriginal, UUID videoId, StoryboardSpec storyboard, int duration) {
+        try {
+            storyboardService.publish(pathOriginal, videoId, storyboard, duration);
+        } catch (Exception e) {
+            log.error("Failed to publish storyboard for videoId {}: {}", videoId, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Создает превью из кадра видео. Без превью видео остается доступным, поэтому ошибка только логируется
+     */
+    private void createAutoThumbnail(String pathOriginal, UUID videoId, VideoInfoResponse source) {
+        try {
+            thumbnailService.createFromVideo(videoId, pathOriginal, source);
+        } catch (Exception e) {
+            log.error("Failed to create thumbnail for videoId {}: {}", videoId, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Упаковывает качества в HLS/DASH. Ошибка упаковки не делает видео недоступным:
+     * MP4 файлы качеств уже загружены и остаются доступны для прогрессивного просмотра
+     */
+    private void packageStreaming(UUID videoId, Map<Quality, String> processed, String audioPath) {
+        try {
+            streamingPackager.packageRenditions(videoId, processed, audioPath);
+        } catch (Exception e) {
+            log.error("Failed to package streaming renditions for videoId {}: {}", videoId, e.getMessage(), e);
+        }
     }
 }
@@ -14,6 +14,7 @@ import stream.flow.videoservice.repository.VideoQualityRepository;
 import stream.flow.videoservice.repository.VideoRepository;
 import stream.flow.videoservice.service.video.VideoQualityService;
 
+import java.util.List;
 import java.util.UUID;
 
 @Service
@@ -27,15 +28,27 @@ public class VideoQualityServiceImpl implements VideoQualityService {
 
     @Override
     @Transactional
-    public void saveVideoMetadata(VideoInfoResponse videoInfoResponse, String storagePath, UUID videoId, Quality quality) {
+    public void saveVideoMetadata(VideoInfoResponse videoInfoResponse, String storagePath, UUID videoId,
+                                  Quality quality, Integer targetBitrate) {
 
-        VideoQuality videoQuality = videoQualityMapper.toEntity(videoInfoResponse);
         Video video = videoRepository.findById(videoId).orElseThrow(() -> new VideoNotFoundException(videoId));
 
+        // Повторная попытка задачи может сохранить уже существующее качество - обновляем его
+        VideoQuality videoQuality = videoQualityRepository.findByVideoIdAndQuality(videoId, quality)
+                .orElseGet(VideoQuality::new);
+        videoQualityMapper.updateEntity(videoInfoResponse, videoQuality);
+
         videoQuality.setVideo(video);
         videoQuality.setQuality(quality);
         videoQuality.setStoragePath(storagePath);
+        videoQuality.setTargetBitrate(targetBitrate);
 
         videoQualityRepository.save(videoQuality);
     }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<VideoQuality> getVideoQualities(UUID videoId) {
+        return videoQualityRepository.findByVideoId(videoId);
+    }
 }
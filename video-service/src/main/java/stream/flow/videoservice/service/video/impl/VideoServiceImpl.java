@@ -4,6 +4,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import stream.flow.videoservice.exception.user.UnauthorizedAccessException;
 import stream.flow.videoservice.exception.user.UserNotFoundException;
 import stream.flow.videoservice.exception.video.VideoNotFoundException;
 import stream.flow.videoservice.mapper.VideoMapper;
@@ -90,6 +91,76 @@ public class VideoServiceImpl implements VideoService {
 
         log.info("Video status updated: {}", videoId);
     }
+
+    @Override
+    @Transactional
+    public void updateStreamingManifests(UUID videoId, String hlsManifestPath, String dashManifestPath) {
+        log.info("Updating streaming manifests for video {}: hls={}, dash={}", videoId, hlsManifestPath, dashManifestPath);
+
+        Video video = videoRepository.findById(videoId).orElseThrow(() -> new VideoNotFoundException(videoId));
+
+        video.setHlsManifestPath(hlsManifestPath);
+        video.setDashManifestPath(dashManifestPath);
+        videoRepository.save(video);
+    }
+
+    @Override
+    @Transactional
+    public void updateContentHash(UUID videoId, String contentHash) {
+        log.debug("Updating content hash for video {}: {}", videoId, contentHash);
+
+        Video video = videoRepository.findById(videoId).orElseThrow(() -> new VideoNotFoundException(videoId));
+
+        video.setContentHash(contentHash);
+        videoRepository.save(video);
+    }
+
+    @Override
+    @Transactional
+    public void updateStoryboard(UUID videoId, String storyboardPath) {
+        log.info("Updating storyboard for video {}: {}", videoId, storyboardPath);
+
+        Video video = videoRepository.findById(videoId).orElseThrow(() -> new VideoNotFoundException(videoId));
+
+        video.setStoryboardPath(storyboardPath);
+        videoRepository.save(video);
+    }
+
+    @Override
+    @Transactional
+    public void updateThumbnail(UUID videoId, String thumbnailPath) {
+        log.info("Updating thumbnail for video {}: {}", videoId, thumbnailPath);
+
+        Video video = videoRepository.findById(videoId).orElseThrow(() -> new VideoNotFoundException(videoId));
+
+        video.setThumbnailPath(thumbnailPath);
+        videoRepository.save(video);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public boolean hasThumbnail(UUID videoId) {
+        Video video = videoRepository.findById(videoId).orElseThrow(() -> new VideoNotFoundException(videoId));
+        return video.getThumbnailPath() != null;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Status getVideoStatus(UUID videoId) {
+        return videoRepository.findById(videoId)
+                .map(Video::getStatus)
+                .orElseThrow(() -> new VideoNotFoundException(videoId));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void checkOwnership(UUID videoId, String userId) {
+        Video video = videoRepository.findById(videoId).orElseThrow(() -> new VideoNotFoundException(videoId));
+
+        if (video.getUser() == null || !video.getUser().getKeycloakId().equals(userId)) {
+            throw new UnauthorizedAccessException("User " + userId + " is not the owner of video " + videoId);
+        }
+    }
 }
 
 
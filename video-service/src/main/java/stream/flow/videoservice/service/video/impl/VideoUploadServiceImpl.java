@@ -4,22 +4,35 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
 import org.springframework.web.multipart.MultipartFile;
+import stream.flow.videoservice.exception.file.FileUploadException;
+import stream.flow.videoservice.exception.video.TranscodeQueueFullException;
 import stream.flow.videoservice.model.dto.request.VideoCreateFrameRequest;
 import stream.flow.videoservice.model.dto.response.VideoFrameResponse;
+import stream.flow.videoservice.model.dto.response.VideoInfoResponse;
 import stream.flow.videoservice.model.dto.response.VideoUploadResponse;
 import stream.flow.videoservice.model.enums.Status;
 import stream.flow.videoservice.model.enums.Visibility;
+import stream.flow.videoservice.service.ffmpeg.FfmpegService;
+import stream.flow.videoservice.service.progress.TranscodeProgressService;
 import stream.flow.videoservice.service.video.AsyncProcessVideoService;
+import stream.flow.videoservice.service.video.VideoDeduplicationService;
 import stream.flow.videoservice.service.video.VideoUploadService;
 import stream.flow.videoservice.service.video.VideoService;
 import stream.flow.videoservice.service.file.FileService;
+import stream.flow.videoservice.service.thumbnail.ThumbnailService;
 import stream.flow.videoservice.service.validation.VideoValidationService;
+import stream.flow.videoservice.service.video.processor.TempFileManager;
 
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import java.util.UUID;
 
 @Slf4j
@@ -31,6 +44,11 @@ public class VideoUploadServiceImpl implements VideoUploadService {
     private final VideoValidationService validationService;
     private final FileService fileService;
     private final AsyncProcessVideoService asyncProcessVideoService;
+    private final ThumbnailService thumbnailService;
+    private final VideoDeduplicationService deduplicationService;
+    private final FfmpegService ffmpegService;
+    private final TranscodeProgressService progressService;
+    private final TempFileManager tempFileManager;
 
     @Value("${minio.bucket.videos:streamflow-videos}")
     private String videoBucket;
@@ -54,9 +72,28 @@ public class VideoUploadServiceImpl implements VideoUploadService {
                 .userId(userId)
                 .build());
 
-        String pathOriginal = saveOriginal(videoFile, video.getVideoId());
+        SavedOriginal original = saveOriginal(videoFile, video.getVideoId());
+        String pathOriginal = original.path();
+        videoService.updateContentHash(video.getVideoId(), original.contentHash());
+
+        // Тот же файл уже обработан - качества переиспользуются без транскодирования
+        if (linkDuplicate(video.getVideoId(), original)) {
+            return VideoUploadResponse.builder()
+                    .videoId(video.getVideoId())
+                    .status(Status.READY)
+                    .message("Video with the same content already processed, renditions reused")
+                    .build();
+        }
 
-        asyncProcessVideoService.processingAsync(pathOriginal, video.getVideoId());
+        try {
+            asyncProcessVideoService.processingAsync(pathOriginal, video.getVideoId());
+        } catch (TranscodeQueueFullException | FileUploadException e) {
+            // Видео не попало в очередь (или оригинал не загрузился в хранилище) -
+            // не оставляем его в UPLOADING с оригиналом на диске
+            videoService.updateVideoStatus(video.getVideoId(), Status.FAILED);
+            Files.deleteIfExists(Paths.get(pathOriginal));
+            throw e;
+        }
 
         return VideoUploadResponse.builder()
                 .videoId(video.getVideoId())
@@ -69,10 +106,75 @@ public class VideoUploadServiceImpl implements VideoUploadService {
     public VideoUploadResponse uploadThumbnail(UUID videoId, MultipartFile thumbnailFile, String userId) {
         log.info("Starting thumbnail upload for videoId: {}, user: {}", videoId, userId);
 
-        return null;
+        validationService.validateThumbnailFile(thumbnailFile);
+        videoService.checkOwnership(videoId, userId);
+
+        // Исходное изображение нужно только для нарезки вариантов. Оно сохраняется не в
+        // {temp-dir}/{videoId}: ту может удалить завершающаяся в это время обработка видео
+        String extension = fileService.getFileExtension(thumbnailFile.getOriginalFilename());
+        Path uploadDir = null;
+        String thumbnailPath;
+        try {
+            uploadDir = Files.createTempDirectory(Files.createDirectories(Paths.get(tempDir)), "thumbnail-upload-");
+            Path sourcePath = uploadDir.resolve("source." + extension);
+            thumbnailFile.transferTo(sourcePath);
+
+            thumbnailPath = thumbnailService.createFromImage(videoId, sourcePath.toString());
+
+        } catch (IOException e) {
+            log.error("Failed to save thumbnail for videoId {}: {}", videoId, e.getMessage(), e);
+            throw new FileUploadException("Failed to save thumbnail: " + e.getMessage(), e);
+        } finally {
+            if (uploadDir != null) {
+                try {
+                    FileSystemUtils.deleteRecursively(uploadDir);
+                } catch (IOException e) {
+                    log.warn("Failed to delete thumbnail upload directory {}: {}", uploadDir, e.getMessage());
+                }
+            }
+        }
+
+        return VideoUploadResponse.builder()
+                .videoId(videoId)
+                .thumbnailPath(thumbnailPath)
+                .message("Thumbnail uploaded successfully")
+                .build();
+    }
+
+    /**
+     * Привязывает видео к готовым качествам видео с тем же содержимым.
+     * Превью не копируется (у источника оно может быть загружено его владельцем) -
+     * оно выбирается из кадра оригинала, пока тот на диске
+     *
+     * @return true, если видео готово без транскодирования
+     */
+    private boolean linkDuplicate(UUID videoId, SavedOriginal original) {
+        try {
+            if (!deduplicationService.linkExisting(videoId, original.contentHash())) {
+                return false;
+            }
+        } catch (Exception e) {
+            log.warn("Deduplication failed for video {}, transcoding it: {}", videoId, e.getMessage());
+            return false;
+        }
+
+        try {
+            VideoInfoResponse source = ffmpegService.extractVideoMetadata(original.path());
+            thumbnailService.createFromVideo(videoId, original.path(), source);
+        } catch (Exception e) {
+            log.error("Failed to create thumbnail for videoId {}: {}", videoId, e.getMessage(), e);
+        }
+
+        videoService.updateVideoStatus(videoId, Status.READY);
+        progressService.finish(videoId, Status.READY);
+        tempFileManager.deleteTempDirectory(videoId);
+        return true;
     }
 
-    private String saveOriginal(MultipartFile videoFile, UUID videoId) throws IOException {
+    /**
+     * Сохраняет оригинал на диск, вычисляя SHA-256 тем же проходом
+     */
+    private SavedOriginal saveOriginal(MultipartFile videoFile, UUID videoId) throws IOException {
         // Создаем директорию для видео
         Path videoDir = Paths.get(tempDir, videoId.toString());
         Files.createDirectories(videoDir);
@@ -83,16 +185,26 @@ public class VideoUploadServiceImpl implements VideoUploadService {
         Path originalPath = videoDir.resolve("original." + extension);
         
         // Сохраняем файл
+        MessageDigest digest = newSha256();
         try (OutputStream outputStream = Files.newOutputStream(originalPath);
-             InputStream inputStream = videoFile.getInputStream()) {
+             InputStream inputStream = new DigestInputStream(videoFile.getInputStream(), digest)) {
             
             inputStream.transferTo(outputStream);
         }
-        
-        log.info("Original video saved to: {}", originalPath);
 
-        return originalPath.toString();
+        String contentHash = HexFormat.of().formatHex(digest.digest());
+        log.info("Original video saved to: {} (sha256 {})", originalPath, contentHash);
+
+        return new SavedOriginal(originalPath.toString(), contentHash);
     }
-}
 
+    private MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new FileUploadException("SHA-256 is not available", e);
+        }
+    }
 
+    private record SavedOriginal(String path, String contentHash) {}
+}
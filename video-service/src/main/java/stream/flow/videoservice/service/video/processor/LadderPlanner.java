@@ -0,0 +1,21 @@
+package stream.flow.videoservice.service.video.processor;
+
+import stream.flow.videoservice.model.dto.response.VideoInfoResponse;
+import stream.flow.videoservice.service.ffmpeg.Rendition;
+
+import java.util.List;
+
+/**
+ * Строит лестницу качеств под конкретный исходник
+ */
+public interface LadderPlanner {
+
+    /**
+     * Подбирает качества и их параметры по метаданным оригинала
+     *
+     * @param source метаданные оригинального видео
+     * @param complexity множитель битрейта по сложности контента (1.0 - дефолтная лестница)
+     * @return качества для кодирования, от большего к меньшему
+     */
+    List<Rendition> plan(VideoInfoResponse source, double complexity);
+}
@@ -0,0 +1,19 @@
+package stream.flow.videoservice.service.video.processor;
+
+/**
+ * Проверяет расположение атомов MP4 файла перед загрузкой в хранилище
+ *
+ * Для прогрессивного воспроизведения moov atom (индекс сэмплов) должен идти
+ * до данных, иначе плеер вынужден сначала скачать хвост файла
+ */
+public interface Mp4LayoutVerifier {
+
+    /**
+     * Проверяет файл и, если moov atom стоит после данных, перепаковывает его на месте
+     *
+     * @param path путь к MP4 файлу
+     * @throws stream.flow.videoservice.exception.file.FileUploadException если файл
+     *         не удалось прочитать или исправить
+     */
+    void ensureStreamable(String path);
+}
@@ -0,0 +1,19 @@
+package stream.flow.videoservice.service.video.processor;
+
+import stream.flow.videoservice.model.dto.response.VideoInfoResponse;
+import stream.flow.videoservice.service.ffmpeg.Rendition;
+
+/**
+ * Определяет, можно ли получить качество из исходника копированием потоков
+ * вместо перекодирования
+ */
+public interface RemuxDetector {
+
+    /**
+     * @param inputPath путь к исходному видео файлу
+     * @param source метаданные исходника
+     * @param rendition качество, которое нужно получить
+     * @return true если исходник уже соответствует качеству
+     */
+    boolean canRemux(String inputPath, VideoInfoResponse source, Rendition rendition);
+}
@@ -0,0 +1,25 @@
+package stream.flow.videoservice.service.video.processor;
+
+import stream.flow.videoservice.model.entity.RenditionCheckpoint;
+import stream.flow.videoservice.model.enums.Quality;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Состояние обработки каждого качества (закодировано, загружено, сохранено в БД).
+ * Повторная попытка задачи продолжает с последнего пройденного этапа
+ */
+public interface RenditionCheckpointService {
+
+    /**
+     * Сохраненные состояния качеств видео
+     */
+    Map<Quality, RenditionCheckpoint> getCheckpoints(UUID videoId);
+
+    void markEncoded(UUID videoId, Quality quality, String localPath);
+
+    void markUploaded(UUID videoId, Quality quality, String storagePath);
+
+    void markPersisted(UUID videoId, Quality quality);
+}
@@ -0,0 +1,39 @@
+package stream.flow.videoservice.service.video.processor;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Загрузка сегментов в хранилище по мере того, как их пишет FFmpeg:
+ * - Готовый сегмент загружается, пока FFmpeg пишет следующие
+ * - Загруженный сегмент сразу удаляется с диска
+ */
+public interface SegmentUploader {
+
+    /**
+     * Начинает следить за директорией сегментов
+     *
+     * @param segmentDir директория, в которую FFmpeg пишет сегменты (может еще не существовать)
+     * @param bucketName bucket хранилища
+     * @return загрузка, которую нужно завершить после выхода FFmpeg
+     */
+    SegmentUpload start(Path segmentDir, String bucketName);
+
+    interface SegmentUpload {
+
+        /**
+         * Загружает оставшиеся сегменты и ждет окончания загрузки (FFmpeg уже завершился)
+         *
+         * @return размеры загруженных сегментов в байтах по именам файлов: сегменты уже удалены
+         * с диска, а по размерам считается пиковый битрейт качества
+         * @throws stream.flow.videoservice.exception.file.FileUploadException если сегмент не удалось загрузить
+         */
+        Map<String, Long> finish();
+
+        /**
+         * Останавливает загрузку без догрузки оставшихся сегментов (FFmpeg завершился ошибкой).
+         * Уже загруженные сегменты удаляются из хранилища: без плейлиста они никому не нужны
+         */
+        void abort();
+    }
+}
@@ -0,0 +1,48 @@
+package stream.flow.videoservice.service.video.processor;
+
+import stream.flow.videoservice.model.dto.response.VideoInfoResponse;
+import stream.flow.videoservice.service.ffmpeg.StoryboardSpec;
+
+import java.util.UUID;
+
+/**
+ * Раскадровка для превью при перемотке:
+ * - Листы JPEG с сеткой уменьшенных кадров
+ * - WebVTT индекс: интервал времени -> лист и координаты кадра (#xywh)
+ * - Загрузка в bucket превью
+ */
+public interface StoryboardService {
+
+    /**
+     * Рассчитывает параметры раскадровки по исходнику.
+     * Листы пишутся во временную директорию, оставшуюся от прерванной попытки
+     * директорию этот вызов очищает
+     *
+     * @param videoId ID видео
+     * @param source метаданные исходника
+     * @return параметры или null, если раскадровка отключена или невозможна
+     */
+    StoryboardSpec plan(UUID videoId, VideoInfoResponse source);
+
+    /**
+     * Делает листы, полученные проходом по видео, итоговыми. Вызывается только
+     * после успешного прохода: листы прерванного прохода не будут опубликованы
+     *
+     * @param videoId ID видео
+     * @param spec параметры раскадровки из plan
+     */
+    void commit(UUID videoId, StoryboardSpec spec);
+
+    /**
+     * Формирует WebVTT индекс и загружает раскадровку в хранилище.
+     * Если итоговых листов нет (проход лестницы не выполнялся или не дал листов),
+     * они генерируются отдельным проходом по ключевым кадрам исходника
+     *
+     * @param pathOriginal путь к исходному видео файлу
+     * @param videoId ID видео
+     * @param spec параметры раскадровки
+     * @param duration длительность видео в секундах
+     * @return путь к WebVTT индексу в хранилище
+     */
+    String publish(String pathOriginal, UUID videoId, StoryboardSpec spec, int duration);
+}
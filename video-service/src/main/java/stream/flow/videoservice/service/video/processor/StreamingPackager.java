@@ -0,0 +1,36 @@
+package stream.flow.videoservice.service.video.processor;
+
+import stream.flow.videoservice.model.enums.Quality;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Упаковка готовых качеств в формат адаптивного стриминга:
+ * - Нарезка каждого качества на CMAF сегменты (fMP4)
+ * - Отдельная аудиодорожка, общая для всех качеств (и доступная как аудио-вариант)
+ * - Формирование HLS плейлистов и DASH MPD поверх одних и тех же сегментов
+ * - Загрузка сегментов и манифестов в хранилище (в потоковом режиме - во время нарезки)
+ */
+public interface StreamingPackager {
+
+    /**
+     * Упаковывает качества видео в HLS и DASH
+     *
+     * @param videoId ID видео
+     * @param renditions пути к локальным MP4 файлам по качествам
+     * @param audioPath закодированная аудиодорожка или null, если у видео нет звука
+     * @return пути к манифестам в хранилище
+     */
+    PackagingResult packageRenditions(UUID videoId, Map<Quality, String> renditions, String audioPath);
+
+    /**
+     * Результат упаковки
+     *
+     * @param dashManifestPath null, если DASH отключен
+     */
+    record PackagingResult(
+            String hlsManifestPath,
+            String dashManifestPath
+    ) {}
+}
@@ -16,6 +16,15 @@ public interface TempFileManager {
      */
     String buildTempFilePath(UUID videoId, String quality);
 
+    /**
+     * Создает путь для временной поддиректории видео (например, для HLS сегментов)
+     *
+     * @param videoId ID видео
+     * @param name относительный путь поддиректории
+     * @return путь к временной директории
+     */
+    String buildTempDirectoryPath(UUID videoId, String name);
+
     /**
      * Удаляет временную директорию для видео
      * 
@@ -1,7 +1,8 @@
 package stream.flow.videoservice.service.video.processor;
 
 import stream.flow.videoservice.model.dto.response.VideoInfoResponse;
-import stream.flow.videoservice.model.enums.Quality;
+import stream.flow.videoservice.service.ffmpeg.ProgressListener;
+import stream.flow.videoservice.service.ffmpeg.Rendition;
 
 import java.util.UUID;
 
@@ -19,11 +20,26 @@ public interface VideoQualityProcessor {
      * 
      * @param originalPath путь к оригинальному видео файлу
      * @param videoId ID видео
-     * @param quality качество для обработки
+     * @param rendition параметры качества для обработки
      * @param outputPath путь для сохранения конвертированного файла
+     * @param audioPath закодированная аудиодорожка или null (без звука)
+     * @param listener получатель прогресса кодирования
      * @return результат обработки (путь к файлу в хранилище и метаданные)
      */
-    ProcessingResult processQuality(String originalPath, UUID videoId, Quality quality, String outputPath);
+    ProcessingResult processQuality(String originalPath, UUID videoId, Rendition rendition, String outputPath,
+                                    String audioPath, ProgressListener listener);
+
+    /**
+     * Обрабатывает уже сконвертированный файл качества:
+     * извлечение метаданных, загрузка в хранилище и сохранение в БД.
+     * Загрузка пропускается, если прошлая попытка уже загрузила файл
+     *
+     * @param localQualityPath путь к сконвертированному файлу
+     * @param videoId ID видео
+     * @param rendition параметры, с которыми закодирован файл
+     * @return результат обработки
+     */
+    ProcessingResult processEncoded(String localQualityPath, UUID videoId, Rendition rendition);
 
     /**
      * Результат обработки одного качества
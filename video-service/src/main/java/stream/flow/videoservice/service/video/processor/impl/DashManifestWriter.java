@@ -0,0 +1,254 @@
+package stream.flow.videoservice.service.video.processor.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import stream.flow.videoservice.exception.file.FileUploadException;
+import stream.flow.videoservice.model.entity.VideoQuality;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Формирует DASH MPD поверх CMAF сегментов, нарезанных для HLS
+ *
+ * Длительности сегментов берутся из медиа-плейлистов HLS (#EXTINF), поэтому
+ * SegmentTimeline в MPD точно совпадает с фактическими сегментами, а
+ * SegmentTemplate ссылается на те же init.mp4 и seg_NNNNN.m4s.
+ * Отдельная аудиодорожка описывается своим AdaptationSet.
+ *
+ * bandwidth - пиковый битрейт сегмента представления: со средним плеер
+ * не успевает скачивать сегменты сложных сцен за их длительность
+ */
+@Slf4j
+@Component
+public class DashManifestWriter {
+
+    /** Шкала времени SegmentTimeline - миллисекунды */
+    private static final int TIMESCALE = 1000;
+
+    /** AAC LC - профиль, в который кодирует встроенный энкодер FFmpeg */
+    static final String AUDIO_CODECS = "mp4a.40.2";
+
+    private static final Pattern SEGMENT_NUMBER = Pattern.compile("^(.*?)(\\d+)(\\.m4s)$");
+
+    /**
+     * Пишет MPD для всех качеств
+     *
+     * @param streamDir директория с поддиректориями качеств
+     * @param qualities метаданные качеств из БД
+     * @param audioBitrate битрейт отдельной аудиодорожки в kbps или null, если звук внутри сегментов видео
+     * @param peakBandwidths пиковые битрейты сегментов в бит/с по директориям качеств (и аудио);
+     *                       если пик неизвестен, используется средний битрейт
+     * @param mediaPlaylistName имя медиа-плейлиста HLS внутри директории качества
+     * @param manifestPath путь к MPD файлу
+     */
+    public void write(Path streamDir, List<VideoQuality> qualities, Integer audioBitrate,
+                      Map<String, Long> peakBandwidths, String mediaPlaylistName, Path manifestPath) {
+        boolean separateAudio = audioBitrate != null;
+
+        List<Representation> representations = new ArrayList<>();
+        for (VideoQuality quality : qualities) {
+            String dir = StreamingPackagerImpl.renditionDir(quality.getQuality());
+            // При отдельной дорожке в сегментах видео нет звука: ни его битрейта, ни кодека
+            long average = (long) (nullToZero(quality.getBitrateVideo())
+                    + (separateAudio ? 0 : nullToZero(quality.getBitrateAudio()))) * 1000;
+            long bandwidth = Math.max(peakBandwidths.getOrDefault(dir, 0L), average);
+            String codecs = separateAudio && quality.getCodecs() != null
+                    ? quality.getCodecs().split(",")[0]
+                    : quality.getCodecs();
+            representations.add(readRepresentation(dir, bandwidth, quality.getResolution(), codecs,
+                    streamDir.resolve(dir).resolve(mediaPlaylistName)));
+        }
+
+        Representation audio = separateAudio
+                ? readRepresentation(StreamingPackagerImpl.AUDIO_DIR,
+                        Math.max(peakBandwidths.getOrDefault(StreamingPackagerImpl.AUDIO_DIR, 0L), audioBitrate * 1000L),
+                        null, AUDIO_CODECS,
+                        streamDir.resolve(StreamingPackagerImpl.AUDIO_DIR).resolve(mediaPlaylistName))
+                : null;
+
+        List<Representation> all = new ArrayList<>(representations);
+        if (audio != null) {
+            all.add(audio);
+        }
+        long presentationDuration = all.stream()
+                .mapToLong(representation -> representation.timeline().stream().mapToLong(Long::longValue).sum())
+                .max()
+                .orElse(0);
+
+        StringBuilder mpd = new StringBuilder()
+                .append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<MPD xmlns=\"urn:mpeg:dash:schema:mpd:2011\"")
+                .append(" profiles=\"urn:mpeg:dash:profile:isoff-live:2011\"")
+                .append(" type=\"static\"")
+                .append(" mediaPresentationDuration=\"").append(isoDuration(presentationDuration)).append("\"")
+                .append(" minBufferTime=\"PT2S\">\n")
+                .append("  <Period id=\"0\" start=\"PT0S\">\n")
+                .append("    <AdaptationSet id=\"0\" mimeType=\"video/mp4\" segmentAlignment=\"true\" startWithSAP=\"1\">\n");
+
+        for (Representation representation : representations) {
+            appendRepresentation(mpd, representation);
+        }
+
+        mpd.append("    </AdaptationSet>\n");
+
+        if (audio != null) {
+            mpd.append("    <AdaptationSet id=\"1\" mimeType=\"audio/mp4\" segmentAlignment=\"true\" startWithSAP=\"1\">\n");
+            appendRepresentation(mpd, audio);
+            mpd.append("    </AdaptationSet>\n");
+        }
+
+        mpd.append("  </Period>\n")
+                .append("</MPD>\n");
+
+        try {
+            Files.writeString(manifestPath, mpd.toString(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            log.error("Failed to write DASH manifest {}: {}", manifestPath, e.getMessage(), e);
+            throw new FileUploadException("Failed to write DASH manifest", e);
+        }
+
+        log.info("DASH manifest written: {} ({} representations)", manifestPath, representations.size());
+    }
+
+    /**
+     * Читает медиа-плейлист HLS качества: init сегмент, имена и длительности сегментов
+     */
+    private Representation readRepresentation(String dir, long bandwidth, String resolution, String codecs,
+                                              Path mediaPlaylist) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(mediaPlaylist, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            log.error("Failed to read media playlist {}: {}", mediaPlaylist, e.getMessage(), e);
+            throw new FileUploadException("Failed to read media playlist for DASH manifest", e);
+        }
+
+        String initSegment = "init.mp4";
+        String firstSegment = null;
+        List<Double> durations = new ArrayList<>();
+
+        for (String line : lines) {
+            if (line.startsWith("#EXT-X-MAP:")) {
+                int uriStart = line.indexOf("URI=\"") + 5;
+                initSegment = line.substring(uriStart, line.indexOf('"', uriStart));
+            } else if (line.startsWith("#EXTINF:")) {
+                String value = line.substring("#EXTINF:".length());
+                int comma = value.indexOf(',');
+                durations.add(Double.parseDouble(comma >= 0 ? value.substring(0, comma) : value));
+            } else if (!line.isBlank() && !line.startsWith("#") && firstSegment == null) {
+                firstSegment = line.trim();
+            }
+        }
+
+        if (firstSegment == null) {
+            throw new FileUploadException("Media playlist has no segments: " + mediaPlaylist);
+        }
+
+        Matcher matcher = SEGMENT_NUMBER.matcher(firstSegment);
+        if (!matcher.matches()) {
+            throw new FileUploadException("Unexpected segment name in media playlist: " + firstSegment);
+        }
+        String numberWidth = String.valueOf(matcher.group(2).length());
+        String mediaTemplate = dir + "/" + matcher.group(1) + "$Number%0" + numberWidth + "d$" + matcher.group(3);
+
+        // Переводим длительности в TIMESCALE по накопленному времени,
+        // чтобы ошибка округления не копилась от сегмента к сегменту
+        List<Long> timeline = new ArrayList<>(durations.size());
+        double elapsed = 0;
+        long previous = 0;
+        for (double duration : durations) {
+            elapsed += duration;
+            long current = Math.round(elapsed * TIMESCALE);
+            timeline.add(current - previous);
+            previous = current;
+        }
+
+        return new Representation(dir, bandwidth, resolution, codecs, dir + "/" + initSegment, mediaTemplate,
+                Long.parseLong(matcher.group(2)), timeline);
+    }
+
+    private void appendRepresentation(StringBuilder mpd, Representation representation) {
+        mpd.append("      <Representation id=\"").append(representation.id()).append("\"")
+                .append(" bandwidth=\"").append(representation.bandwidth()).append("\"");
+
+        String resolution = representation.resolution();
+        if (resolution != null && resolution.contains("x")) {
+            String[] size = resolution.split("x");
+            mpd.append(" width=\"").append(size[0]).append("\"")
+                    .append(" height=\"").append(size[1]).append("\"");
+        }
+        if (representation.codecs() != null) {
+            mpd.append(" codecs=\"").append(representation.codecs()).append("\"");
+        }
+        mpd.append(">\n")
+                .append("        <SegmentTemplate timescale=\"").append(TIMESCALE).append("\"")
+                .append(" initialization=\"").append(representation.initialization()).append("\"")
+                .append(" media=\"").append(representation.media()).append("\"")
+                .append(" startNumber=\"").append(representation.startNumber()).append("\">\n")
+                .append("          <SegmentTimeline>\n");
+
+        // Подряд идущие сегменты одинаковой длительности сворачиваем в один S с атрибутом r
+        List<Long> timeline = representation.timeline();
+        long time = 0;
+        int i = 0;
+        while (i < timeline.size()) {
+            long duration = timeline.get(i);
+            int repeat = 0;
+            while (i + repeat + 1 < timeline.size() && timeline.get(i + repeat + 1) == duration) {
+                repeat++;
+            }
+
+            mpd.append("            <S ");
+            if (i == 0) {
+                mpd.append("t=\"").append(time).append("\" ");
+            }
+            mpd.append("d=\"").append(duration).append("\"");
+            if (repeat > 0) {
+                mpd.append(" r=\"").append(repeat).append("\"");
+            }
+            mpd.append("/>\n");
+
+            time += duration * (repeat + 1);
+            i += repeat + 1;
+        }
+
+        mpd.append("          </SegmentTimeline>\n")
+                .append("        </SegmentTemplate>\n")
+                .append("      </Representation>\n");
+    }
+
+    private String isoDuration(long millis) {
+        return String.format(Locale.ROOT, "PT%.3fS", millis / (double) TIMESCALE);
+    }
+
+    private int nullToZero(Integer value) {
+        return value != null ? value : 0;
+    }
+
+    /**
+     * Представление одного качества (или аудиодорожки) в MPD
+     *
+     * @param bandwidth битрейт в бит/с
+     * @param resolution WIDTHxHEIGHT или null для аудио
+     * @param timeline длительности сегментов в TIMESCALE
+     */
+    private record Representation(
+            String id,
+            long bandwidth,
+            String resolution,
+            String codecs,
+            String initialization,
+            String media,
+            long startNumber,
+            List<Long> timeline
+    ) {}
+}
@@ -0,0 +1,57 @@
+package stream.flow.videoservice.service.video.processor.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import stream.flow.videoservice.model.dto.response.VideoInfoResponse;
+import stream.flow.videoservice.model.enums.Quality;
+import stream.flow.videoservice.service.ffmpeg.Rendition;
+import stream.flow.videoservice.service.video.processor.LadderPlanner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Лестница качеств с учетом исходника:
+ * - Качества выше исходного разрешения не кодируются (апскейл только тратит CPU и место)
+ * - Битрейт каждого качества масштабируется по сложности контента (per-title)
+ * - Битрейт каждого качества не превышает битрейт исходника
+ * - Если исходник меньше самого низкого качества, кодируется одно качество в исходной высоте
+ */
+@Slf4j
+@Service
+public class LadderPlannerImpl implements LadderPlanner {
+
+    @Override
+    public List<Rendition> plan(VideoInfoResponse source, double complexity) {
+        int sourceHeight = source.getHeight() != null ? source.getHeight() : 0;
+        int sourceBitrate = source.getBitrateVideo() != null ? source.getBitrateVideo() : 0;
+
+        List<Rendition> ladder = new ArrayList<>();
+        for (Quality quality : Quality.values()) {
+            // Высота исходника неизвестна - кодируем полную лестницу
+            if (sourceHeight > 0 && quality.getHeight() > sourceHeight) {
+                continue;
+            }
+            ladder.add(new Rendition(quality, quality.getHeight(), capBitrate(scaleBitrate(quality.getVideoBitrate(), complexity), sourceBitrate)));
+        }
+
+        if (ladder.isEmpty()) {
+            Quality lowest = Quality.values()[Quality.values().length - 1];
+            // libx264 требует четную высоту кадра
+            int height = Math.max(2, sourceHeight - sourceHeight % 2);
+            ladder.add(new Rendition(lowest, height, capBitrate(scaleBitrate(lowest.getVideoBitrate(), complexity), sourceBitrate)));
+        }
+
+        log.info("Ladder planned for source {} ({} kbps, complexity {}): {}",
+                source.getResolution(), sourceBitrate, complexity, ladder);
+        return ladder;
+    }
+
+    private int scaleBitrate(int bitrate, double complexity) {
+        return (int) Math.round(bitrate * complexity);
+    }
+
+    private int capBitrate(int bitrate, int sourceBitrate) {
+        return sourceBitrate > 0 ? Math.min(bitrate, sourceBitrate) : bitrate;
+    }
+}
@@ -0,0 +1,130 @@
+package stream.flow.videoservice.service.video.processor.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import stream.flow.videoservice.exception.file.FileUploadException;
+import stream.flow.videoservice.service.ffmpeg.FfmpegService;
+import stream.flow.videoservice.service.video.processor.Mp4LayoutVerifier;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Читает только заголовки атомов верхнего уровня (8-16 байт на атом),
+ * поэтому проверка многогигабайтного файла занимает миллисекунды
+ *
+ * Ожидаемое расположение зависит от ffmpeg.conversion.mp4-layout:
+ * - faststart: ftyp, moov, mdat
+ * - fragmented: ftyp, moov (пустой), затем пары moof + mdat
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class Mp4LayoutVerifierImpl implements Mp4LayoutVerifier {
+
+    private final FfmpegService ffmpegService;
+
+    @Value("${ffmpeg.conversion.mp4-layout:faststart}")
+    private String mp4Layout;
+
+    @Override
+    public void ensureStreamable(String path) {
+        if (isStreamable(path)) {
+            return;
+        }
+
+        log.warn("MP4 {} is not {}, remuxing before upload", path, mp4Layout);
+
+        Path source = Paths.get(path);
+        Path fixed = Paths.get(path + ".fixed.mp4");
+        try {
+            ffmpegService.remux(path, null, fixed.toString());
+            Files.move(fixed, source, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new FileUploadException("Failed to replace remuxed MP4 " + path + ": " + e.getMessage(), e);
+        }
+
+        if (!isStreamable(path)) {
+            throw new FileUploadException("MP4 " + path + " is still not " + mp4Layout + " after remux");
+        }
+    }
+
+    private boolean isStreamable(String path) {
+        List<String> boxes = topLevelBoxes(Paths.get(path));
+        int moov = boxes.indexOf("moov");
+        int mdat = boxes.indexOf("mdat");
+
+        if (moov < 0 || mdat < 0) {
+            throw new FileUploadException("MP4 " + path + " has no moov or mdat atom: " + boxes);
+        }
+
+        if ("fragmented".equalsIgnoreCase(mp4Layout)) {
+            int moof = boxes.indexOf("moof");
+            return moof >= 0 && moov < moof && moof < mdat;
+        }
+        return moov < mdat;
+    }
+
+    /**
+     * Типы атомов верхнего уровня по порядку
+     *
+     * Заголовок атома: размер (4 байта) и тип (4 байта). Размер 1 означает,
+     * что за типом идет 64-битный размер, размер 0 - атом до конца файла
+     */
+    List<String> topLevelBoxes(Path path) {
+        List<String> boxes = new ArrayList<>();
+        ByteBuffer header = ByteBuffer.allocate(16);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            long position = 0;
+
+            while (position + 8 <= fileSize) {
+                header.clear().limit(8);
+                readFully(channel, header, position);
+
+                long size = Integer.toUnsignedLong(header.getInt(0));
+                String type = new String(header.array(), 4, 4, StandardCharsets.ISO_8859_1);
+
+                if (size == 1) {
+                    header.clear().limit(8);
+                    readFully(channel, header, position + 8);
+                    size = header.getLong(0);
+                } else if (size == 0) {
+                    size = fileSize - position;
+                }
+
+                if (size < 8) {
+                    throw new FileUploadException("Corrupted MP4 " + path + ": atom " + type + " has size " + size);
+                }
+
+                boxes.add(type);
+                position += size;
+            }
+
+            return boxes;
+
+        } catch (IOException e) {
+            throw new FileUploadException("Failed to read MP4 " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+    }
+}
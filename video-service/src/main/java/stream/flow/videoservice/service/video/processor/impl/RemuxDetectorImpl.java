@@ -0,0 +1,121 @@
+package stream.flow.videoservice.service.video.processor.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import stream.flow.videoservice.model.dto.response.VideoInfoResponse;
+import stream.flow.videoservice.service.ffmpeg.FfmpegService;
+import stream.flow.videoservice.service.ffmpeg.Rendition;
+import stream.flow.videoservice.service.video.processor.RemuxDetector;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Исходник подходит для копирования, если:
+ * - видео H.264 (Baseline/Main/High) в yuv420p (звук всегда берется из общей
+ *   закодированной дорожки, поэтому его кодек не важен)
+ * - высота кадра совпадает с высотой качества
+ * - кадр не повернут и пиксели квадратные: при кодировании поворот и SAR применяются
+ *   к кадру (scale), а скопированный поток сохранил бы их только в метаданных,
+ *   и качества лестницы отличались бы по ориентации и пропорциям
+ * - битрейт не больше потолка качества с запасом max-bitrate-ratio
+ * - при упаковке в HLS/DASH ключевые кадры стоят на каждой границе сегмента,
+ *   иначе сегменты этого качества не совпадут с сегментами остальных
+ *
+ * Обычное видео с телефона (H.264, ключевой кадр каждые 1-2 секунды)
+ * проходит все проверки для верхнего качества
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RemuxDetectorImpl implements RemuxDetector {
+
+    private static final Set<String> COMPATIBLE_PROFILES = Set.of("Constrained Baseline", "Baseline", "Main", "High");
+    private static final double KEYFRAME_TOLERANCE = 0.05;
+
+    private final FfmpegService ffmpegService;
+
+    @Value("${ffmpeg.remux.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ffmpeg.remux.max-bitrate-ratio:1.5}")
+    private double maxBitrateRatio;
+
+    @Value("${video.packaging.enabled:true}")
+    private boolean packagingEnabled;
+
+    @Value("${video.packaging.segment-duration:4}")
+    private int segmentDuration;
+
+    @Override
+    public boolean canRemux(String inputPath, VideoInfoResponse source, Rendition rendition) {
+        if (!enabled) {
+            return false;
+        }
+
+        boolean compatible = "h264".equals(source.getVideoCodec())
+                && COMPATIBLE_PROFILES.contains(source.getVideoProfile())
+                && "yuv420p".equals(source.getPixelFormat())
+                && source.getHeight() != null && source.getHeight() == rendition.height()
+                && (source.getRotation() == null || source.getRotation() == 0)
+                && squarePixels(source.getSampleAspectRatio())
+                && source.getWidth() != null && source.getWidth() % 2 == 0
+                && source.getBitrateVideo() != null && source.getBitrateVideo() > 0
+                && source.getBitrateVideo() <= rendition.maxBitrate() * maxBitrateRatio;
+
+        if (!compatible) {
+            return false;
+        }
+
+        if (packagingEnabled && !keyframesAligned(inputPath, source.getDuration())) {
+            log.debug("Source {} is compatible with {} but keyframes are not segment-aligned", inputPath, rendition);
+            return false;
+        }
+
+        log.info("Source {} can be remuxed to {}", inputPath, rendition);
+        return true;
+    }
+
+    /**
+     * "0:1" FFprobe возвращает, когда пропорции пикселя не заданы: плеер считает их квадратными
+     */
+    private boolean squarePixels(String sampleAspectRatio) {
+        return sampleAspectRatio == null || "1:1".equals(sampleAspectRatio) || "0:1".equals(sampleAspectRatio);
+    }
+
+    /**
+     * Проверяет, что на каждой границе сегмента (k * segment-duration от первого кадра)
+     * есть ключевой кадр
+     */
+    boolean keyframesAligned(String inputPath, Integer duration) {
+        if (duration == null || duration <= 0) {
+            return false;
+        }
+
+        List<Double> keyframes;
+        try {
+            keyframes = ffmpegService.probeKeyframes(inputPath);
+        } catch (Exception e) {
+            log.warn("Failed to probe keyframes of {}: {}", inputPath, e.getMessage());
+            return false;
+        }
+
+        if (keyframes.isEmpty()) {
+            return false;
+        }
+
+        double origin = keyframes.getFirst();
+        int index = 0;
+        for (double boundary = segmentDuration; boundary < duration - KEYFRAME_TOLERANCE; boundary += segmentDuration) {
+            while (index < keyframes.size() && keyframes.get(index) - origin < boundary - KEYFRAME_TOLERANCE) {
+                index++;
+            }
+            if (index == keyframes.size() || keyframes.get(index) - origin > boundary + KEYFRAME_TOLERANCE) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,74 @@
+package stream.flow.videoservice.service.video.processor.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import stream.flow.videoservice.model.entity.RenditionCheckpoint;
+import stream.flow.videoservice.model.enums.Quality;
+import stream.flow.videoservice.model.enums.RenditionState;
+import stream.flow.videoservice.repository.RenditionCheckpointRepository;
+import stream.flow.videoservice.service.video.processor.RenditionCheckpointService;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Каждая отметка - отдельная транзакция: пройденный этап сохраняется сразу,
+ * даже если следующий этап или вся задача упадет
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RenditionCheckpointServiceImpl implements RenditionCheckpointService {
+
+    private final RenditionCheckpointRepository checkpointRepository;
+
+    @Override
+    @Transactional(readOnly = true)
+    public Map<Quality, RenditionCheckpoint> getCheckpoints(UUID videoId) {
+        Map<Quality, RenditionCheckpoint> checkpoints = new EnumMap<>(Quality.class);
+        checkpointRepository.findByVideoId(videoId)
+                .forEach(checkpoint -> checkpoints.put(checkpoint.getQuality(), checkpoint));
+        return checkpoints;
+    }
+
+    @Override
+    @Transactional
+    public void markEncoded(UUID videoId, Quality quality, String localPath) {
+        RenditionCheckpoint checkpoint = findOrCreate(videoId, quality);
+        checkpoint.setState(RenditionState.ENCODED);
+        checkpoint.setLocalPath(localPath);
+        checkpoint.setStoragePath(null);
+        checkpointRepository.save(checkpoint);
+        log.debug("Quality {} of video {} encoded: {}", quality, videoId, localPath);
+    }
+
+    @Override
+    @Transactional
+    public void markUploaded(UUID videoId, Quality quality, String storagePath) {
+        RenditionCheckpoint checkpoint = findOrCreate(videoId, quality);
+        checkpoint.setState(RenditionState.UPLOADED);
+        checkpoint.setStoragePath(storagePath);
+        checkpointRepository.save(checkpoint);
+        log.debug("Quality {} of video {} uploaded: {}", quality, videoId, storagePath);
+    }
+
+    @Override
+    @Transactional
+    public void markPersisted(UUID videoId, Quality quality) {
+        RenditionCheckpoint checkpoint = findOrCreate(videoId, quality);
+        checkpoint.setState(RenditionState.PERSISTED);
+        checkpointRepository.save(checkpoint);
+        log.debug("Quality {} of video {} persisted", quality, videoId);
+    }
+
+    private RenditionCheckpoint findOrCreate(UUID videoId, Quality quality) {
+        return checkpointRepository.findByVideoIdAndQuality(videoId, quality)
+                .orElseGet(() -> RenditionCheckpoint.builder()
+                        .videoId(videoId)
+                        .quality(quality)
+                        .build());
+    }
+}
@@ -0,0 +1,182 @@
+package stream.flow.videoservice.service.video.processor.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import stream.flow.videoservice.exception.file.FileUploadException;
+import stream.flow.videoservice.service.storage.StorageService;
+import stream.flow.videoservice.service.video.processor.SegmentUploader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+
+/**
+ * Директория сегментов опрашивается в виртуальном потоке каждые poll-interval мс
+ *
+ * FFmpeg пишет сегмент во временный файл seg_NNNNN.m4s.tmp и переименовывает его
+ * после записи (-hls_flags temp_file), поэтому файл с окончанием .m4s всегда полный
+ * и его можно загружать, не дожидаясь конца нарезки
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SegmentUploaderImpl implements SegmentUploader {
+
+    private static final String SEGMENT_SUFFIX = ".m4s";
+
+    private final StorageService storageService;
+
+    @Value("${video.temp-dir}")
+    private String tempDir;
+
+    @Value("${video.packaging.streaming.poll-interval:200}")
+    private long pollIntervalMillis;
+
+    @Override
+    public SegmentUpload start(Path segmentDir, String bucketName) {
+        DirectorySegmentUpload upload = new DirectorySegmentUpload(segmentDir, bucketName);
+        upload.worker = Thread.ofVirtual().name("segment-upload-" + segmentDir.getFileName()).start(upload::run);
+        return upload;
+    }
+
+    private final class DirectorySegmentUpload implements SegmentUpload {
+
+        private final Path segmentDir;
+        private final String bucketName;
+
+        private Thread worker;
+        private volatile boolean producing = true;
+        private volatile boolean aborted;
+        private volatile Exception failure;
+        private final List<String> uploadedObjects = new ArrayList<>();
+        private final Map<String, Long> segmentSizes = new HashMap<>();
+
+        DirectorySegmentUpload(Path segmentDir, String bucketName) {
+            this.segmentDir = segmentDir;
+            this.bucketName = bucketName;
+        }
+
+        void run() {
+            try {
+                while (producing && !aborted) {
+                    uploadReady();
+                    Thread.sleep(pollIntervalMillis);
+                }
+                // FFmpeg завершился - догружаем последние сегменты
+                if (!aborted) {
+                    uploadReady();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                failure = e;
+            }
+        }
+
+        private void uploadReady() throws IOException, InterruptedException {
+            if (!Files.isDirectory(segmentDir)) {
+                return;
+            }
+
+            List<Path> ready;
+            try (Stream<Path> files = Files.list(segmentDir)) {
+                ready = files.filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                        .sorted()
+                        .toList();
+            }
+
+            if (ready.isEmpty() || aborted) {
+                return;
+            }
+
+            // Имена запоминаются до загрузки: при отмене удаляются и сегменты прерванного пакета
+            Path tempDirPath = Paths.get(tempDir);
+            synchronized (uploadedObjects) {
+                ready.forEach(segment -> uploadedObjects.add(tempDirPath.relativize(segment).toString()));
+            }
+            for (Path segment : ready) {
+                segmentSizes.put(segment.getFileName().toString(), Files.size(segment));
+            }
+
+            // Готовые за опрос сегменты загружаются одним пакетом параллельно
+            try {
+                storageService.uploadFilesAsync(ready.stream().map(Path::toString).toList(), bucketName, null).get();
+            } catch (ExecutionException e) {
+                throw new FileUploadException("Failed to upload segments", e.getCause());
+            }
+
+            // Сегменты уже в хранилище, место на диске освобождается сразу
+            for (Path segment : ready) {
+                Files.delete(segment);
+            }
+        }
+
+        @Override
+        public Map<String, Long> finish() {
+            producing = false;
+            join();
+
+            if (failure != null) {
+                log.error("Failed to upload segments of {}: {}", segmentDir, failure.getMessage(), failure);
+                throw new FileUploadException("Failed to upload segments: " + failure.getMessage(), failure);
+            }
+
+            log.debug("Uploaded {} segments of {} while packaging", uploadedObjects.size(), segmentDir);
+            return Map.copyOf(segmentSizes);
+        }
+
+        @Override
+        public void abort() {
+            aborted = true;
+            worker.interrupt();
+            try {
+                join();
+            } finally {
+                deleteUploaded();
+            }
+        }
+
+        /**
+         * Удаление не ждем: упавшая упаковка и так завершается ошибкой,
+         * а оставшиеся сегменты только занимают место
+         */
+        private void deleteUploaded() {
+            List<String> objects;
+            synchronized (uploadedObjects) {
+                objects = List.copyOf(uploadedObjects);
+            }
+            if (objects.isEmpty()) {
+                return;
+            }
+
+            storageService.deleteObjectsAsync(bucketName, objects).whenComplete((result, error) -> {
+                if (error != null) {
+                    log.warn("Failed to delete {} segments of aborted {}: {}",
+                            objects.size(), segmentDir, error.getMessage());
+                } else {
+                    log.debug("Deleted {} segments of aborted {}", objects.size(), segmentDir);
+                }
+            });
+        }
+
+        private void join() {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                aborted = true;
+                worker.interrupt();
+                Thread.currentThread().interrupt();
+                throw new FileUploadException("Segment upload interrupted", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package stream.flow.videoservice.service.video.processor.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import stream.flow.videoservice.exception.file.FileUploadException;
+import stream.flow.videoservice.model.dto.response.VideoInfoResponse;
+import stream.flow.videoservice.service.ffmpeg.FfmpegService;
+import stream.flow.videoservice.service.ffmpeg.StoryboardSpec;
+import stream.flow.videoservice.service.storage.StorageService;
+import stream.flow.videoservice.service.video.VideoService;
+import stream.flow.videoservice.service.video.processor.StoryboardService;
+import stream.flow.videoservice.service.video.processor.TempFileManager;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Раскадровка хранится рядом с превью видео:
+ * {videoId}/storyboard/storyboard.vtt, sprite_001.jpg, sprite_002.jpg, ...
+ *
+ * Ссылки на листы в WebVTT относительные, поэтому индекс и листы
+ * можно раздавать с любого адреса
+ *
+ * Проход по видео пишет листы в {videoId}/storyboard.part и только после успешного
+ * завершения переименовывает ее в {videoId}/storyboard: листы упавшего на середине
+ * прохода не публикуются, а при следующей попытке удаляются
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StoryboardServiceImpl implements StoryboardService {
+
+    private static final String STORYBOARD_DIR = "storyboard";
+    private static final String SCRATCH_DIR = "storyboard.part";
+    private static final String INDEX_FILE = "storyboard.vtt";
+
+    private final FfmpegService ffmpegService;
+    private final StorageService storageService;
+    private final VideoService videoService;
+    private final TempFileManager tempFileManager;
+
+    @Value("${minio.bucket.thumbnails:streamflow-thumbnails}")
+    private String thumbnailBucket;
+
+    @Value("${video.storyboard.enabled:true}")
+    private boolean enabled;
+
+    @Value("${video.storyboard.interval:5}")
+    private int interval;
+
+    @Value("${video.storyboard.tile-width:160}")
+    private int tileWidth;
+
+    @Value("${video.storyboard.columns:10}")
+    private int columns;
+
+    @Value("${video.storyboard.rows:10}")
+    private int rows;
+
+    @Override
+    public StoryboardSpec plan(UUID videoId, VideoInfoResponse source) {
+        if (!enabled || source.getWidth() == null || source.getHeight() == null
+                || source.getWidth() <= 0 || source.getDuration() == null || source.getDuration() <= 0) {
+            return null;
+        }
+
+        // Высота кадра по пропорциям исходника, четная для yuv420p
+        int tileHeight = Math.max(2, (int) Math.round((double) tileWidth * source.getHeight() / source.getWidth() / 2) * 2);
+        Path scratchDir = Paths.get(tempFileManager.buildTempDirectoryPath(videoId, SCRATCH_DIR));
+        deleteDirectory(scratchDir);
+
+        return new StoryboardSpec(scratchDir.toString(), interval, tileWidth, tileHeight, columns, rows);
+    }
+
+    @Override
+    public void commit(UUID videoId, StoryboardSpec spec) {
+        Path scratchDir = Paths.get(spec.outputDir());
+        if (countSprites(scratchDir) == 0) {
+            log.debug("No storyboard sprites to commit for video {}", videoId);
+            return;
+        }
+
+        Path outputDir = Paths.get(tempFileManager.buildTempDirectoryPath(videoId, STORYBOARD_DIR));
+        try {
+            deleteDirectory(outputDir);
+            Files.move(scratchDir, outputDir, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            // Без итоговых листов раскадровку снимет отдельный проход при публикации
+            log.warn("Failed to commit storyboard of video {}: {}", videoId, e.getMessage());
+        }
+    }
+
+    @Override
+    public String publish(String pathOriginal, UUID videoId, StoryboardSpec spec, int duration) {
+        Path outputDir = Paths.get(tempFileManager.buildTempDirectoryPath(videoId, STORYBOARD_DIR));
+
+        // Проход лестницы не выполнялся (по одному качеству, возобновленная задача) или не дал листов
+        if (countSprites(outputDir) == 0) {
+            log.info("Storyboard for video {} was not produced by the ladder pass, generating separately", videoId);
+            deleteDirectory(Paths.get(spec.outputDir()));
+            ffmpegService.generateStoryboard(pathOriginal, spec);
+            commit(videoId, spec);
+        }
+
+        int sprites = countSprites(outputDir);
+        if (sprites == 0) {
+            throw new FileUploadException("No storyboard sprites were produced for video " + videoId);
+        }
+
+        writeIndex(outputDir.resolve(INDEX_FILE), spec, duration, sprites);
+
+        String storagePrefix = storageService.uploadDirectory(outputDir.toString(), thumbnailBucket);
+        String indexPath = storagePrefix + "/" + INDEX_FILE;
+
+        videoService.updateStoryboard(videoId, indexPath);
+        log.info("Storyboard published for video {}: {} sprites, index {}", videoId, sprites, indexPath);
+
+        return indexPath;
+    }
+
+    /**
+     * Пишет WebVTT индекс: одна запись на каждый кадр раскадровки
+     *
+     * 00:00:05.000 --> 00:00:10.000
+     * sprite_001.jpg#xywh=160,0,160,90
+     */
+    void writeIndex(Path indexPath, StoryboardSpec spec, int duration, int sprites) {
+        int frames = Math.min((duration + spec.interval() - 1) / spec.interval(), sprites * spec.tilesPerSprite());
+
+        StringBuilder vtt = new StringBuilder("WEBVTT\n");
+        for (int frame = 0; frame < frames; frame++) {
+            int sprite = frame / spec.tilesPerSprite() + 1;
+            int tile = frame % spec.tilesPerSprite();
+            int x = (tile % spec.columns()) * spec.tileWidth();
+            int y = (tile / spec.columns()) * spec.tileHeight();
+
+            long start = (long) frame * spec.interval();
+            long end = Math.min(start + spec.interval(), duration);
+
+            vtt.append("\n")
+                    .append(timestamp(start)).append(" --> ").append(timestamp(end)).append("\n")
+                    .append(String.format("%s%03d.jpg#xywh=%d,%d,%d,%d",
+                            StoryboardSpec.SPRITE_PREFIX, sprite, x, y, spec.tileWidth(), spec.tileHeight()))
+                    .append("\n");
+        }
+
+        try {
+            Files.writeString(indexPath, vtt.toString(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            log.error("Failed to write storyboard index {}: {}", indexPath, e.getMessage(), e);
+            throw new FileUploadException("Failed to write storyboard index", e);
+        }
+    }
+
+    private String timestamp(long seconds) {
+        return String.format("%02d:%02d:%02d.000", seconds / 3600, (seconds % 3600) / 60, seconds % 60);
+    }
+
+    /**
+     * Директория раскадровки плоская: листы и индекс
+     */
+    private void deleteDirectory(Path dir) {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+
+        try {
+            List<Path> files;
+            try (Stream<Path> entries = Files.list(dir)) {
+                files = entries.toList();
+            }
+            for (Path file : files) {
+                Files.delete(file);
+            }
+            Files.delete(dir);
+        } catch (IOException e) {
+            throw new FileUploadException("Failed to delete storyboard directory " + dir, e);
+        }
+    }
+
+    private int countSprites(Path outputDir) {
+        if (!Files.isDirectory(outputDir)) {
+            return 0;
+        }
+
+        try (Stream<Path> files = Files.list(outputDir)) {
+            return (int) files
+                    .filter(file -> file.getFileName().toString().startsWith(StoryboardSpec.SPRITE_PREFIX))
+                    .count();
+        } catch (IOException e) {
+            throw new FileUploadException("Failed to list storyboard directory " + outputDir, e);
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package stream.flow.videoservice.service.video.processor.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import stream.flow.videoservice.exception.file.FileUploadException;
+import stream.flow.videoservice.model.entity.VideoQuality;
+import stream.flow.videoservice.model.enums.Quality;
+import stream.flow.videoservice.service.ffmpeg.FfmpegService;
+import stream.flow.videoservice.service.storage.StorageService;
+import stream.flow.videoservice.service.video.VideoQualityService;
+import stream.flow.videoservice.service.video.VideoService;
+import stream.flow.videoservice.service.video.processor.SegmentUploader;
+import stream.flow.videoservice.service.video.processor.StreamingPackager;
+import stream.flow.videoservice.service.video.processor.TempFileManager;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Упаковка качеств в HLS и DASH
+ *
+ * Оба протокола ссылаются на одни и те же CMAF сегменты, поэтому в хранилище
+ * лежит один набор объектов:
+ * {videoId}/stream/master.m3u8
+ * {videoId}/stream/manifest.mpd
+ * {videoId}/stream/p720/index.m3u8, init.mp4, seg_00000.m4s, ...
+ * {videoId}/stream/audio/index.m3u8, init.mp4, seg_00000.m4s, ...
+ *
+ * Звук нарезается один раз в audio/ и подключается к качествам как группа
+ * EXT-X-MEDIA (в DASH - отдельный AdaptationSet), поэтому сегменты видео
+ * его не дублируют, а плеер на слабом канале может выбрать только аудио
+ *
+ * В потоковом режиме (video.packaging.streaming.enabled) сегменты загружаются
+ * SegmentUploader'ом, пока FFmpeg нарезает следующие, и удаляются с диска. Объекты
+ * публикуются в порядке, при котором плеер не увидит ссылку на отсутствующий объект:
+ * сегменты качества, затем его init.mp4 и плейлист, и в самом конце master и MPD
+ *
+ * BANDWIDTH в master и bandwidth в MPD - пиковый битрейт сегмента (размер сегмента,
+ * деленный на его #EXTINF), как требуют RFC 8216 и DASH: по среднему битрейту плеер
+ * выбирает качество, которое не успевает скачивать на сложных сценах.
+ * Средний битрейт из метаданных качества идет в AVERAGE-BANDWIDTH
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StreamingPackagerImpl implements StreamingPackager {
+
+    private static final String STREAM_DIR = "stream";
+    private static final String MASTER_PLAYLIST = "master.m3u8";
+    private static final String MEDIA_PLAYLIST = "index.m3u8";
+    private static final String DASH_MANIFEST = "manifest.mpd";
+    private static final String INIT_SEGMENT = "init.mp4";
+    private static final String AUDIO_GROUP = "audio";
+
+    static final String AUDIO_DIR = "audio";
+
+    private final FfmpegService ffmpegService;
+    private final StorageService storageService;
+    private final VideoQualityService videoQualityService;
+    private final VideoService videoService;
+    private final TempFileManager tempFileManager;
+    private final DashManifestWriter dashManifestWriter;
+    private final SegmentUploader segmentUploader;
+
+    @Value("${minio.bucket.videos}")
+    private String bucketName;
+
+    @Value("${video.packaging.dash.enabled:true}")
+    private boolean dashEnabled;
+
+    @Value("${video.packaging.streaming.enabled:true}")
+    private boolean streamingUpload;
+
+    @Value("${ffmpeg.conversion.audio-bitrate:128}")
+    private int audioBitrate;
+
+    @Override
+    public PackagingResult packageRenditions(UUID videoId, Map<Quality, String> renditions, String audioPath) {
+        log.info("Packaging streaming renditions for video {}: {}", videoId, renditions.keySet());
+
+        Path streamDir = Paths.get(tempFileManager.buildTempDirectoryPath(videoId, STREAM_DIR));
+        boolean separateAudio = audioPath != null;
+
+        // Нарезаем каждое качество в свою поддиректорию (без звука, если он идет отдельной дорожкой).
+        // Пиковые битрейты - по директориям качеств, в бит/с
+        Map<String, Long> peakBandwidths = new HashMap<>();
+        for (Map.Entry<Quality, String> entry : renditions.entrySet()) {
+            String dir = renditionDir(entry.getKey());
+            peakBandwidths.put(dir, packageRendition(entry.getValue(), streamDir.resolve(dir), separateAudio));
+        }
+        if (separateAudio) {
+            peakBandwidths.put(AUDIO_DIR, packageRendition(audioPath, streamDir.resolve(AUDIO_DIR), false));
+        }
+
+        // Master-плейлист строим по сохраненным в БД метаданным качеств
+        List<VideoQuality> qualities = videoQualityService.getVideoQualities(videoId).stream()
+                .filter(quality -> renditions.containsKey(quality.getQuality()))
+                .toList();
+        if (qualities.size() != renditions.size()) {
+            // Без метаданных качество не попало бы в master: плеер получил бы неполную лестницу
+            throw new FileUploadException("Qualities " + renditions.keySet() + " of video " + videoId
+                    + " are not all persisted, found " + qualities.stream().map(VideoQuality::getQuality).toList());
+        }
+        writeMasterPlaylist(streamDir.resolve(MASTER_PLAYLIST), qualities, peakBandwidths, separateAudio);
+
+        // DASH MPD ссылается на те же init.mp4 и *.m4s, что и HLS плейлисты
+        if (dashEnabled) {
+            dashManifestWriter.write(streamDir, qualities, separateAudio ? audioBitrate : null, peakBandwidths,
+                    MEDIA_PLAYLIST, streamDir.resolve(DASH_MANIFEST));
+        }
+
+        String masterPath;
+        String dashPath;
+        if (streamingUpload) {
+            // Качества уже в хранилище - остались только манифесты верхнего уровня
+            List<String> manifests = dashEnabled
+                    ? List.of(streamDir.resolve(MASTER_PLAYLIST).toString(), streamDir.resolve(DASH_MANIFEST).toString())
+                    : List.of(streamDir.resolve(MASTER_PLAYLIST).toString());
+            List<String> uploaded = awaitUpload(storageService.uploadFilesAsync(manifests, bucketName, null));
+            masterPath = uploaded.get(0);
+            dashPath = dashEnabled ? uploaded.get(1) : null;
+        } else {
+            String storagePrefix = storageService.uploadDirectory(streamDir.toString(), bucketName);
+            masterPath = storagePrefix + "/" + MASTER_PLAYLIST;
+            dashPath = dashEnabled ? storagePrefix + "/" + DASH_MANIFEST : null;
+        }
+
+        videoService.updateStreamingManifests(videoId, masterPath, dashPath);
+        log.info("Streaming renditions packaged for video {}: hls={}, dash={}", videoId, masterPath, dashPath);
+
+        return new PackagingResult(masterPath, dashPath);
+    }
+
+    /**
+     * Нарезает качество (или аудиодорожку) в директорию и в потоковом режиме загружает его:
+     * сегменты - во время нарезки, init.mp4 и плейлист - после последнего сегмента
+     *
+     * @return пиковый битрейт сегмента в бит/с
+     */
+    private long packageRendition(String inputPath, Path renditionDir, boolean videoOnly) {
+        Path playlist = renditionDir.resolve(MEDIA_PLAYLIST);
+        if (!streamingUpload) {
+            ffmpegService.packageHls(inputPath, playlist.toString(), videoOnly);
+            return peakBandwidth(playlist, segmentSizesOnDisk(renditionDir));
+        }
+
+        SegmentUploader.SegmentUpload upload = segmentUploader.start(renditionDir, bucketName);
+        try {
+            ffmpegService.packageHls(inputPath, playlist.toString(), videoOnly);
+        } catch (RuntimeException e) {
+            upload.abort();
+            throw e;
+        }
+        Map<String, Long> segmentSizes = upload.finish();
+
+        awaitUpload(storageService.uploadFilesAsync(
+                List.of(renditionDir.resolve(INIT_SEGMENT).toString(), playlist.toString()), bucketName, null));
+        log.debug("Rendition {} published: {} segments", renditionDir.getFileName(), segmentSizes.size());
+
+        return peakBandwidth(playlist, segmentSizes);
+    }
+
+    private Map<String, Long> segmentSizesOnDisk(Path renditionDir) {
+        try (Stream<Path> files = Files.list(renditionDir)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".m4s"))
+                    .collect(Collectors.toMap(file -> file.getFileName().toString(), file -> file.toFile().length()));
+        } catch (IOException e) {
+            throw new FileUploadException("Failed to list segments of " + renditionDir, e);
+        }
+    }
+
+    /**
+     * Максимум по сегментам медиа-плейлиста: размер сегмента в битах, деленный на его #EXTINF
+     *
+     * @param segmentSizes размеры сегментов в байтах по именам файлов
+     * @return пиковый битрейт в бит/с или 0, если размеры сегментов неизвестны
+     */
+    static long peakBandwidth(Path mediaPlaylist, Map<String, Long> segmentSizes) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(mediaPlaylist, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new FileUploadException("Failed to read media playlist " + mediaPlaylist, e);
+        }
+
+        long peak = 0;
+        double duration = 0;
+        for (String line : lines) {
+            if (line.startsWith("#EXTINF:")) {
+                String value = line.substring("#EXTINF:".length());
+                int comma = value.indexOf(',');
+                duration = Double.parseDouble(comma >= 0 ? value.substring(0, comma) : value);
+            } else if (!line.isBlank() && !line.startsWith("#")) {
+                Long size = segmentSizes.get(line.trim());
+                if (size != null && duration > 0) {
+                    peak = Math.max(peak, (long) Math.ceil(size * 8 / duration));
+                }
+                duration = 0;
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * Пишет master-плейлист со всеми качествами
+     *
+     * BANDWIDTH - пиковый битрейт сегментов видео и аудио в бит/с,
+     * AVERAGE-BANDWIDTH - средний битрейт видео и аудио в бит/с,
+     * RESOLUTION - разрешение качества (WIDTHxHEIGHT),
+     * CODECS - кодеки в формате RFC 6381, если известны,
+     * AUDIO - группа отдельной аудиодорожки
+     */
+    private void writeMasterPlaylist(Path masterPath, List<VideoQuality> qualities, Map<String, Long> peakBandwidths,
+                                     boolean separateAudio) {
+        StringBuilder playlist = new StringBuilder()
+                .append("#EXTM3U\n")
+                .append("#EXT-X-VERSION:7\n")
+                .append("#EXT-X-INDEPENDENT-SEGMENTS\n");
+
+        if (separateAudio) {
+            playlist.append("#EXT-X-MEDIA:TYPE=AUDIO,GROUP-ID=\"").append(AUDIO_GROUP).append("\"")
+                    .append(",NAME=\"default\",DEFAULT=YES,AUTOSELECT=YES")
+                    .append(",URI=\"").append(AUDIO_DIR).append("/").append(MEDIA_PLAYLIST).append("\"\n");
+        }
+
+        long audioAverage = audioBitrate * 1000L;
+        long audioPeak = separateAudio ? Math.max(peakBandwidths.getOrDefault(AUDIO_DIR, 0L), audioAverage) : 0;
+
+        for (VideoQuality quality : qualities) {
+            long average = (long) (nullToZero(quality.getBitrateVideo()) + nullToZero(quality.getBitrateAudio())) * 1000;
+            // При отдельной дорожке сегменты видео без звука: пик аудио добавляется к пику видео
+            long peak = peakBandwidths.getOrDefault(renditionDir(quality.getQuality()), 0L) + audioPeak;
+
+            playlist.append("#EXT-X-STREAM-INF:BANDWIDTH=").append(Math.max(peak, average))
+                    .append(",AVERAGE-BANDWIDTH=").append(average);
+            if (quality.getResolution() != null && !"unknown".equals(quality.getResolution())) {
+                playlist.append(",RESOLUTION=").append(quality.getResolution());
+            }
+            if (quality.getCodecs() != null) {
+                playlist.append(",CODECS=\"").append(quality.getCodecs()).append("\"");
+            }
+            if (separateAudio) {
+                playlist.append(",AUDIO=\"").append(AUDIO_GROUP).append("\"");
+            }
+            playlist.append("\n")
+                    .append(renditionDir(quality.getQuality())).append("/").append(MEDIA_PLAYLIST).append("\n");
+        }
+
+        // Аудио-вариант для очень слабого канала
+        if (separateAudio) {
+            playlist.append("#EXT-X-STREAM-INF:BANDWIDTH=").append(audioPeak)
+                    .append(",AVERAGE-BANDWIDTH=").append(audioAverage)
+                    .append(",CODECS=\"").append(DashManifestWriter.AUDIO_CODECS).append("\"")
+                    .append(",AUDIO=\"").append(AUDIO_GROUP).append("\"\n")
+                    .append(AUDIO_DIR).append("/").append(MEDIA_PLAYLIST).append("\n");
+        }
+
+        try {
+            Files.writeString(masterPath, playlist.toString(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            log.error("Failed to write master playlist {}: {}", masterPath, e.getMessage(), e);
+            throw new FileUploadException("Failed to write master playlist", e);
+        }
+    }
+
+    static String renditionDir(Quality quality) {
+        return quality.name().toLowerCase();
+    }
+
+    private List<String> awaitUpload(CompletableFuture<List<String>> upload) {
+        try {
+            return upload.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FileUploadException("Interrupted while uploading streaming files", e);
+        } catch (ExecutionException e) {
+            throw new FileUploadException("Failed to upload streaming files", e.getCause());
+        }
+    }
+
+    private int nullToZero(Integer value) {
+        return value != null ? value : 0;
+    }
+}
@@ -22,6 +22,11 @@ public class TempFileManagerImpl implements TempFileManager {
         return String.format("%s/%s/%s.mp4", tempDir, videoId, quality.toLowerCase());
     }
 
+    @Override
+    public String buildTempDirectoryPath(UUID videoId, String name) {
+        return String.format("%s/%s/%s", tempDir, videoId, name);
+    }
+
     @Override
     public void deleteTempDirectory(UUID videoId) {
         try {
@@ -6,10 +6,16 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import stream.flow.videoservice.exception.file.FileUploadException;
 import stream.flow.videoservice.model.dto.response.VideoInfoResponse;
+import stream.flow.videoservice.model.entity.RenditionCheckpoint;
 import stream.flow.videoservice.model.enums.Quality;
+import stream.flow.videoservice.model.enums.RenditionState;
 import stream.flow.videoservice.service.ffmpeg.FfmpegService;
+import stream.flow.videoservice.service.ffmpeg.ProgressListener;
+import stream.flow.videoservice.service.ffmpeg.Rendition;
 import stream.flow.videoservice.service.storage.StorageService;
 import stream.flow.videoservice.service.video.VideoQualityService;
+import stream.flow.videoservice.service.video.processor.Mp4LayoutVerifier;
+import stream.flow.videoservice.service.video.processor.RenditionCheckpointService;
 import stream.flow.videoservice.service.video.processor.VideoQualityProcessor;
 
 import java.util.UUID;
@@ -22,30 +28,59 @@ public class VideoQualityProcessorImpl implements VideoQualityProcessor {
     private final FfmpegService ffmpegService;
     private final StorageService storageService;
     private final VideoQualityService videoQualityService;
+    private final RenditionCheckpointService checkpointService;
+    private final Mp4LayoutVerifier mp4LayoutVerifier;
 
     @Value("${minio.bucket.videos}")
     private String bucketName;
 
     @Override
-    public ProcessingResult processQuality(String originalPath, UUID videoId, Quality quality, String outputPath) {
+    public ProcessingResult processQuality(String originalPath, UUID videoId, Rendition rendition, String outputPath,
+                                           String audioPath, ProgressListener listener) {
+        Quality quality = rendition.quality();
         log.info("Processing quality {} for video {}", quality, videoId);
 
+        String localQualityPath;
         try {
             // Конвертация видео в нужное качество
-            String localQualityPath = ffmpegService.convertQualityVideo(originalPath, outputPath, quality);
+            localQualityPath = ffmpegService.convertQualityVideo(originalPath, outputPath, rendition, audioPath, listener);
             log.debug("Video converted to quality {}: {}", quality, localQualityPath);
+            checkpointService.markEncoded(videoId, quality, localQualityPath);
 
+        } catch (Exception e) {
+            log.error("Failed to process quality {} for video {}: {}", quality, videoId, e.getMessage(), e);
+            throw new FileUploadException("Failed to process quality " + quality + ": " + e.getMessage(), e);
+        }
+
+        return processEncoded(localQualityPath, videoId, rendition);
+    }
+
+    @Override
+    public ProcessingResult processEncoded(String localQualityPath, UUID videoId, Rendition rendition) {
+        Quality quality = rendition.quality();
+        RenditionCheckpoint checkpoint = checkpointService.getCheckpoints(videoId).get(quality);
+        try {
             // Извлечение метаданных из конвертированного видео
             VideoInfoResponse metadata = ffmpegService.extractVideoMetadata(localQualityPath);
             log.debug("Metadata extracted for quality {}: duration={}s, resolution={}", 
                     quality, metadata.getDuration(), metadata.getResolution());
 
-            //Загрузка в хранилище
-            String storagePath = storageService.uploadFile(localQualityPath, bucketName);
-            log.debug("Video uploaded to storage: {}", storagePath);
+            //Загрузка в хранилище (пропускается, если файл уже загружен прошлой попыткой)
+            String storagePath;
+            if (checkpoint != null && checkpoint.getState() == RenditionState.UPLOADED) {
+                storagePath = checkpoint.getStoragePath();
+                log.debug("Quality {} already uploaded: {}", quality, storagePath);
+            } else {
+                // moov atom должен идти до данных, иначе плеер начнет с запроса хвоста файла
+                mp4LayoutVerifier.ensureStreamable(localQualityPath);
+                storagePath = storageService.uploadFile(localQualityPath, bucketName);
+                checkpointService.markUploaded(videoId, quality, storagePath);
+                log.debug("Video uploaded to storage: {}", storagePath);
+            }
 
             //Сохранение метаданных в БД
-            videoQualityService.saveVideoMetadata(metadata, storagePath, videoId, quality);
+            videoQualityService.saveVideoMetadata(metadata, storagePath, videoId, quality, rendition.maxBitrate());
+            checkpointService.markPersisted(videoId, quality);
             log.info("Quality {} processed successfully for video {}", quality, videoId);
 
             return new ProcessingResult(storagePath, metadata, localQualityPath);
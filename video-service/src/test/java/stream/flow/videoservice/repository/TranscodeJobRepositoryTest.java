@@ -0,0 +1,290 @@
+package stream.flow.videoservice.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import stream.flow.videoservice.model.entity.TranscodeJob;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Нативные запросы очереди задач проверяются на настоящем Postgres: SKIP LOCKED,
+ * advisory-блокировки и интервалы не эмулируются другими БД
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class TranscodeJobRepositoryTest {
+
+    private static final double AGING_RATE = 2.0;
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @Autowired
+    private TranscodeJobRepository transcodeJobRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transaction;
+    private UUID userId;
+
+    @BeforeEach
+    void setUp() {
+        transaction = new TransactionTemplate(transactionManager);
+        jdbcTemplate.update("DELETE FROM transcode_job");
+        jdbcTemplate.update("DELETE FROM video");
+        jdbcTemplate.update("DELETE FROM users");
+
+        userId = UUID.randomUUID();
+        jdbcTemplate.update("INSERT INTO users (id, keycloak_id, username) VALUES (?, ?, ?)",
+                userId, userId.toString(), "user-" + userId);
+    }
+
+    @Test
+    void claimsShortestJobFirst() {
+        queued(1000, 0);
+        UUID shortJob = queued(100, 0);
+
+        assertThat(findNextClaimable()).contains(shortJob);
+    }
+
+    @Test
+    void agingMovesLongWaitingJobAhead() {
+        // 1000 единиц работы минус 2 * 1000 секунд ожидания - меньше, чем у свежей короткой задачи
+        UUID longJob = queued(1000, 1000);
+        queued(100, 0);
+
+        assertThat(findNextClaimable()).contains(longJob);
+    }
+
+    @Test
+    void skipsJobsThatAreNotClaimable() {
+        insertJob("QUEUED", 1, 10, 0, 60, null, null);
+        insertJob("RUNNING", 1, 10, 0, 0, "alive", 60L);
+        insertJob("DONE", 1, 10, 0, 0, null, null);
+        insertJob("DEAD", 3, 10, 0, 0, null, null);
+        insertJob("CANCELLED", 0, 10, 0, 0, null, null);
+
+        assertThat(findNextClaimable()).isEmpty();
+    }
+
+    @Test
+    void reclaimsRunningJobWithExpiredLease() {
+        UUID expired = insertJob("RUNNING", 1, 500, 0, 0, "crashed", -10L);
+
+        assertThat(findNextClaimable()).contains(expired);
+    }
+
+    @Test
+    void concurrentClaimsSkipLockedJobs() throws Exception {
+        UUID first = queued(100, 0);
+        UUID second = queued(200, 0);
+
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Optional<UUID>> holder = CompletableFuture.supplyAsync(() -> transaction.execute(status -> {
+            Optional<UUID> claimed = transcodeJobRepository.findNextClaimable(AGING_RATE).map(TranscodeJob::getId);
+            locked.countDown();
+            await(release);
+            return claimed;
+        }));
+
+        assertThat(locked.await(10, TimeUnit.SECONDS)).isTrue();
+        try {
+            // Первая задача заблокирована другой транзакцией: вторая берется без ожидания
+            assertThat(findNextClaimable()).contains(second);
+        } finally {
+            release.countDown();
+        }
+        assertThat(holder.get(10, TimeUnit.SECONDS)).contains(first);
+    }
+
+    @Test
+    void finishAndRequeueRequireLeaseOwner() {
+        UUID job = queued(100, 0);
+        transaction.executeWithoutResult(status -> transcodeJobRepository.claim(job, "owner", 120));
+
+        assertThat(inTransaction(() -> transcodeJobRepository.finish(job, "other", "DONE", null))).isZero();
+        assertThat(inTransaction(() -> transcodeJobRepository.requeue(job, "other", "error", 30, 1800))).isZero();
+        assertThat(status(job)).isEqualTo("RUNNING");
+
+        assertThat(inTransaction(() -> transcodeJobRepository.finish(job, "owner", "DONE", null))).isEqualTo(1);
+        assertThat(status(job)).isEqualTo("DONE");
+
+        // Завершенную задачу владелец уже не меняет
+        assertThat(inTransaction(() -> transcodeJobRepository.finish(job, "owner", "DEAD", "late"))).isZero();
+    }
+
+    @Test
+    void cancelledJobIsNotFinishedByItsOwner() {
+        UUID job = queued(100, 0);
+        transaction.executeWithoutResult(status -> transcodeJobRepository.claim(job, "owner", 120));
+        assertThat(inTransaction(() -> transcodeJobRepository.cancel(job))).isEqualTo(1);
+
+        assertThat(inTransaction(() -> transcodeJobRepository.requeue(job, "owner", "interrupted", 30, 1800))).isZero();
+        assertThat(inTransaction(() -> transcodeJobRepository.finish(job, "owner", "DONE", null))).isZero();
+        assertThat(status(job)).isEqualTo("CANCELLED");
+        List<UUID> cancelled = transaction.execute(status -> transcodeJobRepository.findCancelled(List.of(job), "owner"));
+        assertThat(cancelled).containsExactly(job);
+    }
+
+    @Test
+    void abandonedCancelledJobIsReleasedOnce() {
+        UUID alive = insertJob("RUNNING", 1, 100, 0, 0, "alive", 60L);
+        UUID crashed = insertJob("RUNNING", 1, 100, 0, 0, "crashed", 60L);
+        assertThat(inTransaction(() -> transcodeJobRepository.cancel(alive))).isEqualTo(1);
+        assertThat(inTransaction(() -> transcodeJobRepository.cancel(crashed))).isEqualTo(1);
+
+        // Пока аренда не истекла, задачу освобождает владелец
+        assertThat(findAbandonedCancelled()).isEmpty();
+
+        jdbcTemplate.update("UPDATE transcode_job SET lease_expires_at = now() - interval '1 second' WHERE id = ?",
+                crashed);
+        assertThat(findAbandonedCancelled()).containsExactly(crashed);
+
+        assertThat(inTransaction(() -> transcodeJobRepository.releaseCancelled(crashed, "crashed"))).isEqualTo(1);
+        assertThat(inTransaction(() -> transcodeJobRepository.releaseCancelled(crashed, "crashed"))).isZero();
+        assertThat(findAbandonedCancelled()).isEmpty();
+
+        // Освободить задачу может только ее владелец
+        assertThat(inTransaction(() -> transcodeJobRepository.releaseCancelled(alive, "other"))).isZero();
+        assertThat(inTransaction(() -> transcodeJobRepository.releaseCancelled(alive, "alive"))).isEqualTo(1);
+    }
+
+    @Test
+    void requeueBacksOffExponentiallyUpToMax() {
+        UUID job = queued(100, 0);
+        jdbcTemplate.update("UPDATE transcode_job SET attempts = 2 WHERE id = ?", job);
+        transaction.executeWithoutResult(status -> transcodeJobRepository.claim(job, "owner", 120));
+
+        // Третья попытка: 30 * 2^2 = 120 секунд
+        assertThat(inTransaction(() -> transcodeJobRepository.requeue(job, "owner", "error", 30, 1800))).isEqualTo(1);
+        assertThat(secondsUntilNextAttempt(job)).isCloseTo(120, within(5.0));
+        assertThat(status(job)).isEqualTo("QUEUED");
+
+        transaction.executeWithoutResult(status -> transcodeJobRepository.claim(job, "owner", 120));
+        assertThat(inTransaction(() -> transcodeJobRepository.requeue(job, "owner", "error", 30, 200))).isEqualTo(1);
+        assertThat(secondsUntilNextAttempt(job)).isCloseTo(200, within(5.0));
+    }
+
+    @Test
+    void extendLeaseOnlyForOwnRunningJobs() {
+        UUID own = insertJob("RUNNING", 1, 100, 0, 0, "owner", 10L);
+        UUID foreign = insertJob("RUNNING", 1, 100, 0, 0, "other", 10L);
+
+        int extended = inTransaction(() -> transcodeJobRepository.extendLease(List.of(own, foreign), "owner", 300));
+
+        assertThat(extended).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT EXTRACT(EPOCH FROM lease_expires_at - now()) FROM transcode_job WHERE id = ?",
+                Double.class, own)).isCloseTo(300, within(5.0));
+    }
+
+    @Test
+    void queueLockSerializesEnqueues() throws Exception {
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> holder = CompletableFuture.runAsync(() -> transaction.executeWithoutResult(status -> {
+            transcodeJobRepository.lockQueue(42);
+            locked.countDown();
+            await(release);
+        }));
+        assertThat(locked.await(10, TimeUnit.SECONDS)).isTrue();
+
+        CompletableFuture<Void> waiter = CompletableFuture.runAsync(() ->
+                transaction.executeWithoutResult(status -> transcodeJobRepository.lockQueue(42)));
+
+        Thread.sleep(500);
+        assertThat(waiter).isNotDone();
+
+        release.countDown();
+        holder.get(10, TimeUnit.SECONDS);
+        waiter.get(10, TimeUnit.SECONDS);
+    }
+
+    private Optional<UUID> findNextClaimable() {
+        return transaction.execute(status ->
+                transcodeJobRepository.findNextClaimable(AGING_RATE).map(TranscodeJob::getId));
+    }
+
+    private List<UUID> findAbandonedCancelled() {
+        return transaction.execute(status -> transcodeJobRepository.findAbandonedCancelled(10).stream()
+                .map(TranscodeJob::getId)
+                .toList());
+    }
+
+    private UUID queued(long work, long ageSeconds) {
+        return insertJob("QUEUED", 0, work, ageSeconds, 0, null, null);
+    }
+
+    /**
+     * @param nextAttemptInSeconds через сколько секунд наступит время попытки
+     * @param leaseSeconds через сколько секунд истекает аренда (отрицательное - уже истекла)
+     */
+    private UUID insertJob(String status, int attempts, long work, long ageSeconds, long nextAttemptInSeconds,
+                           String leaseOwner, Long leaseSeconds) {
+        UUID videoId = UUID.randomUUID();
+        jdbcTemplate.update("INSERT INTO video (id, title, user_id) VALUES (?, ?, ?)", videoId, "video", userId);
+
+        return jdbcTemplate.queryForObject("""
+                        INSERT INTO transcode_job (video_id, path_original, status, attempts, cost, work,
+                                                   next_attempt_at, lease_owner, lease_expires_at, created_at)
+                        VALUES (?, ?, ?, ?, 1, ?,
+                                now() + ? * interval '1 second',
+                                ?,
+                                now() + CAST(? AS bigint) * interval '1 second',
+                                now() - ? * interval '1 second')
+                        RETURNING id
+                        """, UUID.class,
+                videoId, "/tmp/" + videoId + "/original.mp4", status, attempts, work,
+                nextAttemptInSeconds, leaseOwner, leaseSeconds, ageSeconds);
+    }
+
+    private String status(UUID jobId) {
+        return jdbcTemplate.queryForObject("SELECT status FROM transcode_job WHERE id = ?", String.class, jobId);
+    }
+
+    private double secondsUntilNextAttempt(UUID jobId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT EXTRACT(EPOCH FROM next_attempt_at - now()) FROM transcode_job WHERE id = ?",
+                Double.class, jobId);
+    }
+
+    private int inTransaction(java.util.function.IntSupplier update) {
+        return transaction.execute(status -> update.getAsInt());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package stream.flow.videoservice.service.video.processor.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import stream.flow.videoservice.exception.file.FileUploadException;
+import stream.flow.videoservice.model.entity.VideoQuality;
+import stream.flow.videoservice.model.enums.Quality;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DashManifestWriterTest {
+
+    private static final String PLAYLIST = "playlist.m3u8";
+
+    private final DashManifestWriter writer = new DashManifestWriter();
+
+    @TempDir
+    Path streamDir;
+
+    @Test
+    void collapsesEqualSegmentDurationsIntoRepeat() throws IOException {
+        writePlaylist("p720", 4.0, 4.0, 4.0, 1.5);
+
+        String mpd = write(List.of(quality(Quality.P720, "1280x720", "avc1.64001f,mp4a.40.2")), null);
+
+        assertThat(mpd).contains(
+                "<S t=\"0\" d=\"4000\" r=\"2\"/>\n            <S d=\"1500\"/>\n          </SegmentTimeline>");
+        assertThat(mpd).contains("mediaPresentationDuration=\"PT13.500S\"");
+        assertThat(mpd).contains("initialization=\"p720/init.mp4\"", "media=\"p720/seg_$Number%05d$.m4s\"",
+                "startNumber=\"1\"");
+        assertThat(mpd).contains("width=\"1280\" height=\"720\" codecs=\"avc1.64001f,mp4a.40.2\"",
+                "bandwidth=\"3128000\"");
+    }
+
+    @Test
+    void roundsSegmentDurationsByElapsedTime() throws IOException {
+        writePlaylist("p720", 3.3333, 3.3333, 3.3334);
+
+        String mpd = write(List.of(quality(Quality.P720, "1280x720", "avc1.64001f")), null);
+
+        // Округление накопленного времени: сумма сегментов равна длительности без дрейфа
+        assertThat(mpd).contains("<S t=\"0\" d=\"3333\"/>\n            <S d=\"3334\"/>\n            <S d=\"3333\"/>");
+        assertThat(mpd).contains("mediaPresentationDuration=\"PT10.000S\"");
+    }
+
+    @Test
+    void describesSeparateAudioAsOwnAdaptationSet() throws IOException {
+        writePlaylist("p720", 4.0, 4.0);
+        writePlaylist("p480", 4.0, 4.0);
+        writePlaylist(StreamingPackagerImpl.AUDIO_DIR, 4.0, 4.0);
+
+        String mpd = write(List.of(
+                quality(Quality.P720, "1280x720", "avc1.64001f,mp4a.40.2"),
+                quality(Quality.P480, "854x480", "avc1.64001e,mp4a.40.2")), 128);
+
+        // Пик неизвестен - средний битрейт; звука в сегментах видео нет: ни кодека, ни битрейта аудио
+        assertThat(mpd).contains("<Representation id=\"p720\" bandwidth=\"3000000\" width=\"1280\" height=\"720\" codecs=\"avc1.64001f\">");
+        assertThat(mpd).contains("<Representation id=\"p480\" bandwidth=\"3000000\" width=\"854\" height=\"480\" codecs=\"avc1.64001e\">");
+        assertThat(mpd).contains("<AdaptationSet id=\"1\" mimeType=\"audio/mp4\"");
+        assertThat(mpd).contains("<Representation id=\"audio\" bandwidth=\"128000\" codecs=\"" + DashManifestWriter.AUDIO_CODECS + "\">");
+        assertThat(mpd).contains("media=\"audio/seg_$Number%05d$.m4s\"");
+    }
+
+    @Test
+    void usesPeakSegmentBitrateAsBandwidth() throws IOException {
+        writePlaylist("p720", 4.0, 4.0);
+        writePlaylist(StreamingPackagerImpl.AUDIO_DIR, 4.0, 4.0);
+
+        String mpd = write(List.of(quality(Quality.P720, "1280x720", "avc1.64001f,mp4a.40.2")), 128,
+                Map.of("p720", 7_500_000L, StreamingPackagerImpl.AUDIO_DIR, 131_000L));
+
+        assertThat(mpd).contains("<Representation id=\"p720\" bandwidth=\"7500000\"");
+        assertThat(mpd).contains("<Representation id=\"audio\" bandwidth=\"131000\"");
+    }
+
+    @Test
+    void rejectsPlaylistWithoutSegments() throws IOException {
+        Path dir = Files.createDirectories(streamDir.resolve("p720"));
+        Files.writeString(dir.resolve(PLAYLIST), "#EXTM3U\n#EXT-X-ENDLIST\n");
+
+        assertThatThrownBy(() -> write(List.of(quality(Quality.P720, "1280x720", "avc1.64001f")), null))
+                .isInstanceOf(FileUploadException.class)
+                .hasMessageContaining("no segments");
+    }
+
+    private String write(List<VideoQuality> qualities, Integer audioBitrate) throws IOException {
+        return write(qualities, audioBitrate, Map.of());
+    }
+
+    private String write(List<VideoQuality> qualities, Integer audioBitrate, Map<String, Long> peakBandwidths)
+            throws IOException {
+        Path manifest = streamDir.resolve("manifest.mpd");
+        writer.write(streamDir, qualities, audioBitrate, peakBandwidths, PLAYLIST, manifest);
+        return Files.readString(manifest);
+    }
+
+    private void writePlaylist(String dir, double... durations) throws IOException {
+        StringBuilder playlist = new StringBuilder("#EXTM3U\n#EXT-X-VERSION:7\n#EXT-X-MAP:URI=\"init.mp4\"\n");
+        for (int i = 0; i < durations.length; i++) {
+            playlist.append(String.format(Locale.ROOT, "#EXTINF:%.6f,\n", durations[i]))
+                    .append(String.format("seg_%05d.m4s\n", i + 1));
+        }
+        playlist.append("#EXT-X-ENDLIST\n");
+
+        Path renditionDir = Files.createDirectories(streamDir.resolve(dir));
+        Files.writeString(renditionDir.resolve(PLAYLIST), playlist.toString());
+    }
+
+    private VideoQuality quality(Quality quality, String resolution, String codecs) {
+        return VideoQuality.builder()
+                .quality(quality)
+                .resolution(resolution)
+                .codecs(codecs)
+                .bitrateVideo(3000)
+                .bitrateAudio(128)
+                .build();
+    }
+}
@@ -0,0 +1,70 @@
+package stream.flow.videoservice.service.video.processor.impl;
+
+import org.junit.jupiter.api.Test;
+import stream.flow.videoservice.model.dto.response.VideoInfoResponse;
+import stream.flow.videoservice.model.enums.Quality;
+import stream.flow.videoservice.service.ffmpeg.Rendition;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LadderPlannerImplTest {
+
+    private final LadderPlannerImpl planner = new LadderPlannerImpl();
+
+    @Test
+    void skipsQualitiesAboveSourceHeight() {
+        List<Rendition> ladder = planner.plan(source(1280, 720, 8000), 1.0);
+
+        assertThat(ladder).extracting(Rendition::quality)
+                .containsExactly(Quality.P720, Quality.P480, Quality.P360, Quality.P240);
+        assertThat(ladder).extracting(Rendition::height)
+                .containsExactly(720, 480, 360, 240);
+    }
+
+    @Test
+    void plansFullLadderWhenSourceHeightIsUnknown() {
+        List<Rendition> ladder = planner.plan(VideoInfoResponse.builder().build(), 1.0);
+
+        assertThat(ladder).extracting(Rendition::quality).containsExactly(Quality.values());
+        assertThat(ladder).extracting(Rendition::maxBitrate).containsExactly(5000, 3000, 1500, 800, 400);
+    }
+
+    @Test
+    void capsBitrateBySourceBitrate() {
+        List<Rendition> ladder = planner.plan(source(1920, 1080, 2000), 1.0);
+
+        assertThat(ladder).extracting(Rendition::maxBitrate).containsExactly(2000, 2000, 1500, 800, 400);
+    }
+
+    @Test
+    void scalesBitrateByComplexity() {
+        List<Rendition> ladder = planner.plan(source(854, 480, 0), 0.5);
+
+        assertThat(ladder).extracting(Rendition::maxBitrate).containsExactly(750, 400, 200);
+    }
+
+    @Test
+    void encodesSourceBelowLowestQualityAtEvenSourceHeight() {
+        List<Rendition> ladder = planner.plan(source(320, 181, 300), 1.0);
+
+        assertThat(ladder).containsExactly(new Rendition(Quality.P240, 180, 300));
+    }
+
+    @Test
+    void keepsMinimalEvenHeightForTinySource() {
+        List<Rendition> ladder = planner.plan(source(2, 1, 0), 1.0);
+
+        assertThat(ladder).containsExactly(new Rendition(Quality.P240, 2, 400));
+    }
+
+    private VideoInfoResponse source(int width, int height, int bitrate) {
+        return VideoInfoResponse.builder()
+                .width(width)
+                .height(height)
+                .resolution(width + "x" + height)
+                .bitrateVideo(bitrate)
+                .build();
+    }
+}
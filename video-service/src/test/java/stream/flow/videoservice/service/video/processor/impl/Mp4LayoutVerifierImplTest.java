@@ -0,0 +1,108 @@
+package stream.flow.videoservice.service.video.processor.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import stream.flow.videoservice.exception.file.FileUploadException;
+import stream.flow.videoservice.service.ffmpeg.FfmpegService;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class Mp4LayoutVerifierImplTest {
+
+    private final FfmpegService ffmpegService = mock(FfmpegService.class);
+    private final Mp4LayoutVerifierImpl verifier = new Mp4LayoutVerifierImpl(ffmpegService);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsTopLevelBoxesInOrder() throws IOException {
+        Path file = write(box("ftyp", 12), box("moov", 100), box("mdat", 1000));
+
+        assertThat(verifier.topLevelBoxes(file)).containsExactly("ftyp", "moov", "mdat");
+    }
+
+    @Test
+    void readsFragmentedLayout() throws IOException {
+        Path file = write(box("ftyp", 12), box("moov", 40), box("moof", 20), box("mdat", 500),
+                box("moof", 20), box("mdat", 500), box("mfra", 8));
+
+        assertThat(verifier.topLevelBoxes(file))
+                .containsExactly("ftyp", "moov", "moof", "mdat", "moof", "mdat", "mfra");
+    }
+
+    @Test
+    void followsLargeSize() throws IOException {
+        Path file = write(box("ftyp", 12), largeBox("mdat", 64), box("moov", 16));
+
+        assertThat(verifier.topLevelBoxes(file)).containsExactly("ftyp", "mdat", "moov");
+    }
+
+    @Test
+    void treatsZeroSizeAsBoxUntilEndOfFile() throws IOException {
+        byte[] lastBox = header(0, "mdat");
+        Path file = write(box("ftyp", 12), box("moov", 16), concat(lastBox, new byte[256]));
+
+        assertThat(verifier.topLevelBoxes(file)).containsExactly("ftyp", "moov", "mdat");
+    }
+
+    @Test
+    void rejectsBoxSmallerThanHeader() throws IOException {
+        Path file = write(box("ftyp", 12), header(4, "free"));
+
+        assertThatThrownBy(() -> verifier.topLevelBoxes(file))
+                .isInstanceOf(FileUploadException.class)
+                .hasMessageContaining("atom free has size 4");
+    }
+
+    @Test
+    void keepsFaststartFileWithoutRemux() throws IOException {
+        ReflectionTestUtils.setField(verifier, "mp4Layout", "faststart");
+        Path file = write(box("ftyp", 12), box("moov", 100), box("mdat", 1000));
+
+        verifier.ensureStreamable(file.toString());
+
+        verify(ffmpegService, never()).remux(any(), any(), any());
+    }
+
+    private Path write(byte[]... boxes) throws IOException {
+        Path file = Files.createTempFile(dir, "video", ".mp4");
+        Files.write(file, concat(boxes));
+        return file;
+    }
+
+    private byte[] box(String type, int payload) {
+        return concat(header(8 + payload, type), new byte[payload]);
+    }
+
+    private byte[] largeBox(String type, int payload) {
+        ByteBuffer buffer = ByteBuffer.allocate(16 + payload);
+        buffer.putInt(1).put(type.getBytes(StandardCharsets.ISO_8859_1)).putLong(16L + payload);
+        return buffer.array();
+    }
+
+    private byte[] header(int size, String type) {
+        return ByteBuffer.allocate(8).putInt(size).put(type.getBytes(StandardCharsets.ISO_8859_1)).array();
+    }
+
+    private byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+}
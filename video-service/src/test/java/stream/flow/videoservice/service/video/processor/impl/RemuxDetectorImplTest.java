@@ -0,0 +1,121 @@
+package stream.flow.videoservice.service.video.processor.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import stream.flow.videoservice.model.dto.response.VideoInfoResponse;
+import stream.flow.videoservice.model.enums.Quality;
+import stream.flow.videoservice.service.ffmpeg.FfmpegService;
+import stream.flow.videoservice.service.ffmpeg.Rendition;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RemuxDetectorImplTest {
+
+    private static final String INPUT = "original.mp4";
+    private static final Rendition P720 = new Rendition(Quality.P720, 720, 3000);
+
+    private final FfmpegService ffmpegService = mock(FfmpegService.class);
+    private final RemuxDetectorImpl detector = new RemuxDetectorImpl(ffmpegService);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(detector, "segmentDuration", 4);
+        ReflectionTestUtils.setField(detector, "enabled", true);
+        ReflectionTestUtils.setField(detector, "maxBitrateRatio", 1.5);
+    }
+
+    @Test
+    void remuxesCompatibleSource() {
+        when(ffmpegService.probeKeyframes(INPUT)).thenReturn(List.of(0.0, 4.0, 8.0));
+
+        assertThat(detector.canRemux(INPUT, source(0, "1:1"), P720)).isTrue();
+        assertThat(detector.canRemux(INPUT, source(null, null), P720)).isTrue();
+    }
+
+    @Test
+    void rejectsRotatedSource() {
+        assertThat(detector.canRemux(INPUT, source(90, "1:1"), P720)).isFalse();
+        assertThat(detector.canRemux(INPUT, source(180, "1:1"), P720)).isFalse();
+    }
+
+    @Test
+    void rejectsNonSquarePixels() {
+        assertThat(detector.canRemux(INPUT, source(0, "4:3"), P720)).isFalse();
+    }
+
+    @Test
+    void acceptsKeyframeOnEverySegmentBoundary() {
+        when(ffmpegService.probeKeyframes(INPUT)).thenReturn(List.of(0.0, 2.0, 4.0, 6.0, 8.0, 10.0));
+
+        assertThat(detector.keyframesAligned(INPUT, 11)).isTrue();
+    }
+
+    @Test
+    void measuresBoundariesFromFirstKeyframe() {
+        when(ffmpegService.probeKeyframes(INPUT)).thenReturn(List.of(0.042, 4.042, 8.042));
+
+        assertThat(detector.keyframesAligned(INPUT, 10)).isTrue();
+    }
+
+    @Test
+    void toleratesKeyframesSlightlyOffBoundary() {
+        when(ffmpegService.probeKeyframes(INPUT)).thenReturn(List.of(0.0, 3.96, 8.04));
+
+        assertThat(detector.keyframesAligned(INPUT, 10)).isTrue();
+    }
+
+    @Test
+    void rejectsMissingKeyframeOnBoundary() {
+        when(ffmpegService.probeKeyframes(INPUT)).thenReturn(List.of(0.0, 4.0, 9.0));
+
+        assertThat(detector.keyframesAligned(INPUT, 12)).isFalse();
+    }
+
+    @Test
+    void rejectsKeyframesEndingBeforeLastBoundary() {
+        when(ffmpegService.probeKeyframes(INPUT)).thenReturn(List.of(0.0, 4.0));
+
+        assertThat(detector.keyframesAligned(INPUT, 12)).isFalse();
+    }
+
+    @Test
+    void ignoresBoundaryAtEndOfVideo() {
+        when(ffmpegService.probeKeyframes(INPUT)).thenReturn(List.of(0.0, 4.0));
+
+        assertThat(detector.keyframesAligned(INPUT, 8)).isTrue();
+    }
+
+    @Test
+    void rejectsUnknownDurationAndFailedProbe() {
+        assertThat(detector.keyframesAligned(INPUT, null)).isFalse();
+
+        when(ffmpegService.probeKeyframes(INPUT)).thenThrow(new IllegalStateException("ffprobe failed"));
+        assertThat(detector.keyframesAligned(INPUT, 10)).isFalse();
+    }
+
+    @Test
+    void rejectsEmptyKeyframeList() {
+        when(ffmpegService.probeKeyframes(INPUT)).thenReturn(List.of());
+
+        assertThat(detector.keyframesAligned(INPUT, 10)).isFalse();
+    }
+
+    private VideoInfoResponse source(Integer rotation, String sampleAspectRatio) {
+        return VideoInfoResponse.builder()
+                .videoCodec("h264")
+                .videoProfile("High")
+                .pixelFormat("yuv420p")
+                .width(1280)
+                .height(720)
+                .bitrateVideo(2500)
+                .duration(10)
+                .rotation(rotation)
+                .sampleAspectRatio(sampleAspectRatio)
+                .build();
+    }
+}
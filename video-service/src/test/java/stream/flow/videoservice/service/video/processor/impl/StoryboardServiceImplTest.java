@@ -0,0 +1,160 @@
+package stream.flow.videoservice.service.video.processor.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import stream.flow.videoservice.model.dto.response.VideoInfoResponse;
+import stream.flow.videoservice.service.ffmpeg.FfmpegService;
+import stream.flow.videoservice.service.ffmpeg.StoryboardSpec;
+import stream.flow.videoservice.service.storage.StorageService;
+import stream.flow.videoservice.service.video.VideoService;
+import stream.flow.videoservice.service.video.processor.TempFileManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class StoryboardServiceImplTest {
+
+    private final TempFileManager tempFileManager = mock(TempFileManager.class);
+    private final FfmpegService ffmpegService = mock(FfmpegService.class);
+    private final StorageService storageService = mock(StorageService.class);
+    private final StoryboardServiceImpl storyboardService = new StoryboardServiceImpl(
+            ffmpegService, storageService, mock(VideoService.class), tempFileManager);
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(storyboardService, "enabled", true);
+        ReflectionTestUtils.setField(storyboardService, "interval", 5);
+        ReflectionTestUtils.setField(storyboardService, "tileWidth", 160);
+        ReflectionTestUtils.setField(storyboardService, "columns", 10);
+        ReflectionTestUtils.setField(storyboardService, "rows", 10);
+        when(tempFileManager.buildTempDirectoryPath(any(), anyString()))
+                .thenAnswer(invocation -> dir.resolve(invocation.getArgument(1, String.class)).toString());
+    }
+
+    @Test
+    void writesOneCuePerFrameAcrossSprites() throws IOException {
+        StoryboardSpec spec = new StoryboardSpec(dir.toString(), 5, 160, 90, 2, 2);
+        Path index = dir.resolve("storyboard.vtt");
+
+        storyboardService.writeIndex(index, spec, 23, 2);
+
+        assertThat(Files.readString(index)).isEqualTo("""
+                WEBVTT
+
+                00:00:00.000 --> 00:00:05.000
+                sprite_001.jpg#xywh=0,0,160,90
+
+                00:00:05.000 --> 00:00:10.000
+                sprite_001.jpg#xywh=160,0,160,90
+
+                00:00:10.000 --> 00:00:15.000
+                sprite_001.jpg#xywh=0,90,160,90
+
+                00:00:15.000 --> 00:00:20.000
+                sprite_001.jpg#xywh=160,90,160,90
+
+                00:00:20.000 --> 00:00:23.000
+                sprite_002.jpg#xywh=0,0,160,90
+                """);
+    }
+
+    @Test
+    void limitsCuesToProducedSprites() throws IOException {
+        StoryboardSpec spec = new StoryboardSpec(dir.toString(), 5, 160, 90, 2, 2);
+        Path index = dir.resolve("storyboard.vtt");
+
+        storyboardService.writeIndex(index, spec, 3600, 1);
+
+        String vtt = Files.readString(index);
+        assertThat(vtt.split("-->")).hasSize(5);
+        assertThat(vtt).doesNotContain("sprite_002.jpg").endsWith("00:00:15.000 --> 00:00:20.000\nsprite_001.jpg#xywh=160,90,160,90\n");
+    }
+
+    @Test
+    void formatsHoursInTimestamps() throws IOException {
+        StoryboardSpec spec = new StoryboardSpec(dir.toString(), 3600, 160, 90, 1, 1);
+        Path index = dir.resolve("storyboard.vtt");
+
+        storyboardService.writeIndex(index, spec, 7500, 3);
+
+        assertThat(Files.readString(index)).contains("02:00:00.000 --> 02:05:00.000\nsprite_003.jpg#xywh=0,0,160,90");
+    }
+
+    @Test
+    void planDiscardsSpritesOfInterruptedPass() throws IOException {
+        Path scratch = Files.createDirectories(dir.resolve("storyboard.part"));
+        Files.writeString(scratch.resolve("sprite_001.jpg"), "partial");
+
+        StoryboardSpec spec = storyboardService.plan(UUID.randomUUID(), source(1920, 1080));
+
+        assertThat(spec.outputDir()).isEqualTo(scratch.toString());
+        assertThat(scratch).doesNotExist();
+    }
+
+    @Test
+    void commitReplacesPublishedSpritesWithCompletedPass() throws IOException {
+        UUID videoId = UUID.randomUUID();
+        StoryboardSpec spec = storyboardService.plan(videoId, source(1920, 1080));
+        Path stale = Files.createDirectories(dir.resolve("storyboard"));
+        Files.writeString(stale.resolve("sprite_002.jpg"), "stale");
+        Files.createDirectories(Path.of(spec.outputDir()));
+        Files.writeString(Path.of(spec.outputDir(), "sprite_001.jpg"), "complete");
+
+        storyboardService.commit(videoId, spec);
+
+        assertThat(Path.of(spec.outputDir())).doesNotExist();
+        assertThat(stale.resolve("sprite_001.jpg")).hasContent("complete");
+        assertThat(stale.resolve("sprite_002.jpg")).doesNotExist();
+    }
+
+    @Test
+    void publishGeneratesStoryboardWhenLadderPassProducedNone() {
+        UUID videoId = UUID.randomUUID();
+        StoryboardSpec spec = storyboardService.plan(videoId, source(1920, 1080));
+        doAnswer(invocation -> {
+            Files.createDirectories(Path.of(spec.outputDir()));
+            Files.writeString(Path.of(spec.outputDir(), "sprite_001.jpg"), "generated");
+            return null;
+        }).when(ffmpegService).generateStoryboard("original.mp4", spec);
+        when(storageService.uploadDirectory(dir.resolve("storyboard").toString(), null)).thenReturn("thumbnails/storyboard");
+
+        String index = storyboardService.publish("original.mp4", videoId, spec, 60);
+
+        assertThat(index).isEqualTo("thumbnails/storyboard/storyboard.vtt");
+        assertThat(dir.resolve("storyboard").resolve("sprite_001.jpg")).exists();
+        assertThat(dir.resolve("storyboard").resolve("storyboard.vtt")).exists();
+    }
+
+    @Test
+    void plansEvenTileHeightByAspectRatio() {
+        assertThat(storyboardService.plan(UUID.randomUUID(), source(1920, 1080)).tileHeight()).isEqualTo(90);
+        assertThat(storyboardService.plan(UUID.randomUUID(), source(1080, 1920)).tileHeight()).isEqualTo(284);
+        assertThat(storyboardService.plan(UUID.randomUUID(), source(1280, 534)).tileHeight()).isEqualTo(66);
+        assertThat(storyboardService.plan(UUID.randomUUID(), source(4000, 10)).tileHeight()).isEqualTo(2);
+    }
+
+    @Test
+    void skipsStoryboardWithoutSourceGeometryOrDuration() {
+        assertThat(storyboardService.plan(UUID.randomUUID(), VideoInfoResponse.builder().duration(60).build())).isNull();
+        assertThat(storyboardService.plan(UUID.randomUUID(),
+                VideoInfoResponse.builder().width(1920).height(1080).build())).isNull();
+    }
+
+    private VideoInfoResponse source(int width, int height) {
+        return VideoInfoResponse.builder().width(width).height(height).duration(60).build();
+    }
+}
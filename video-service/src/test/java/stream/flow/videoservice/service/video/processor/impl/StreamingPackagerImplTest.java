@@ -0,0 +1,52 @@
+package stream.flow.videoservice.service.video.processor.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamingPackagerImplTest {
+
+    @TempDir
+    Path renditionDir;
+
+    @Test
+    void peakBandwidthIsLargestSegmentBitrate() throws IOException {
+        Path playlist = writePlaylist("""
+                #EXTINF:4.000000,
+                seg_00001.m4s
+                #EXTINF:2.000000,
+                seg_00002.m4s
+                #EXTINF:4.000000,
+                seg_00003.m4s
+                """);
+
+        // 1 MB за 4 с = 2 Мбит/с, 1 MB за 2 с = 4 Мбит/с
+        long peak = StreamingPackagerImpl.peakBandwidth(playlist, Map.of(
+                "seg_00001.m4s", 1_000_000L,
+                "seg_00002.m4s", 1_000_000L,
+                "seg_00003.m4s", 500_000L));
+
+        assertThat(peak).isEqualTo(4_000_000L);
+    }
+
+    @Test
+    void peakBandwidthIsZeroWithoutSegmentSizes() throws IOException {
+        Path playlist = writePlaylist("""
+                #EXTINF:4.000000,
+                seg_00001.m4s
+                """);
+
+        assertThat(StreamingPackagerImpl.peakBandwidth(playlist, Map.of())).isZero();
+    }
+
+    private Path writePlaylist(String segments) throws IOException {
+        return Files.writeString(renditionDir.resolve("index.m3u8"),
+                "#EXTM3U\n#EXT-X-VERSION:7\n#EXT-X-MAP:URI=\"init.mp4\"\n" + segments + "#EXT-X-ENDLIST\n");
+    }
+}